@@ -0,0 +1,89 @@
+package org.cg.rooster.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.cg.rooster.core.Condition;
+import org.cg.rooster.phoenix.PhoenixConditionOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Condition#parseCondition(Condition)} and {@link Condition#getParamsFromConditions(List)} on trees of
+ * leaf conditions, either chained (each AND/OR has a leaf on its right) or balanced
+ * @author WZ
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConditionBenchmark {
+
+	@Param({"8", "64", "256"})
+	private int leaves;
+
+	@Param({"chain", "balanced"})
+	private String shape;
+
+	private Condition root;
+	private List<Condition> conditions;
+
+	@Setup
+	public void setup() {
+		root = "chain".equals(shape) ? chain(leaves) : balanced(0, leaves);
+		conditions = Collections.singletonList(root);
+	}
+
+	@Benchmark
+	public String parseCondition() {
+		return Condition.parseCondition(root);
+	}
+
+	@Benchmark
+	public Object[] getParamsFromConditions() {
+		return Condition.getParamsFromConditions(conditions);
+	}
+
+	private static Condition leaf(int i) {
+		switch (i % 3) {
+		case 0:
+			return new Condition("tid", PhoenixConditionOperator.EQUAL, i);
+		case 1:
+			return new Condition("uid", PhoenixConditionOperator.LIKE, "user" + i + "%");
+		default:
+			return new Condition("event_time", PhoenixConditionOperator.GREATER, (long) i);
+		}
+	}
+
+	private static PhoenixConditionOperator junction(int i) {
+		return i % 2 == 0 ? PhoenixConditionOperator.AND : PhoenixConditionOperator.OR;
+	}
+
+	private static Condition chain(int leaves) {
+		Condition condition = leaf(0);
+		for (int i = 1; i < leaves; i++) {
+			condition = new Condition(condition, junction(i), leaf(i));
+		}
+		return condition;
+	}
+
+	private static Condition balanced(int from, int leaves) {
+		if (leaves == 1) return leaf(from);
+		final int half = leaves / 2;
+		return new Condition(balanced(from, half), junction(from + half), balanced(from + half, leaves - half));
+	}
+
+}
@@ -0,0 +1,128 @@
+package org.cg.rooster.benchmarks;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.cg.rooster.core.RowColumnMapper;
+import org.cg.rooster.phoenix.Event;
+import org.cg.rooster.phoenix.EventRowColumnMapper;
+import org.cg.rooster.phoenix.Events;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import com.google.common.base.Throwables;
+
+/**
+ * The data and the mappers of the benchmarks, the {@link Event} fixture, its table and its hand-written
+ * by name mapper come from the test jar of Rooster
+ * @author WZ
+ *
+ */
+public final class EventData {
+
+	private final static long BASE_TIME = 1450000000000L;
+
+	/**
+	 * Maps by column name through the JDBC driver on every row
+	 */
+	public final static RowColumnMapper<Event> DRIVER_MAPPER = new RowColumnMapper<Event>() {
+		@Override
+		public Event mapRow(ResultSet rs, int rowNum) throws SQLException {
+			Event event = new Event();
+			event.setTenantId(rs.getInt("tid"));
+			event.setUserId(rs.getString("uid"));
+			event.setEventTime(new Date(rs.getLong("event_time")));
+			event.setReceiptTime(new Date(rs.getLong("receipt_time")));
+			event.setName(rs.getString("name"));
+			event.setMessage(rs.getString("message"));
+			event.setVersion(rs.getInt("version"));
+			return event;
+		}
+
+		@Override
+		public LinkedHashMap<String, Object> mapColumns(Event t) {
+			return Events.columnsOf(t);
+		}
+	};
+
+	private EventData() {
+
+	}
+
+	/**
+	 * @param mapper by_name, indexed or generated
+	 * @return the mapper
+	 */
+	public static RowColumnMapper<Event> mapper(String mapper) {
+		if ("by_name".equals(mapper)) return DRIVER_MAPPER;
+		if ("indexed".equals(mapper)) return Events.BY_NAME_MAPPER;
+		if ("generated".equals(mapper)) return EventRowColumnMapper.INSTANCE;
+		throw new IllegalArgumentException("Unknown mapper: " + mapper);
+	}
+
+	/**
+	 * @param i the sequence of the event
+	 * @return a new event of tenant 1
+	 */
+	public static Event newEvent(int i) {
+		Event event = new Event();
+		event.setTenantId(1);
+		event.setUserId("user" + (i % 100));
+		event.setEventTime(new Date(BASE_TIME + i));
+		event.setReceiptTime(new Date(BASE_TIME + i + 5));
+		event.setName("event" + (i % 10));
+		event.setMessage("message of event " + i);
+		event.setVersion(i % 7);
+		return event;
+	}
+
+	/**
+	 * @param from the sequence of the first event
+	 * @param count the number of events
+	 * @return the new events
+	 */
+	public static List<Event> newEvents(int from, int count) {
+		final List<Event> events = new ArrayList<Event>(count);
+		for (int i = from; i < from + count; i++) {
+			events.add(newEvent(i));
+		}
+		return events;
+	}
+
+	/**
+	 * @param events the events
+	 * @return the ids of the events
+	 */
+	public static List<Object[]> idsOf(List<Event> events) {
+		final List<Object[]> ids = new ArrayList<Object[]>(events.size());
+		for (Event event : events) {
+			ids.add(event.getId());
+		}
+		return ids;
+	}
+
+	/**
+	 * Create an in-memory H2 database with the event table, it lives until the JVM exits.
+	 * All calls share one connection, so opening connections is not measured
+	 * @param name the database name
+	 * @return the data source
+	 */
+	public static DataSource createDatabase(String name) {
+		final SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", true);
+		dataSource.setDriverClassName("org.h2.Driver");
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute("DROP TABLE IF EXISTS Event");
+			statement.execute(Events.CREATE_TABLE);
+		} catch (SQLException e) {
+			throw Throwables.propagate(e);
+		}
+		return dataSource;
+	}
+}
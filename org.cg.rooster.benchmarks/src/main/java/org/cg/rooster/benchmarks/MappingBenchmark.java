@@ -0,0 +1,131 @@
+package org.cg.rooster.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.cg.rooster.core.RowColumnBinder;
+import org.cg.rooster.core.RowColumnMapper;
+import org.cg.rooster.h2.H2SqlGrammar;
+import org.cg.rooster.phoenix.Event;
+import org.cg.rooster.phoenix.EventRowColumnMapper;
+import org.cg.rooster.phoenix.Events;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping rows to {@link Event}s and events to statement parameters with the hand-written mappers
+ * and the generated {@link EventRowColumnMapper}.
+ *
+ * The rows are read from an in-memory {@link SimpleResultSet}, so the driver does not dominate the measurement.
+ * A new result set is made for every call, the cost of resolving the columns of a result set is included
+ * @author WZ
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MappingBenchmark {
+
+	@Param({"by_name", "indexed", "generated"})
+	private String mapper;
+
+	@Param({"1", "100"})
+	private int rows;
+
+	private RowColumnMapper<Event> rowColumnMapper;
+	private List<Object[]> values;
+	private Event event;
+	private Connection connection;
+	private PreparedStatement statement;
+
+	@Setup
+	public void setup() throws SQLException {
+		rowColumnMapper = EventData.mapper(mapper);
+		values = new ArrayList<Object[]>(rows);
+		for (Event e : EventData.newEvents(0, rows)) {
+			values.add(Events.columnsOf(e).values().toArray());
+		}
+		event = EventData.newEvent(0);
+		connection = EventData.createDatabase("mapping").getConnection();
+		statement = connection.prepareStatement(
+				H2SqlGrammar.getInstance().save(Events.TABLE, Events.columnsOf(event),
+				Collections.<String, Object>emptyMap()));
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		statement.close();
+		connection.close();
+	}
+
+	@Benchmark
+	public List<Event> mapRow() throws SQLException {
+		final ResultSet rs = resultSet();
+		final List<Event> events = new ArrayList<Event>(rows);
+		int rowNum = 0;
+		while (rs.next()) {
+			events.add(rowColumnMapper.mapRow(rs, rowNum++));
+		}
+		return events;
+	}
+
+	@Benchmark
+	public Map<String, Object> mapColumns() {
+		return rowColumnMapper.mapColumns(event);
+	}
+
+	/**
+	 * Binds an event as the repository does: directly when the mapper can bind, otherwise through the column map
+	 */
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public PreparedStatement bind() throws SQLException {
+		if (rowColumnMapper instanceof RowColumnBinder) {
+			((RowColumnBinder<Event>) rowColumnMapper).bindColumns(statement, event, 1);
+		} else {
+			int index = 1;
+			for (Object value : rowColumnMapper.mapColumns(event).values()) {
+				statement.setObject(index++, value);
+			}
+		}
+		return statement;
+	}
+
+	private ResultSet resultSet() {
+		final SimpleResultSet rs = new SimpleResultSet();
+		rs.addColumn("tid", Types.INTEGER, 10, 0);
+		rs.addColumn("uid", Types.VARCHAR, 255, 0);
+		rs.addColumn("event_time", Types.BIGINT, 19, 0);
+		rs.addColumn("receipt_time", Types.BIGINT, 19, 0);
+		rs.addColumn("name", Types.VARCHAR, 255, 0);
+		rs.addColumn("message", Types.VARCHAR, 255, 0);
+		rs.addColumn("version", Types.INTEGER, 10, 0);
+		for (Object[] row : values) {
+			rs.addRow(row);
+		}
+		return rs;
+	}
+
+}
@@ -0,0 +1,73 @@
+package org.cg.rooster.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.cg.rooster.JdbcDataRepository;
+import org.cg.rooster.core.BatchSaveReport;
+import org.cg.rooster.h2.H2JdbcDataRepository;
+import org.cg.rooster.phoenix.Event;
+import org.cg.rooster.phoenix.Events;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Batch save and multi-get of {@link JdbcDataRepository} against an in-memory H2 database.
+ * The same events are saved on every call, so the table keeps its size. Call logging is off
+ * @author WZ
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+
+	@Param({"indexed", "generated"})
+	private String mapper;
+
+	@Param({"100", "1000"})
+	private int size;
+
+	private H2JdbcDataRepository<Event, Object[]> repository;
+	private List<Event> events;
+	private List<Object[]> ids;
+
+	@Setup
+	public void setup() {
+		repository = new H2JdbcDataRepository<Event, Object[]>(EventData.createDatabase("repository_" + mapper + "_" + size),
+				Events.TABLE, EventData.mapper(mapper));
+		repository.setCallLogging(false);
+		events = EventData.newEvents(0, size);
+		ids = EventData.idsOf(events);
+		repository.saveBatch(events);
+	}
+
+	@Benchmark
+	public BatchSaveReport saveBatch() {
+		return repository.saveBatch(events);
+	}
+
+	@Benchmark
+	public Map<Object[], Event> getAll() {
+		return repository.getAll(ids);
+	}
+
+	@Benchmark
+	public Iterable<Event> findByIds() {
+		return repository.find(ids);
+	}
+
+}
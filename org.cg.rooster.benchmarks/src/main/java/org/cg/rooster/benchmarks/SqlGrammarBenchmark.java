@@ -0,0 +1,112 @@
+package org.cg.rooster.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.cg.rooster.core.Condition;
+import org.cg.rooster.phoenix.PhoenixConditionOperator;
+import org.cg.rooster.phoenix.Events;
+import org.cg.rooster.phoenix.PhoenixSqlGrammar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Statement generation of {@link PhoenixSqlGrammar}, with the statements served by its shape cache
+ * and, for the *Uncached benchmarks, built from scratch on every call
+ * @author WZ
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SqlGrammarBenchmark {
+
+	@Param({"1", "100"})
+	private int idCount;
+
+	private final PhoenixSqlGrammar grammar = PhoenixSqlGrammar.getInstance();
+	private final Sort sort = new Sort(Direction.DESC, "event_time");
+	private final List<String> columnSelection = ImmutableList.of("tid", "uid", "event_time", "receipt_time", "name");
+
+	private Object[] flatIds;
+	private List<Condition> conditions;
+	private LinkedHashMap<String, Object> columns;
+	private final Map<String, Object> noDynamicColumns = Collections.emptyMap();
+
+	@Setup
+	public void setup() {
+		final List<Object> ids = new ArrayList<Object>();
+		for (Object[] id : EventData.idsOf(EventData.newEvents(0, idCount))) {
+			for (Object component : id) ids.add(component);
+		}
+		flatIds = ids.toArray();
+		conditions = ImmutableList.of(
+				new Condition("tid", PhoenixConditionOperator.EQUAL, 1),
+				new Condition("uid", PhoenixConditionOperator.EQUAL, "user1"),
+				new Condition(
+						new Condition("event_time", PhoenixConditionOperator.GREATER_OR_EQUAL, 0L),
+						PhoenixConditionOperator.AND,
+						new Condition("event_time", PhoenixConditionOperator.LESS, Long.MAX_VALUE)),
+				new Condition("message", PhoenixConditionOperator.IS_NOT_NULL, null));
+		columns = Events.columnsOf(EventData.newEvent(0));
+	}
+
+	@Benchmark
+	public String selectById() {
+		return grammar.selectById(Events.TABLE, sort, 0, idCount, flatIds, null, null);
+	}
+
+	@Benchmark
+	public String selectByIdUncached() {
+		grammar.getShapeCache().clear();
+		return grammar.selectById(Events.TABLE, sort, 0, idCount, flatIds, null, null);
+	}
+
+	@Benchmark
+	public String selectByCondition() {
+		return grammar.selectByCondition(Events.TABLE, sort, 100, conditions, null, columnSelection);
+	}
+
+	@Benchmark
+	public String selectByConditionUncached() {
+		grammar.getShapeCache().clear();
+		return grammar.selectByCondition(Events.TABLE, sort, 100, conditions, null, columnSelection);
+	}
+
+	@Benchmark
+	public String delete() {
+		return grammar.delete(Events.TABLE, idCount, flatIds);
+	}
+
+	@Benchmark
+	public String save() {
+		return grammar.save(Events.TABLE, columns, noDynamicColumns);
+	}
+
+	@Benchmark
+	public String saveUncached() {
+		grammar.getShapeCache().clear();
+		return grammar.save(Events.TABLE, columns, noDynamicColumns);
+	}
+
+}
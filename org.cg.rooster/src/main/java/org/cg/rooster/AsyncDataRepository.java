@@ -0,0 +1,149 @@
+package org.cg.rooster;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cg.rooster.core.AggregateRow;
+import org.cg.rooster.core.BatchSaveReport;
+import org.cg.rooster.core.KeyRange;
+import org.cg.rooster.core.PreparedQuery;
+import org.cg.rooster.core.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Persistable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Asynchronous counterpart of {@link DataRepository}. Every operation returns immediately with a future 
+ * that completes when the underlying JDBC call does, so a caller can fan out many operations concurrently.
+ * @author WZ
+ *
+ * @param <T>
+ * @param <ID>
+ */
+public interface AsyncDataRepository<T extends Persistable<ID>, ID extends Serializable> {
+
+	/**
+	 * @see DataRepository#save(Persistable)
+	 */
+	public <S extends T> ListenableFuture<S> save (S entity);
+	
+	/**
+	 * @see DataRepository#save(Iterable)
+	 */
+	public <S extends T> ListenableFuture<Iterable<S>> save (final Iterable<S> entities);
+	
+	/**
+	 * @see DataRepository#saveBatch(Iterable)
+	 */
+	public <S extends T> ListenableFuture<BatchSaveReport> saveBatch (final Iterable<S> entities);
+	
+	/**
+	 * @see DataRepository#exists(Serializable)
+	 */
+	public ListenableFuture<Boolean> exists (ID id);
+	
+	/**
+	 * @see DataRepository#existsAll(Iterable)
+	 */
+	public ListenableFuture<Set<ID>> existsAll (final Iterable<ID> ids);
+	
+	/**
+	 * @see DataRepository#existsWhere(Query)
+	 */
+	public ListenableFuture<Boolean> existsWhere (Query query);
+	
+	/**
+	 * @see DataRepository#count()
+	 */
+	public ListenableFuture<Long> count ();
+	
+	/**
+	 * @see DataRepository#count(Query)
+	 */
+	public ListenableFuture<Long> count (Query query);
+	
+	/**
+	 * @see DataRepository#approximateCount()
+	 */
+	public ListenableFuture<Long> approximateCount ();
+	
+	/**
+	 * @see DataRepository#delete(Serializable)
+	 */
+	public ListenableFuture<Boolean> delete (ID id);
+	
+	/**
+	 * @see DataRepository#delete(Iterable)
+	 */
+	public ListenableFuture<Long> delete (final Iterable<ID> ids);
+	
+	/**
+	 * @see DataRepository#delete(Query)
+	 */
+	public ListenableFuture<Long> delete (Query query);
+	
+	/**
+	 * @see DataRepository#get(Serializable)
+	 */
+	public ListenableFuture<T> get (ID id);
+	
+	/**
+	 * @see DataRepository#getAll(Iterable)
+	 */
+	public ListenableFuture<Map<ID, T>> getAll (final Iterable<ID> ids);
+	
+	/**
+	 * @see DataRepository#findAll()
+	 */
+	public ListenableFuture<Iterable<T>> findAll ();
+	
+	/**
+	 * @see DataRepository#find(Query)
+	 */
+	public ListenableFuture<Iterable<T>> find (Query query);
+	
+	/**
+	 * @see DataRepository#find(Query, RowMapper)
+	 */
+	public <R> ListenableFuture<List<R>> find (Query query, RowMapper<R> rowMapper);
+	
+	/**
+	 * @see DataRepository#find(Query, Class)
+	 */
+	public <R> ListenableFuture<List<R>> find (Query query, Class<R> type);
+	
+	/**
+	 * @see DataRepository#find(PreparedQuery.Parameters)
+	 */
+	public ListenableFuture<Iterable<T>> find (PreparedQuery.Parameters parameters);
+	
+	/**
+	 * @see DataRepository#aggregate(Query)
+	 */
+	public ListenableFuture<List<AggregateRow>> aggregate (Query query);
+	
+	/**
+	 * @see DataRepository#find(Query, Pageable)
+	 */
+	public ListenableFuture<Slice<T>> find (Query query, Pageable pageable);
+	
+	/**
+	 * @see DataRepository#splitKeyRange(Query, int)
+	 */
+	public ListenableFuture<List<KeyRange>> splitKeyRange (Query query, int partitions);
+	
+	/**
+	 * @see DataRepository#find(Iterable)
+	 */
+	public ListenableFuture<Iterable<T>> find (final Iterable<ID> ids);
+	
+	/**
+	 * @see DataRepository#find(Iterable, Query)
+	 */
+	public ListenableFuture<Iterable<T>> find (final Iterable<ID> ids, Query query);
+}
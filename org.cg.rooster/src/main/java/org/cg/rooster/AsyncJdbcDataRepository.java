@@ -0,0 +1,430 @@
+package org.cg.rooster;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cg.rooster.core.AggregateRow;
+import org.cg.rooster.core.BatchSaveReport;
+import org.cg.rooster.core.KeyRange;
+import org.cg.rooster.core.PreparedQuery;
+import org.cg.rooster.core.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Persistable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A {@link AsyncDataRepository} that runs the operations of a {@link DataRepository} (e.g. a {@link JdbcDataRepository}) 
+ * on a bounded executor. When the executor is saturated, the returned future fails with a {@link RejectedExecutionException}
+ * instead of blocking the caller.
+ * 
+ * Operations run on executor threads, so they do not join a transaction bound to the calling thread.
+ * 
+ * @author WZ
+ *
+ * @param <T>
+ * @param <ID>
+ */
+public class AsyncJdbcDataRepository <T extends Persistable<ID>, ID extends Serializable> implements AsyncDataRepository<T, ID> {
+
+	public static final int DEFAULT_POOL_SIZE = 16;
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+	
+	private final DataRepository<T, ID> repository;
+	private final ListeningExecutorService executor;
+	private final boolean ownsExecutor;
+	
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong completedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	
+	/**
+	 * Constructor with a own executor of {@link #DEFAULT_POOL_SIZE} threads and {@link #DEFAULT_QUEUE_CAPACITY} queued operations
+	 * 
+	 * @param repository the repository to run the operations on
+	 */
+	public AsyncJdbcDataRepository (DataRepository<T, ID> repository) {
+		this(repository, DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+	}
+	
+	/**
+	 * Constructor with a own bounded executor
+	 * 
+	 * @param repository the repository to run the operations on
+	 * @param poolSize the number of threads
+	 * @param queueCapacity the number of operations that can wait for a thread
+	 */
+	public AsyncJdbcDataRepository (DataRepository<T, ID> repository, int poolSize, int queueCapacity) {
+		this(repository, newBoundedExecutor(poolSize, queueCapacity), true);
+	}
+	
+	/**
+	 * Constructor with a shared executor, which is not shut down by this repository
+	 * 
+	 * @param repository the repository to run the operations on
+	 * @param executor the executor
+	 */
+	public AsyncJdbcDataRepository (DataRepository<T, ID> repository, ExecutorService executor) {
+		this(repository, executor, false);
+	}
+	
+	private AsyncJdbcDataRepository (DataRepository<T, ID> repository, ExecutorService executor, boolean ownsExecutor) {
+		Preconditions.checkNotNull(repository, "repository must be provided");
+		Preconditions.checkNotNull(executor, "executor must be provided");
+		this.repository = repository;
+		this.executor = MoreExecutors.listeningDecorator(executor);
+		this.ownsExecutor = ownsExecutor;
+	}
+	
+	private static ExecutorService newBoundedExecutor (int poolSize, int queueCapacity) {
+		Preconditions.checkArgument(poolSize > 0, "poolSize must be positive");
+		Preconditions.checkArgument(queueCapacity > 0, "queueCapacity must be positive");
+		return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, 
+				new ArrayBlockingQueue<Runnable>(queueCapacity), 
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("rooster-async-%d").build());
+	}
+	
+	public DataRepository<T, ID> getRepository() {
+		return repository;
+	}
+	
+	/**
+	 * @return the number of operations waiting for a thread
+	 */
+	public int getQueueDepth() {
+		return queued.get();
+	}
+	
+	/**
+	 * @return the number of operations running
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+	
+	public long getCompletedCount() {
+		return completedCount.get();
+	}
+	
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+	
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+	
+	/**
+	 * Shut down the executor if it is owned by this repository. Submitted operations still complete.
+	 */
+	public void shutdown () {
+		if (ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	@Override
+	public <S extends T> ListenableFuture<S> save(final S entity) {
+		return submit(new Callable<S>() {
+			@Override
+			public S call() {
+				return repository.save(entity);
+			}
+		});
+	}
+
+	@Override
+	public <S extends T> ListenableFuture<Iterable<S>> save(final Iterable<S> entities) {
+		return submit(new Callable<Iterable<S>>() {
+			@Override
+			public Iterable<S> call() {
+				return repository.save(entities);
+			}
+		});
+	}
+
+	@Override
+	public <S extends T> ListenableFuture<BatchSaveReport> saveBatch(final Iterable<S> entities) {
+		return submit(new Callable<BatchSaveReport>() {
+			@Override
+			public BatchSaveReport call() {
+				return repository.saveBatch(entities);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Boolean> exists(final ID id) {
+		return submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return repository.exists(id);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Set<ID>> existsAll(final Iterable<ID> ids) {
+		return submit(new Callable<Set<ID>>() {
+			@Override
+			public Set<ID> call() {
+				return repository.existsAll(ids);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Boolean> existsWhere(final Query query) {
+		return submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return repository.existsWhere(query);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Long> count() {
+		return submit(new Callable<Long>() {
+			@Override
+			public Long call() {
+				return repository.count();
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Long> count(final Query query) {
+		return submit(new Callable<Long>() {
+			@Override
+			public Long call() {
+				return repository.count(query);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Long> approximateCount() {
+		return submit(new Callable<Long>() {
+			@Override
+			public Long call() {
+				return repository.approximateCount();
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Boolean> delete(final ID id) {
+		return submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return repository.delete(id);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Long> delete(final Iterable<ID> ids) {
+		return submit(new Callable<Long>() {
+			@Override
+			public Long call() {
+				return repository.delete(ids);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Long> delete(final Query query) {
+		return submit(new Callable<Long>() {
+			@Override
+			public Long call() {
+				return repository.delete(query);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<T> get(final ID id) {
+		return submit(new Callable<T>() {
+			@Override
+			public T call() {
+				return repository.get(id);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Map<ID, T>> getAll(final Iterable<ID> ids) {
+		return submit(new Callable<Map<ID, T>>() {
+			@Override
+			public Map<ID, T> call() {
+				return repository.getAll(ids);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Iterable<T>> findAll() {
+		return submit(new Callable<Iterable<T>>() {
+			@Override
+			public Iterable<T> call() {
+				return repository.findAll();
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Iterable<T>> find(final Query query) {
+		return submit(new Callable<Iterable<T>>() {
+			@Override
+			public Iterable<T> call() {
+				return repository.find(query);
+			}
+		});
+	}
+
+	@Override
+	public <R> ListenableFuture<List<R>> find(final Query query, final RowMapper<R> rowMapper) {
+		return submit(new Callable<List<R>>() {
+			@Override
+			public List<R> call() {
+				return repository.find(query, rowMapper);
+			}
+		});
+	}
+
+	@Override
+	public <R> ListenableFuture<List<R>> find(final Query query, final Class<R> type) {
+		return submit(new Callable<List<R>>() {
+			@Override
+			public List<R> call() {
+				return repository.find(query, type);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Iterable<T>> find(final PreparedQuery.Parameters parameters) {
+		return submit(new Callable<Iterable<T>>() {
+			@Override
+			public Iterable<T> call() {
+				return repository.find(parameters);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<List<AggregateRow>> aggregate(final Query query) {
+		return submit(new Callable<List<AggregateRow>>() {
+			@Override
+			public List<AggregateRow> call() {
+				return repository.aggregate(query);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Slice<T>> find(final Query query, final Pageable pageable) {
+		return submit(new Callable<Slice<T>>() {
+			@Override
+			public Slice<T> call() {
+				return repository.find(query, pageable);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<List<KeyRange>> splitKeyRange(final Query query, final int partitions) {
+		return submit(new Callable<List<KeyRange>>() {
+			@Override
+			public List<KeyRange> call() {
+				return repository.splitKeyRange(query, partitions);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Iterable<T>> find(final Iterable<ID> ids) {
+		return submit(new Callable<Iterable<T>>() {
+			@Override
+			public Iterable<T> call() {
+				return repository.find(ids);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Iterable<T>> find(final Iterable<ID> ids, final Query query) {
+		return submit(new Callable<Iterable<T>>() {
+			@Override
+			public Iterable<T> call() {
+				return repository.find(ids, query);
+			}
+		});
+	}
+	
+	private <V> ListenableFuture<V> submit (final Callable<V> operation) {
+		//an operation leaves the queue when it starts, or when its future is cancelled before it starts
+		final AtomicBoolean dequeued = new AtomicBoolean();
+		final Runnable dequeue = new Runnable() {
+			@Override
+			public void run() {
+				if (dequeued.compareAndSet(false, true)) queued.decrementAndGet();
+			}
+		};
+		queued.incrementAndGet();
+		final ListenableFuture<V> future;
+		try {
+			future = executor.submit(new Callable<V>() {
+				@Override
+				public V call() throws Exception {
+					dequeue.run();
+					inFlight.incrementAndGet();
+					try {
+						V result = operation.call();
+						completedCount.incrementAndGet();
+						return result;
+					} catch (Exception e) {
+						failedCount.incrementAndGet();
+						throw e;
+					} finally {
+						inFlight.decrementAndGet();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			queued.decrementAndGet();
+			rejectedCount.incrementAndGet();
+			return Futures.immediateFailedFuture(e);
+		}
+		future.addListener(dequeue, MoreExecutors.sameThreadExecutor());
+		return future;
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncJdbcDataRepository [repository=" + repository + ", queueDepth=" + getQueueDepth() 
+				+ ", inFlight=" + getInFlight() + ", completed=" + getCompletedCount() 
+				+ ", failed=" + getFailedCount() + ", rejected=" + getRejectedCount() + "]";
+	}
+}
@@ -0,0 +1,213 @@
+package org.cg.rooster;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.cg.rooster.core.AdaptiveBatchSizer;
+import org.cg.rooster.core.BatchSaveReport.ShapeResult;
+import org.cg.rooster.metrics.RepositoryMetrics;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+/**
+ * Saves the rows of one statement shape in chunks. The caller adds rows as it maps them, 
+ * full chunks are executed on the executor one at a time, so at most one chunk is buffered while another is executing.
+ * 
+ * Without a shared connection each chunk borrows a connection only while it executes and commits it when auto commit is off,
+ * so lanes of different shapes run in parallel on at most as many connections as the executor has threads, however many shapes there are.
+ * With a shared (transactional) connection it never commits.
+ * 
+ * @author WZ
+ *
+ * @param <R> the row type, bound to the statement by the row binder
+ */
+class BatchSaveLane<R> {
+	
+	/**
+	 * Binds the mapped columns of an entity in order, followed by its dynamic columns
+	 */
+	static final ParameterizedPreparedStatementSetter<MappedRow> COLUMNS_BINDER = new ParameterizedPreparedStatementSetter<MappedRow>() {
+		@Override
+		public void setValues(PreparedStatement ps, MappedRow row) throws SQLException {
+			int index = 1;
+			for (Object value : row.columns.values()) {
+				StatementCreatorUtils.setParameterValue(ps, index++, SqlTypeValue.TYPE_UNKNOWN, value);
+			}
+			for (Object value : row.dynamicColumns.values()) {
+				StatementCreatorUtils.setParameterValue(ps, index++, SqlTypeValue.TYPE_UNKNOWN, value);
+			}
+		}
+	};
+	
+	private final String sql;
+	private final ParameterizedPreparedStatementSetter<R> binder;
+	private final DataSource dataSource;
+	private final Connection sharedConnection;
+	private final ExecutorService executor;
+	private final AdaptiveBatchSizer sizer;
+	private final SQLExceptionTranslator translator;
+	private final RepositoryMetrics metrics;
+	private final String table;
+	private final ChunkListener<R> listener;
+	
+	private List<R> buffer;
+	private Future<?> inFlight;
+	private long submittedCount = 0;
+	
+	private PreparedStatement sharedStatement;
+	private volatile long savedCount = 0;
+	private volatile int batchCount = 0;
+	private volatile long elapsedNanos = 0;
+	private volatile RuntimeException error;
+	
+	BatchSaveLane(String sql, ParameterizedPreparedStatementSetter<R> binder, DataSource dataSource, Connection sharedConnection, 
+			ExecutorService executor, AdaptiveBatchSizer sizer, SQLExceptionTranslator translator, RepositoryMetrics metrics, String table, 
+			ChunkListener<R> listener) {
+		this.sql = sql;
+		this.binder = binder;
+		this.dataSource = dataSource;
+		this.sharedConnection = sharedConnection;
+		this.executor = executor;
+		this.sizer = sizer;
+		this.translator = translator;
+		this.metrics = metrics;
+		this.table = table;
+		this.listener = listener;
+		this.buffer = new ArrayList<R>(sizer.getSize());
+	}
+	
+	/**
+	 * Add a row, executing the buffered chunk once it is full
+	 */
+	void add(R row) {
+		submittedCount++;
+		if (error != null) return;
+		buffer.add(row);
+		if (buffer.size() >= sizer.getSize()) {
+			dispatch();
+		}
+	}
+	
+	/**
+	 * Execute the remaining rows, wait for them and close the statement of the shared connection
+	 * 
+	 * @return the result of this lane
+	 */
+	ShapeResult finish() {
+		if (error == null && !buffer.isEmpty()) {
+			dispatch();
+		}
+		awaitInFlight();
+		JdbcUtils.closeStatement(sharedStatement);
+		sharedStatement = null;
+		return new ShapeResult(sql, submittedCount, savedCount, batchCount, elapsedNanos, error);
+	}
+	
+	private void dispatch() {
+		awaitInFlight();
+		final List<R> chunk = buffer;
+		buffer = new ArrayList<R>(sizer.getSize());
+		inFlight = executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				execute(chunk);
+			}
+		});
+	}
+	
+	private void awaitInFlight() {
+		if (inFlight == null) return;
+		try {
+			inFlight.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			error = new IllegalStateException("Interrupted while saving rows", e);
+		} catch (ExecutionException e) {
+			error = new IllegalStateException("Error in saving rows", e.getCause());
+		}
+		inFlight = null;
+	}
+	
+	private void execute(List<R> chunk) {
+		if (error != null) return;
+		final long start = System.nanoTime();
+		Connection connection = null;
+		PreparedStatement statement = null;
+		try {
+			if (sharedConnection != null) {
+				if (sharedStatement == null) sharedStatement = sharedConnection.prepareStatement(sql);
+				statement = sharedStatement;
+			} else {
+				connection = DataSourceUtils.getConnection(dataSource);
+				statement = connection.prepareStatement(sql);
+			}
+			for (R row : chunk) {
+				binder.setValues(statement, row);
+				statement.addBatch();
+			}
+			statement.executeBatch();
+			if (connection != null && !connection.getAutoCommit()) {
+				connection.commit();
+			}
+			savedCount += chunk.size();
+			batchCount++;
+			sizer.record(chunk.size(), System.nanoTime() - start);
+		} catch (SQLException e) {
+			RuntimeException translated = translator.translate("BatchSaveLane", sql, e);
+			error = translated != null ? translated : new UncategorizedSQLException("BatchSaveLane", sql, e);
+		} catch (RuntimeException e) {
+			error = e;
+		} finally {
+			if (connection != null) {
+				JdbcUtils.closeStatement(statement);
+				DataSourceUtils.releaseConnection(connection, dataSource);
+			}
+			final long elapsed = System.nanoTime() - start;
+			elapsedNanos += elapsed;
+			if (metrics.isEnabled()) metrics.recordBatch(table, chunk.size(), elapsed, error != null);
+			//a failed chunk may still have written some of its rows
+			listener.executed(chunk);
+		}
+	}
+	
+	/**
+	 * Notified of each chunk after it is executed, whether or not it succeeded, on the thread that executed it
+	 */
+	interface ChunkListener<R> {
+		
+		void executed(List<R> chunk);
+	}
+	
+	/**
+	 * The mapped columns of an entity, bound without copying them into one argument array
+	 */
+	static final class MappedRow {
+		private final Object id;
+		private final Map<String, Object> columns;
+		private final Map<String, Object> dynamicColumns;
+		
+		MappedRow(Object id, Map<String, Object> columns, Map<String, Object> dynamicColumns) {
+			this.id = id;
+			this.columns = columns;
+			this.dynamicColumns = dynamicColumns;
+		}
+		
+		Object getId() {
+			return id;
+		}
+	}
+}
@@ -1,8 +1,19 @@
 package org.cg.rooster;
 
 import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.cg.rooster.core.AggregateRow;
+import org.cg.rooster.core.BatchSaveReport;
+import org.cg.rooster.core.Cursor;
+import org.cg.rooster.core.KeyRange;
+import org.cg.rooster.core.PreparedQuery;
 import org.cg.rooster.core.Query;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Persistable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.RowMapper;
 
 /**
  * Interface for generic CRUD operations on a repository for a specific type. 
@@ -22,13 +33,24 @@ public interface DataRepository<T extends Persistable<ID>, ID extends Serializab
 	public <S extends T> S save (S entity);
 	
 	/**
-	 * save (create/update) a collection of entities
+	 * save (create/update) a collection of entities. They are saved in chunks that commit separately when auto commit is off,
+	 * so a failure can leave the chunks before it saved.
 	 * 
 	 * @param entities the entities to save
-	 * @return the saved entities, or empty if failed
+	 * @return the saved entities, if failed only the ones saved before the failure
 	 */
 	public <S extends T> Iterable<S> save (final Iterable<S> entities);
 	
+	/**
+	 * save (create/update) a collection of entities that may map to different statements, 
+	 * e.g. with different dynamic columns. Entities are grouped by statement and each group is saved in batches.
+	 * The order of saves across groups is not defined.
+	 * 
+	 * @param entities the entities to save
+	 * @return the result of each statement group
+	 */
+	public <S extends T> BatchSaveReport saveBatch (final Iterable<S> entities);
+	
 	/**
 	 * check if the entity exist by id
 	 * 
@@ -37,6 +59,24 @@ public interface DataRepository<T extends Persistable<ID>, ID extends Serializab
 	 */
 	public boolean exists (ID id);
 	
+	/**
+	 * check which of the ids exist, reading only the primary key columns.
+	 * The set holds the id instances passed in and compares them with their own equals, so array ids such as
+	 * Object[] are matched by identity: look up the instances that were passed, not equal copies of them.
+	 * 
+	 * @param ids the ids list
+	 * @return the requested id instances that exist, in the order of the ids
+	 */
+	public Set<ID> existsAll (final Iterable<ID> ids);
+	
+	/**
+	 * check if any entity matches the query conditions, reading only the primary key columns of the first match
+	 * 
+	 * @param query the query, only its conditions are used
+	 * @return true if an entity matches
+	 */
+	public boolean existsWhere (Query query);
+	
 	/**
 	 * get the total number of entities in the table
 	 * 
@@ -44,6 +84,21 @@ public interface DataRepository<T extends Persistable<ID>, ID extends Serializab
 	 */
 	public long count ();
 	
+	/**
+	 * get the number of entities matching the query conditions
+	 * 
+	 * @param query the query, only its conditions are used
+	 * @return the number of rows
+	 */
+	public long count (Query query);
+	
+	/**
+	 * estimate the total number of entities from the table statistics without scanning the table
+	 * 
+	 * @return the estimated number of rows, or -1 if no statistics were collected
+	 */
+	public long approximateCount ();
+	
 	/**
 	 * delete a entity by id
 	 *
@@ -54,12 +109,23 @@ public interface DataRepository<T extends Persistable<ID>, ID extends Serializab
 	
 	
 	/**
-	 * delete a collection of entities by their ids
+	 * delete a collection of entities by their ids. The ids are deleted in chunks that run in parallel, 
+	 * each chunk is committed on its own unless the calling thread is in a transaction
 	 * 
 	 * @param ids the ids list
-	 * @return if succeed
+	 * @return the number of rows deleted. A chunk that fails is logged and its rows are left in place,
+	 * the rows of the other chunks stay deleted and are counted
+	 */
+	public long delete (final Iterable<ID> ids);
+	
+	/**
+	 * delete the entities matching the query conditions with a single statement, without reading them first
+	 * 
+	 * @param query the query, only its conditions are used and there must be at least one.
+	 * The deleted ids are not known, so an entity cache of the repository is cleared entirely
+	 * @return the number of rows deleted, or -1 if failed
 	 */
-	public boolean delete (final Iterable<ID> ids);
+	public long delete (Query query);
 	
 	/**
 	 * get a entity by id
@@ -69,6 +135,14 @@ public interface DataRepository<T extends Persistable<ID>, ID extends Serializab
 	 */
 	public T get (ID id);
 	    	
+	/**
+	 * get entities by a collection of ids
+	 * 
+	 * @param ids the ids list
+	 * @return the found entities keyed by the requested id instances, in the order of the ids
+	 */
+	public Map<ID, T> getAll (final Iterable<ID> ids);
+	
 	/**
 	 * find all entities
 	 * 
@@ -84,6 +158,96 @@ public interface DataRepository<T extends Persistable<ID>, ID extends Serializab
 	 */
 	public Iterable<T> find (Query query);
 	
+	/**
+	 * find rows with query, mapped by the row mapper instead of the entity mapper. 
+	 * Use it with the column selection of the query to read only the selected columns
+	 * 
+	 * @param query the query
+	 * @param rowMapper the row mapper, reading only the selected columns
+	 * @return a list of mapped rows
+	 */
+	public <R> List<R> find (Query query, RowMapper<R> rowMapper);
+	
+	/**
+	 * find rows with query, mapped to instances of a class by matching column names to its properties, 
+	 * e.g. column event_time to property eventTime. Columns without a property are ignored
+	 * 
+	 * @param query the query, usually with a column selection
+	 * @param type the class with a public no-arg constructor and setters
+	 * @return a list of mapped rows
+	 */
+	public <R> List<R> find (Query query, Class<R> type);
+	
+	/**
+	 * compile a query once into its SQL and parameter slots, 
+	 * to run it many times with different values with {@link #find(PreparedQuery.Parameters)}
+	 * 
+	 * @param query the query, conditions may use {@link PreparedQuery#param(String)} as values
+	 * @return the prepared query
+	 */
+	public PreparedQuery prepare (Query query);
+	
+	/**
+	 * find entities with a prepared query and the values bound to it
+	 * 
+	 * @param parameters the values, from {@link PreparedQuery#bind()} of a query prepared by this repository
+	 * @return a collection of entities
+	 */
+	public Iterable<T> find (PreparedQuery.Parameters parameters);
+	
+	/**
+	 * aggregate entities in the database with a query that has aggregates, grouped by its group by columns
+	 * 
+	 * @param query the query with aggregates
+	 * @return a row per group, with the group by values followed by the aggregate results
+	 */
+	public List<AggregateRow> aggregate (Query query);
+	
+	/**
+	 * find a slice of entities with query in primary key order. 
+	 * Pages are fetched by keyset, continue with {@link Slice#nextPageable()} of the previous slice.
+	 * 
+	 * @param query the query, its limit is ignored and the primary key columns are added to its column selection
+	 * @param pageable the pageable, use a {@link org.cg.rooster.core.KeysetPageable} or a first page request
+
+	 * @return the slice of entities
+	 */
+	public Slice<T> find (Query query, Pageable pageable);
+	
+	/**
+	 * stream entities with query. Rows are mapped as the cursor is consumed, 
+	 * and {@link Query#NO_LIMIT} is supported. The cursor must be closed unless it is consumed to the end.
+	 * 
+	 * @param query the query
+	 * @return a cursor over the entities
+	 */
+	public Cursor<T> stream (Query query);
+	
+	/**
+	 * stream entities with query, scanning key ranges of it in parallel. Each range runs as its own statement, 
+	 * the rows are merged into one cursor. When the query is sorted by the column of the ranges first, 
+	 * the rows of the ranges are returned range after range and keep the sort, any other sort is not applied 
+	 * and the rows are returned as they are read. The limit of the query applies to the merged rows.
+	 * 
+	 * @param query the query
+	 * @param ranges the key ranges, e.g. from {@link KeyRange#values(String, Iterable)} or {@link #splitKeyRange(Query, int)}
+	 * @return a cursor over the entities
+	 * @throws IllegalArgumentException if the query is sorted by the column of the ranges 
+	 * and they are not in ascending order or overlap, see {@link KeyRange#isBefore(KeyRange)}
+	 */
+	public Cursor<T> stream (Query query, List<KeyRange> ranges);
+	
+	/**
+	 * split the leading primary key column into ranges of about equal width, 
+	 * between its minimum and maximum values among the entities matching the query conditions
+	 * 
+	 * @param query the query, only its conditions are used
+	 * @param partitions the number of ranges
+	 * @return the ranges in ascending order
+	 * @throws IllegalStateException if the leading primary key column is not integral
+	 */
+	public List<KeyRange> splitKeyRange (Query query, int partitions);
+	
 	/**
 	 * find entities with a collection of ids
 	 * 
@@ -1,29 +1,90 @@
 package org.cg.rooster;
 
 import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.sql.DataSource;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.directory.api.util.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.cg.rooster.core.AdaptiveBatchSizer;
+import org.cg.rooster.core.Aggregate;
+import org.cg.rooster.core.AggregateRow;
+import org.cg.rooster.core.BatchSaveReport;
+import org.cg.rooster.core.BatchSaveReport.ShapeResult;
+import org.cg.rooster.core.ColumnSort;
 import org.cg.rooster.core.Condition;
+import org.cg.rooster.core.Cursor;
+import org.cg.rooster.core.EntityCache;
+import org.cg.rooster.core.Hint;
+import org.cg.rooster.core.KeysetPageable;
+import org.cg.rooster.core.KeyRange;
+import org.cg.rooster.core.KeysetSlice;
+import org.cg.rooster.core.PartitionedCursor;
+import org.cg.rooster.core.PreparedQuery;
 import org.cg.rooster.core.Query;
+import org.cg.rooster.core.ResultSetCursor;
+import org.cg.rooster.core.RowColumnBinder;
 import org.cg.rooster.core.RowColumnMapper;
+import org.cg.rooster.core.SelectableRowColumnMapper;
 import org.cg.rooster.core.SqlGrammar;
 import org.cg.rooster.core.TableDefinition;
+import org.cg.rooster.metrics.BoundBytes;
+import org.cg.rooster.metrics.RepositoryMetrics;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Persistable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.domain.Sort.Order;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * A generic JDBC data repository that implements {@link PagingAndSortingRepository}
@@ -36,11 +97,131 @@ public abstract class JdbcDataRepository <T extends Persistable<ID>, ID extends
 
 	private static final Logger LOG = LoggerFactory.getLogger(JdbcDataRepository.class);
 
+	private static final ExecutorService DEFAULT_PREFETCH_EXECUTOR = Executors.newCachedThreadPool(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("rooster-prefetch-%d").build());
+	private static final ExecutorService DEFAULT_CHUNK_EXECUTOR = boundedExecutor(JdbcDataRepository.DEFAULT_CHUNK_THREADS, "rooster-chunk-%d");
+	
+	public static final int DEFAULT_CHUNK_THREADS = 8;
+	public static final int DEFAULT_MULTI_GET_CHUNK_SIZE = 500;
+	public static final int DEFAULT_DELETE_CHUNK_SIZE = 500;
+	public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+	public static final int DEFAULT_COUNT_CACHE_SIZE = 1024;
+	public static final List<Hint> DEFAULT_LOOKUP_HINTS = Collections.singletonList(Hint.SMALL);
+
 	private final TableDefinition tableDefinition;
 	private final RowColumnMapper<T> rowColumnMapper;
+	private final RowColumnBinder<T> rowColumnBinder;
 	private final JdbcTemplate jdbcTemplate;
 	private final SqlGrammar sqlGrammar;
+	private ExecutorService prefetchExecutor = DEFAULT_PREFETCH_EXECUTOR;
+	private ExecutorService chunkExecutor = DEFAULT_CHUNK_EXECUTOR;
+	private ExecutorService scanExecutor;
+	private int multiGetChunkSize = DEFAULT_MULTI_GET_CHUNK_SIZE;
+	private int deleteChunkSize = DEFAULT_DELETE_CHUNK_SIZE;
+	private List<Hint> lookupHints = DEFAULT_LOOKUP_HINTS;
+	private volatile AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(DEFAULT_MAX_BATCH_SIZE);
+	private volatile WriteBehindBuffer<T, ID> writeBehind;
+	private volatile EntityCache<T, ID> entityCache;
+	//the bean introspection of a row mapper is done once per class, kept by the repository so classes are not pinned
+	private final ConcurrentMap<Class<?>, RowMapper<?>> beanRowMappers = new ConcurrentHashMap<Class<?>, RowMapper<?>>();
+	private volatile Cache<List<Object>, Long> countCache;
+	private long countCacheTtlMillis = 0;
+	private volatile Optional<String> bindStatement;
+	private volatile RepositoryMetrics metrics = RepositoryMetrics.NONE;
+	private volatile boolean callLogging = true;
+	
+	/**
+	 * Maps a row of the primary key columns selected in their definition order
+	 */
+	private final RowMapper<Object[]> keyRowMapper = new RowMapper<Object[]>() {
+		@Override
+		public Object[] mapRow(ResultSet rs, int rowNum) throws SQLException {
+			final Object[] key = new Object[tableDefinition.getPrimaryId().size()];
+			for (int i = 0; i < key.length; i++) {
+				key[i] = rs.getObject(i + 1);
+			}
+			return key;
+		}
+	};
+	
+	/**
+	 * Binds the columns of an entity with {@link RowColumnBinder#bindColumns}
+	 */
+	private final ParameterizedPreparedStatementSetter<T> entityBinder = new ParameterizedPreparedStatementSetter<T>() {
+		//a binder binds the same columns for every entity, so the count is checked on the first one
+		private volatile boolean checked = false;
+		
+		@Override
+		public void setValues(PreparedStatement ps, T entity) throws SQLException {
+			final int next = rowColumnBinder.bindColumns(ps, entity, 1);
+			if (!checked) {
+				Preconditions.checkState(next == rowColumnBinder.getBindColumns().size() + 1, 
+						"rowColumnBinder.bindColumns must bind all columns of getBindColumns");
+				checked = true;
+			}
+		}
+	};
+	
+	/**
+	 * Invalidates the entities of each saved chunk, once it is written
+	 */
+	private final BatchSaveLane.ChunkListener<T> entityInvalidator = new BatchSaveLane.ChunkListener<T>() {
+		@Override
+		public void executed(List<T> chunk) {
+			for (T entity : chunk) {
+				invalidate(entity.getId());
+			}
+		}
+	};
+	
+	/**
+	 * Invalidates the ids of each saved chunk of mapped rows, once it is written
+	 */
+	private final BatchSaveLane.ChunkListener<BatchSaveLane.MappedRow> rowInvalidator = new BatchSaveLane.ChunkListener<BatchSaveLane.MappedRow>() {
+		@SuppressWarnings("unchecked")
+		@Override
+		public void executed(List<BatchSaveLane.MappedRow> chunk) {
+			for (BatchSaveLane.MappedRow row : chunk) {
+				invalidate((ID) row.getId());
+			}
+		}
+	};
+	
+	//binds the ids a transaction wrote to it, per repository
+	private final Object cacheInvalidationKey = new Object();
 
+	/**
+	 * The default scan executor, only created when a partitioned stream runs without an executor set
+	 */
+	private static final class DefaultScanExecutor {
+		
+		private static final ForkJoinPool INSTANCE = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), 
+				new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+					@Override
+					public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+						final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+						thread.setDaemon(true);
+						thread.setName("rooster-scan-" + thread.getPoolIndex());
+						return thread;
+					}
+				}, null, false);
+	}
+	
+	/**
+	 * An executor of at most the given number of threads, idle threads end after a minute
+	 * 
+	 * @param threads the maximum number of threads
+	 * @param nameFormat the thread name format
+	 * @return the executor
+	 */
+	public static ExecutorService boundedExecutor (int threads, String nameFormat) {
+		Preconditions.checkArgument(threads > 0, "threads must be positive");
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, 
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat).build());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+	
 	/**
 	 * Get as primary key
 	 * 
@@ -72,6 +253,7 @@ public abstract class JdbcDataRepository <T extends Persistable<ID>, ID extends
 	 * @param sqlGrammar the sql grammar
 	 * @param lazyinit  is lazy connection initialization or not
 	 */
+	@SuppressWarnings("unchecked")
 	public JdbcDataRepository (TableDefinition tableDefinition, RowColumnMapper<T> rowColumnMapper, DataSource dataSource, SqlGrammar sqlGrammar, boolean lazyinit) {
 		super();
 		Preconditions.checkNotNull(tableDefinition, "tableDefinition must be provided");
@@ -81,6 +263,7 @@ public abstract class JdbcDataRepository <T extends Persistable<ID>, ID extends
 		
 		this.tableDefinition = tableDefinition;
 		this.rowColumnMapper = rowColumnMapper;
+		this.rowColumnBinder = rowColumnMapper instanceof RowColumnBinder ? (RowColumnBinder<T>) rowColumnMapper : null;
 		this.jdbcTemplate = new JdbcTemplate(dataSource, lazyinit);
 		this.jdbcTemplate.setFetchSize(1000);
 		this.sqlGrammar = sqlGrammar;
@@ -102,26 +285,299 @@ public abstract class JdbcDataRepository <T extends Persistable<ID>, ID extends
 		return sqlGrammar;
 	}
 
+	public ExecutorService getPrefetchExecutor() {
+		return prefetchExecutor;
+	}
+
+	/**
+	 * Set the executor that reads rows ahead of the caller for {@link #stream(Query)}. 
+	 * Each open cursor occupies one thread of it.
+	 * 
+	 * @param prefetchExecutor the executor
+	 */
+	public void setPrefetchExecutor(ExecutorService prefetchExecutor) {
+		Preconditions.checkNotNull(prefetchExecutor, "prefetchExecutor must be provided");
+		this.prefetchExecutor = prefetchExecutor;
+	}
+
+	public ExecutorService getChunkExecutor() {
+		return chunkExecutor;
+	}
+
+	/**
+	 * Set the executor that runs the chunks of a multi-id lookup or delete and the statement shapes of a batch save concurrently. 
+	 * Chunks do not join a transaction bound to the calling thread. By default a shared executor of {@link #DEFAULT_CHUNK_THREADS} threads,
+	 * keep it below the size of the connection pool.
+	 * 
+	 * @param chunkExecutor the executor
+	 */
+	public void setChunkExecutor(ExecutorService chunkExecutor) {
+		Preconditions.checkNotNull(chunkExecutor, "chunkExecutor must be provided");
+		this.chunkExecutor = chunkExecutor;
+	}
+
+	/**
+	 * @return the executor set, or the shared {@link ForkJoinPool} of daemon threads created by the first partitioned stream without one
+	 */
+	public ExecutorService getScanExecutor() {
+		return scanExecutor != null ? scanExecutor : DefaultScanExecutor.INSTANCE;
+	}
+
+	/**
+	 * Set the executor that runs the key ranges of a partitioned {@link #stream(Query, List)}, a shared {@link ForkJoinPool} by default, 
+	 * whose daemon threads end when idle and need no shutdown. An executor set here is owned and shut down by the caller. 
+	 * Key ranges do not join a transaction bound to the calling thread.
+	 * 
+	 * @param scanExecutor the executor
+	 */
+	public void setScanExecutor(ExecutorService scanExecutor) {
+		Preconditions.checkNotNull(scanExecutor, "scanExecutor must be provided");
+		this.scanExecutor = scanExecutor;
+	}
+
+	public AdaptiveBatchSizer getBatchSizer() {
+		return batchSizer;
+	}
+
+	/**
+	 * Set the sizer that decides how many rows a batch save sends per JDBC batch
+	 * 
+	 * @param batchSizer the batch sizer
+	 */
+	public void setBatchSizer(AdaptiveBatchSizer batchSizer) {
+		Preconditions.checkNotNull(batchSizer, "batchSizer must be provided");
+		this.batchSizer = batchSizer;
+	}
+
+	public int getMultiGetChunkSize() {
+		return multiGetChunkSize;
+	}
+
+	/**
+	 * Set the maximum number of ids looked up by a single statement
+	 * 
+	 * @param multiGetChunkSize the number of ids per statement
+	 */
+	public void setMultiGetChunkSize(int multiGetChunkSize) {
+		Preconditions.checkArgument(multiGetChunkSize > 0, "multiGetChunkSize must be positive");
+		this.multiGetChunkSize = multiGetChunkSize;
+	}
+
+	public int getDeleteChunkSize() {
+		return deleteChunkSize;
+	}
+
+	/**
+	 * Set the maximum number of ids deleted by a single statement, each chunk of ids is committed on its own
+	 * 
+	 * @param deleteChunkSize the number of ids per statement
+	 */
+	public void setDeleteChunkSize(int deleteChunkSize) {
+		Preconditions.checkArgument(deleteChunkSize > 0, "deleteChunkSize must be positive");
+		this.deleteChunkSize = deleteChunkSize;
+	}
+
+	public List<Hint> getLookupHints() {
+		return lookupHints;
+	}
+
+	/**
+	 * Set the optimizer hints of the statements that read rows by id: get, getAll, exists, existsAll and find by ids. 
+	 * {@link Hint#SMALL} by default, the hints of a query replace them for find by ids with the query. Deletes by id run without hints
+	 * 
+	 * @param lookupHints the hints, empty for none
+	 */
+	public void setLookupHints(List<Hint> lookupHints) {
+		Preconditions.checkNotNull(lookupHints, "lookupHints must be provided");
+		this.lookupHints = lookupHints;
+	}
+
+	public EntityCache<T, ID> getEntityCache() {
+		return entityCache;
+	}
+
+	/**
+	 * Set the cache consulted by {@link #get(Serializable)} and {@link #exists(Serializable)} before the database.
+	 * Saves and deletes through this repository invalidate their ids, writes from elsewhere are only seen once the entry expires.
+	 * In a transaction the cache is neither read nor filled, and the ids written are invalidated again once it completes.
+	 * The entities returned from the cache are shared, they must not be changed.
+	 * 
+	 * @param entityCache the cache, or null to disable caching
+	 */
+	public void setEntityCache(EntityCache<T, ID> entityCache) {
+		this.entityCache = entityCache;
+	}
+
+	public long getCountCacheTtlMillis() {
+		return countCacheTtlMillis;
+	}
+
+	/**
+	 * Cache the results of {@link #count()} and {@link #count(Query)} by statement and parameters. 
+	 * A cached count is not invalidated by writes, it can be behind by up to the time to live.
+	 * 
+	 * @param countCacheTtlMillis the time to live in milliseconds, or 0 to disable caching
+	 */
+	public synchronized void setCountCacheTtlMillis(long countCacheTtlMillis) {
+		Preconditions.checkArgument(countCacheTtlMillis >= 0, "countCacheTtlMillis must not be negative");
+		this.countCacheTtlMillis = countCacheTtlMillis;
+		this.countCache = countCacheTtlMillis == 0 ? null : CacheBuilder.newBuilder()
+				.maximumSize(DEFAULT_COUNT_CACHE_SIZE)
+				.expireAfterWrite(countCacheTtlMillis, TimeUnit.MILLISECONDS)
+				.<List<Object>, Long>build();
+	}
+
+	public RepositoryMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set the metrics that record the latency, rows, bound bytes and errors of every operation, 
+	 * e.g. a shared {@link org.cg.rooster.metrics.MetricsRegistry}
+	 * 
+	 * @param metrics the metrics, or null to stop recording
+	 */
+	public void setMetrics(RepositoryMetrics metrics) {
+		this.metrics = metrics != null ? metrics : RepositoryMetrics.NONE;
+	}
+
+	public boolean isCallLogging() {
+		return callLogging;
+	}
+
+	/**
+	 * Log every call at INFO level, including its ids or query. On by default, turn it off on busy repositories 
+	 * and rely on {@link #setMetrics(RepositoryMetrics)} instead. Errors are always logged.
+	 * 
+	 * @param callLogging true to log every call
+	 */
+	public void setCallLogging(boolean callLogging) {
+		this.callLogging = callLogging;
+	}
+
+	/**
+	 * Queue saves and deletes in a buffer that is written in batches on a background thread, 
+	 * instead of writing each of them in its own statement. Writes of the same id are coalesced, the last one wins.
+	 * {@link #get(Serializable)} and {@link #exists(Serializable)} see the pending writes, other lookups do not.
+	 * Within a transaction the pending writes are flushed and the repository writes directly. 
+	 * Flushes never join a transaction, so a rollback does not undo the pending writes of other threads.
+	 * A failed write is retried by later flushes unless the id was written again since, 
+	 * it is given up after {@link WriteBehindBuffer#MAX_ATTEMPTS} attempts and counted in {@link #getFailedWriteCount()}.
+	 * 
+	 * @param capacity the maximum number of pending ids, writers block when it is reached
+	 * @param flushSize the number of pending ids that triggers a flush
+	 * @param flushIntervalMillis the maximum time a write stays pending
+	 */
+	public synchronized void enableWriteBehind(int capacity, int flushSize, long flushIntervalMillis) {
+		Preconditions.checkState(!tableDefinition.isReadonly(), "table is readonly");
+		Preconditions.checkState(writeBehind == null, "write-behind is already enabled");
+		this.writeBehind = new WriteBehindBuffer<T, ID>(tableDefinition.getTableName(), new WriteBehindBuffer.Writer<T, ID>() {
+			@Override
+			public List<T> save(List<T> entities) {
+				final BatchSaveReport report = saveBatchNow(entities, false);
+				if (report.isSucceed()) return Collections.emptyList();
+				final Set<T> saved = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+				saved.addAll(savedEntities(entities, report));
+				final List<T> unsaved = new ArrayList<T>();
+				for (T entity : entities) {
+					if (!saved.contains(entity)) unsaved.add(entity);
+				}
+				return unsaved;
+			}
+			@Override
+			public boolean delete(List<ID> ids) {
+				return deleteNow(ids, false).failedChunks == 0;
+			}
+		}, capacity, flushSize, flushIntervalMillis);
+		LOG.info(String.format("[writeBehind]enabled for %s, capacity:%s; flushSize:%s; flushInterval:%sms", 
+				tableDefinition.getTableName(), capacity, flushSize, flushIntervalMillis));
+	}
+	
+	/**
+	 * Write the pending writes and stop buffering. Has no effect if write-behind is not enabled.
+	 */
+	public synchronized void disableWriteBehind() {
+		final WriteBehindBuffer<T, ID> buffer = writeBehind;
+		if (buffer == null) return;
+		writeBehind = null;
+		buffer.close();
+		LOG.info(String.format("[writeBehind]disabled for %s, written:%s; coalesced:%s; failed:%s", 
+				tableDefinition.getTableName(), buffer.getWrittenCount(), buffer.getCoalescedCount(), buffer.getFailedCount()));
+	}
+	
+	public boolean isWriteBehind() {
+		return writeBehind != null;
+	}
+	
+	/**
+	 * @return the number of ids with a pending write
+	 */
+	public int getPendingWriteCount() {
+		final WriteBehindBuffer<T, ID> buffer = writeBehind;
+		return buffer == null ? 0 : buffer.size();
+	}
+	
+	/**
+	 * @return the number of pending writes given up after failing {@link WriteBehindBuffer#MAX_ATTEMPTS} times
+	 */
+	public long getFailedWriteCount() {
+		final WriteBehindBuffer<T, ID> buffer = writeBehind;
+		return buffer == null ? 0 : buffer.getFailedCount();
+	}
+	
+	/**
+	 * Write the pending writes of write-behind, waiting for them. 
+	 * They are written on their own connections, outside a transaction of the calling thread.
+	 * 
+	 * @return true if all pending writes succeeded, or there were none
+	 */
+	public boolean flush() {
+		final WriteBehindBuffer<T, ID> buffer = writeBehind;
+		return buffer == null || buffer.flush();
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public <S extends T> S save (S entity) {
+	public <S extends T> S save (final S entity) {
 		Preconditions.checkNotNull(entity, "entity must be provided");
 		Preconditions.checkState(rowColumnMapper!=null, "rowColumnMapper must be initiated");
 		Preconditions.checkState(!tableDefinition.isReadonly(), "table is readonly");
-
-		final Map<String, Object> columns = rowColumnMapper.mapColumns(entity);		
-		final Map<String, Object> dynamicColumns = rowColumnMapper.mapDynamicColumns(entity);
 		
-		Preconditions.checkState(columns!=null && !columns.isEmpty(), "rowColumnMapper.mapColumns must be implemented");
-		Preconditions.checkState(dynamicColumns!=null, "rowColumnMapper.mapDynamicColumns cannot cannot return null");
-				
-		boolean isSucceed = this.upsert(
-				sqlGrammar.save(tableDefinition, columns, dynamicColumns), 
-				ArrayUtils.addAll(columns.values().toArray(), dynamicColumns.values().toArray()));	
+		final WriteBehindBuffer<T, ID> buffer = bufferOutsideTransaction();
+		if (buffer != null) {
+			buffer.save(entity);
+			return entity;
+		}
+
+		long start = System.nanoTime();
+		boolean isSucceed;
+		long boundBytes = 0;
+		final String bindSql = bindStatement();
+		if (bindSql != null) {
+			//the binder sets the columns without mapping them, so the bound bytes are left unknown
+			isSucceed = this.upsert(bindSql, new PreparedStatementSetter() {
+				@Override
+				public void setValues(PreparedStatement ps) throws SQLException {
+					entityBinder.setValues(ps, entity);
+				}
+			});
+		} else {
+			final Map<String, Object> columns = rowColumnMapper.mapColumns(entity);		
+			final Map<String, Object> dynamicColumns = rowColumnMapper.mapDynamicColumns(entity);
+			
+			Preconditions.checkState(columns!=null && !columns.isEmpty(), "rowColumnMapper.mapColumns must be implemented");
+			Preconditions.checkState(dynamicColumns!=null, "rowColumnMapper.mapDynamicColumns cannot cannot return null");
+					
+			final Object[] args = ArrayUtils.addAll(columns.values().toArray(), dynamicColumns.values().toArray());
+			boundBytes = boundBytes(args);
+			isSucceed = this.upsert(sqlGrammar.save(tableDefinition, columns, dynamicColumns), args);
+		}
+		invalidate(entity.getId());
+		record("save", start, isSucceed ? 1 : 0, boundBytes, !isSucceed);
 		if (isSucceed) {
-			LOG.info(String.format("[save]entity saved: %s.", entity));
+			if (logCalls()) LOG.info(String.format("[save]entity saved: %s.", entity));
 			return entity;
 		} else {
 			return null;
@@ -133,248 +589,1266 @@ public abstract class JdbcDataRepository <T extends Persistable<ID>, ID extends
 	 */
 	@Override
 	public <S extends T> Iterable<S> save (final Iterable<S> entities) {
-		Preconditions.checkNotNull(entities, "entities must be provided");
-		Preconditions.checkState(rowColumnMapper!=null, "rowColumnMapper must be initiated");
-		Preconditions.checkState(!tableDefinition.isReadonly(), "table is readonly");
-		
-		Map<String, Object> columns;
-		Map<String, Object> dynamicColumns;
-		Iterator<S> iter = entities.iterator();
-		S entity;
-		String createQuery = null;
-		List<Object[]> batchArgs = new LinkedList<Object[]>();
-		while (iter.hasNext()) {
-			entity = iter.next();
-			columns = rowColumnMapper.mapColumns(entity);
-			dynamicColumns = rowColumnMapper.mapDynamicColumns(entity);
-			Preconditions.checkState(columns!=null && !columns.isEmpty(), "rowColumnMapper.mapColumns must be implemented");
-			Preconditions.checkState(dynamicColumns!=null, "rowColumnMapper.mapDynamicColumns cannot cannot return null");
-			batchArgs.add(ArrayUtils.addAll(columns.values().toArray(), dynamicColumns.values().toArray()));
-			String currentQuery = sqlGrammar.save(tableDefinition, columns, dynamicColumns);
-			Preconditions.checkState(!Strings.isEmpty(currentQuery), "inconsistent row column mapping in batch");
-			if (createQuery != null) {
-		      Preconditions.checkState(createQuery.equals(currentQuery), "inconsistent row column mapping in batch");
+		final WriteBehindBuffer<T, ID> buffer = bufferOutsideTransaction();
+		if (buffer != null) {
+			Preconditions.checkNotNull(entities, "entities must be provided");
+			Preconditions.checkState(!tableDefinition.isReadonly(), "table is readonly");
+			for (S entity : entities) {
+				buffer.save(entity);
 			}
-			createQuery = currentQuery;
+			return entities;
 		}
-		long start = System.currentTimeMillis();
-		boolean isSucceed = this.upsertBatch(createQuery, batchArgs);
-		long end = System.currentTimeMillis() - start;
-		if (isSucceed) {
-			LOG.info(String.format("[save]saved %s entities in %sms", batchArgs.size(), end));
+		BatchSaveReport report = saveBatch(entities);
+		if (report.isSucceed()) {
+			if (logCalls()) LOG.info(String.format("[save]saved %s entities in %s statement shapes in %sms",
+					report.getSavedCount(), report.getShapes().size(), report.getElapsedMillis()));
 			return entities;
 		} else {
-			List<S> empty = Collections.emptyList();
-			return empty;
+			for (ShapeResult shape : report.getShapes()) {
+				if (shape.isSucceed()) continue;
+				LOG.error(String.format("Error in upserting records, %s of %s saved with %s", 
+						shape.getSavedCount(), shape.getSubmittedCount(), shape.getStatement()));
+				LOG.error(Throwables.getStackTraceAsString(shape.getError()));
+			}
+			return savedEntities(entities, report);
 		}
 	}
-
+	
 	/**
-	 * {@inheritDoc}
+	 * The entities of a statement shape are saved in order, chunk by chunk, 
+	 * so the ones saved before a chunk failed are the first saved count of their shape
+	 * 
+	 * @param entities the entities that were saved
+	 * @param report the report of the save
+	 * @return the saved entities
 	 */
-	@Override
-	public boolean exists (ID id) {
-		Preconditions.checkNotNull(id, "id must be provided");
-		return this.get(id) != null;
+	private <S extends T> List<S> savedEntities (final Iterable<S> entities, BatchSaveReport report) {
+		final Map<String, Long> remaining = new HashMap<String, Long>();
+		for (ShapeResult shape : report.getShapes()) {
+			remaining.put(shape.getStatement(), shape.getSavedCount());
+		}
+		final String bindSql = bindStatement();
+		final List<S> saved = new ArrayList<S>();
+		for (S entity : entities) {
+			final String statement = bindSql != null ? bindSql 
+					: sqlGrammar.save(tableDefinition, rowColumnMapper.mapColumns(entity), rowColumnMapper.mapDynamicColumns(entity));
+			final Long count = remaining.get(statement);
+			if (count != null && count > 0) {
+				saved.add(entity);
+				remaining.put(statement, count - 1);
+			}
+		}
+		return saved;
 	}
-
+	
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public long count() {
-		LOG.info(String.format("[count]%s", tableDefinition.getTableName()));
-		return getJdbcTemplate().queryForObject(sqlGrammar.count(tableDefinition), Long.class);
+	public <S extends T> BatchSaveReport saveBatch (final Iterable<S> entities) {
+		//pending writes go first, so they do not overwrite the entities saved here
+		flush();
+		return saveBatchNow(entities, true);
+	}
+	
+	/**
+	 * @param joinTransaction false to save on connections of the chunk executor even if the calling thread is in a transaction
+	 */
+	private <S extends T> BatchSaveReport saveBatchNow (final Iterable<S> entities, boolean joinTransaction) {
+		Preconditions.checkNotNull(entities, "entities must be provided");
+		Preconditions.checkState(rowColumnMapper!=null, "rowColumnMapper must be initiated");
+		Preconditions.checkState(!tableDefinition.isReadonly(), "table is readonly");
+		
+		long start = System.nanoTime();
+		final DataSource dataSource = getJdbcTemplate().getDataSource();
+		//in a transaction all shapes share its connection and run one after another on this thread,
+		//otherwise each shape runs on its own connection in parallel
+		final Connection sharedConnection = joinTransaction && TransactionSynchronizationManager.hasResource(dataSource) 
+				? DataSourceUtils.getConnection(dataSource) : null;
+		final ExecutorService executor = sharedConnection != null ? MoreExecutors.sameThreadExecutor() : chunkExecutor;
+		final AdaptiveBatchSizer sizer = batchSizer;
+		final String bindSql = bindStatement();
+		final Map<String, BatchSaveLane<BatchSaveLane.MappedRow>> lanes = new LinkedHashMap<String, BatchSaveLane<BatchSaveLane.MappedRow>>();
+		BatchSaveLane<T> bindLane = null;
+		final List<ShapeResult> results = new ArrayList<ShapeResult>();
+		long boundBytes = 0;
+		try {
+			for (S entity : entities) {
+				if (bindSql != null) {
+					//a single statement shape, the entity is bound without mapping its columns and its bound bytes are unknown
+					if (bindLane == null) {
+						bindLane = new BatchSaveLane<T>(bindSql, entityBinder, dataSource, sharedConnection, executor, sizer, 
+								getJdbcTemplate().getExceptionTranslator(), metrics, tableDefinition.getTableName(), entityInvalidator);
+					}
+					bindLane.add(entity);
+					continue;
+				}
+				final Map<String, Object> columns = rowColumnMapper.mapColumns(entity);
+				final Map<String, Object> dynamicColumns = rowColumnMapper.mapDynamicColumns(entity);
+				Preconditions.checkState(columns!=null && !columns.isEmpty(), "rowColumnMapper.mapColumns must be implemented");
+				Preconditions.checkState(dynamicColumns!=null, "rowColumnMapper.mapDynamicColumns cannot cannot return null");
+				final String createQuery = sqlGrammar.save(tableDefinition, columns, dynamicColumns);
+				Preconditions.checkState(!Strings.isEmpty(createQuery), "no statement generated for row column mapping");
+				BatchSaveLane<BatchSaveLane.MappedRow> lane = lanes.get(createQuery);
+				if (lane == null) {
+					lane = new BatchSaveLane<BatchSaveLane.MappedRow>(createQuery, BatchSaveLane.COLUMNS_BINDER, dataSource, sharedConnection, executor, sizer, 
+							getJdbcTemplate().getExceptionTranslator(), metrics, tableDefinition.getTableName(), rowInvalidator);
+					lanes.put(createQuery, lane);
+				}
+				boundBytes += boundBytes(columns.values()) + boundBytes(dynamicColumns.values());
+				lane.add(new BatchSaveLane.MappedRow(entity.getId(), columns, dynamicColumns));
+			}
+		} finally {
+			if (bindLane != null) {
+				results.add(bindLane.finish());
+			}
+			for (BatchSaveLane<BatchSaveLane.MappedRow> lane : lanes.values()) {
+				results.add(lane.finish());
+			}
+			if (sharedConnection != null) {
+				DataSourceUtils.releaseConnection(sharedConnection, dataSource);
+			}
+		}
+		final BatchSaveReport report = new BatchSaveReport(results, millisSince(start));
+		record("saveBatch", start, report.getSavedCount(), boundBytes, !report.isSucceed());
+		return report;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public boolean delete (ID id) {
+	public boolean exists (ID id) {
 		Preconditions.checkNotNull(id, "id must be provided");
-		Preconditions.checkState(tableDefinition.isMutable(), "table is immutable");
-		Preconditions.checkState(!tableDefinition.isReadonly(), "table is readonly");
-
-		final Object[] idColumns = (id instanceof Object[]) ? (Object[]) id : new Object[]{id};
+		final Object[] idColumns = toIdColumns(id);
 		Preconditions.checkArgument(idColumns.length == tableDefinition.getPrimaryId().size(), "all id components must be provided ");
-
-		boolean isSucceed = this.upsert(sqlGrammar.delete(tableDefinition, 1, idColumns), filterOutNull(idColumns));
-		if (isSucceed) LOG.info(String.format("[delete]deleted %s", id));
-		return isSucceed;
+		
+		long start = System.nanoTime();
+		final Boolean known = knownExistence(id);
+		if (known != null) {
+			record("exists", start, known ? 1 : 0, 0, false);
+			return known;
+		}
+		final EntityCache<T, ID> cache = cacheOutsideTransaction();
+		final long stamp = cache != null ? cache.stamp(id) : 0;
+		final boolean found = !recorded("exists", start, boundBytes(idColumns), new Callable<List<Object[]>>() {
+			@Override
+			public List<Object[]> call() {
+				return queryIds(Collections.singletonList(idColumns), null, 1, null,
+						tableDefinition.getPrimaryId(), lookupHints, keyRowMapper);
+			}
+		}).isEmpty();
+		if (!found && cache != null) {
+			cache.put(id, null, stamp);
+		}
+		if (logCalls()) LOG.info(String.format("[exists]id:%s; found:%s in %sms", Arrays.toString(idColumns), found, millisSince(start)));
+		return found;
 	}
-
+	
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public boolean delete (final Iterable<ID> ids) {
+	public Set<ID> existsAll (Iterable<ID> ids) {
 		Preconditions.checkNotNull(ids, "ids must be provided");
-		Preconditions.checkArgument(ids.iterator().hasNext(), "ids must be provided");
-		Preconditions.checkState(tableDefinition.isMutable(), "table is immutable");
-		Preconditions.checkState(!tableDefinition.isReadonly(), "table is readonly");
 		
-		//need to put all id components for all ids in a single flat array
-		final List<Object> idColumnValuesList = new LinkedList<Object>();
-		int idSize = 0;
+		final EntityCache<T, ID> cache = cacheOutsideTransaction();
+		final List<ID> idInstances = new ArrayList<ID>();
+		final List<Boolean> knownList = new ArrayList<Boolean>();
+		final List<Long> stamps = new ArrayList<Long>();
+		final List<Object[]> unknownIdList = new ArrayList<Object[]>();
 		for (ID id : ids) {
-			List<Object> idList;
-			if (id instanceof Object[]) {
-				idList = Arrays.asList((Object[]) id);
-			} else {
-				idList = Collections.<Object>singletonList(id);
+			Preconditions.checkNotNull(id, "id must be provided");
+			final Boolean known = knownExistence(id);
+			if (known == null) {
+				final Object[] idColumns = toIdColumns(id);
+				Preconditions.checkArgument(idColumns.length == tableDefinition.getPrimaryId().size(), "all id components must be provided ");
+				unknownIdList.add(idColumns);
 			}
-			idColumnValuesList.addAll(idList);
-			idSize++;
+			idInstances.add(id);
+			knownList.add(known);
+			stamps.add(known == null && cache != null ? cache.stamp(id) : 0L);
 		}
-		Object[] idsArray = idColumnValuesList.toArray();
-		boolean isSucceed = this.upsert(sqlGrammar.delete(tableDefinition, idSize, idsArray), filterOutNull(idsArray));
-		if (isSucceed) LOG.info(String.format("[delete]%s entities deleted", idSize));
-		return isSucceed;
+		
+		long start = System.nanoTime();
+		final Set<List<Object>> foundKeys = new HashSet<List<Object>>();
+		if (!unknownIdList.isEmpty()) {
+			final List<Object[]> keys = recorded("existsAll", start, boundBytes(unknownIdList), new Callable<List<Object[]>>() {
+				@Override
+				public List<Object[]> call() {
+					//each id matches at most one row, so a chunk never returns more rows than it has ids
+					return queryIdChunks(unknownIdList, null, multiGetChunkSize, null, tableDefinition.getPrimaryId(), lookupHints, keyRowMapper);
+				}
+			});
+			for (Object[] key : keys) {
+				foundKeys.add(keyOf(key));
+			}
+		}
+		final Set<ID> result = new LinkedHashSet<ID>();
+		for (int i = 0; i < idInstances.size(); i++) {
+			final ID id = idInstances.get(i);
+			final Boolean known = knownList.get(i);
+			if (known != null) {
+				if (known) result.add(id);
+			} else if (foundKeys.contains(keyOf(toIdColumns(id)))) {
+				result.add(id);
+			} else if (cache != null) {
+				cache.put(id, null, stamps.get(i));
+			}
+		}
+		if (logCalls()) LOG.info(String.format("[existsAll]ids:%s; queried:%s; found %s in %sms",
+				idInstances.size(), unknownIdList.size(), result.size(), millisSince(start)));
+		return result;
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public T get (ID id) {
-		final Object[] idColumns = (id instanceof Object[]) ? (Object[]) id : new Object[]{id};
-		Preconditions.checkArgument(idColumns.length == tableDefinition.getPrimaryId().size(), "all id components must be provided ");
-		LOG.info(String.format("[get]id:%s", Arrays.toString(idColumns)));
+	public boolean existsWhere (Query query) {
+		Preconditions.checkNotNull(query, "query must be provided");
 		
-		long start = System.currentTimeMillis();
-		final List<T> entity = jdbcTemplate.query(
-				sqlGrammar.selectById(
-						tableDefinition, 
-						null, 
-						Query.DEFAULT_QUERY_LIMIT, 
-						1,
-						idColumns,
-						rowColumnMapper.mapDynamicColumnsType(), 
-						null), 
-				rowColumnMapper,
-				filterOutNull(idColumns)
-				);
-		long end = System.currentTimeMillis() - start;
-		LOG.info(String.format("[get]found in %sms", end));
-		return entity.isEmpty() ? null : entity.get(0);
+		long start = System.nanoTime();
+		final Query probe = new Query(tableDefinition.getPrimaryId(), query.getConditions(), null, 1, null, null, null, query.getHints());
+		final Object[] params = paramsOf(probe);
+		final boolean found = !queryRecorded("existsWhere", start, selectByQuery(probe, probe.getColumnSelection()), keyRowMapper, params).isEmpty();
+		if (logCalls()) LOG.info(String.format("[existsWhere]query: %s; found:%s in %sms", query, found, millisSince(start)));
+		return found;
 	}
-	
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public Iterable<T> findAll () {
-		long start = System.currentTimeMillis();
-		List<T> result = getJdbcTemplate().query(
-				sqlGrammar.selectById(
-						tableDefinition, 
-						null, 
-						Query.DEFAULT_QUERY_LIMIT,
-						-1,
-						null,
-						rowColumnMapper.mapDynamicColumnsType(), 
-						null), 
-				rowColumnMapper);
-		long end = System.currentTimeMillis() - start;
-		LOG.info(String.format("[findAll]limit:%s. found %s in %sms", Query.DEFAULT_QUERY_LIMIT, result.size(), end));
-		return result;
+	public long count() {
+		if (logCalls()) LOG.info(String.format("[count]%s", tableDefinition.getTableName()));
+		return countOf(sqlGrammar.count(tableDefinition), ArrayUtils.EMPTY_OBJECT_ARRAY);
 	}
-		
+	
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public Iterable<T> find(Query query) {
+	public long count(Query query) {
 		Preconditions.checkNotNull(query, "query must be provided");
 		
-		List<T> result;
-		long start = System.currentTimeMillis();
-		if (query.getConditions()==null || query.getConditions().isEmpty()) { 
-			result = getJdbcTemplate().query(
-					sqlGrammar.selectById(
-							tableDefinition, 
-							query.getSort(), 
-							query.getLimit(), 
-							-1,
-							null,
-							rowColumnMapper.mapDynamicColumnsType(), 
-							query.getColumnSelection()), 
-					rowColumnMapper);
-		} else {
-			result = getJdbcTemplate().query(
-					sqlGrammar.selectByCondition(
-							tableDefinition, 
-							query.getSort(), 
-							query.getLimit(), 
-							query.getConditions(), 
-							rowColumnMapper.mapDynamicColumnsType(), 
-							query.getColumnSelection()), 
-					rowColumnMapper, 
-					Condition.getParamsFromConditions(query.getConditions()));	
-		}
-		long end = System.currentTimeMillis() - start;
-		LOG.info(String.format("[find]query: %s in %sms", query, end));
-		return result;
+		final List<Condition> conditions = query.getConditions() != null ? query.getConditions() : Collections.<Condition>emptyList();
+		long start = System.nanoTime();
+		final long count = countOf(
+				sqlGrammar.countByCondition(tableDefinition, conditions, rowColumnMapper.mapDynamicColumnsType(), query.getHints()), 
+				paramsOf(query));
+		if (logCalls()) LOG.info(String.format("[count]query: %s; counted %s in %sms", query, count, millisSince(start)));
+		return count;
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public Iterable<T> find(Iterable<ID> ids) {
-		return this.find(ids, new Query(null, null, null, Query.DEFAULT_QUERY_LIMIT));
+	public long approximateCount() {
+		long start = System.nanoTime();
+		//column families are counted separately, each of them holds every row
+		long count = -1;
+		final List<Long> familyCounts = recorded("approximateCount", start, 0, new Callable<List<Long>>() {
+			@Override
+			public List<Long> call() {
+				return getJdbcTemplate().queryForList(sqlGrammar.approximateCount(tableDefinition), Long.class);
+			}
+		});
+		for (Long familyCount : familyCounts) {
+			if (familyCount != null && familyCount > count) count = familyCount;
+		}
+		if (logCalls()) LOG.info(String.format("[approximateCount]%s; estimated %s in %sms", tableDefinition.getTableName(), count, millisSince(start)));
+		return count;
 	}
-			
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public Iterable<T> find(Iterable<ID> ids, Query query) {
-		Preconditions.checkNotNull(ids, "ids must be provided");
-		Preconditions.checkNotNull(query, "query must be provided");
-		
-		if (query.getConditions()!=null && !query.getConditions().isEmpty()) {
-			LOG.warn("[find]conditions will be ignored when lookup by id list");
+	public boolean delete (ID id) {
+		Preconditions.checkNotNull(id, "id must be provided");
+		Preconditions.checkState(tableDefinition.isMutable(), "table is immutable");
+		Preconditions.checkState(!tableDefinition.isReadonly(), "table is readonly");
+
+		final Object[] idColumns = (id instanceof Object[]) ? (Object[]) id : new Object[]{id};
+		Preconditions.checkArgument(idColumns.length == tableDefinition.getPrimaryId().size(), "all id components must be provided ");
+
+		final WriteBehindBuffer<T, ID> buffer = bufferOutsideTransaction();
+		if (buffer != null) {
+			buffer.delete(id);
+			return true;
 		}
-		if (!ids.iterator().hasNext()) {
-			return Collections.emptyList();
+		long start = System.nanoTime();
+		final Object[] params = filterOutNull(idColumns);
+		boolean isSucceed = this.upsert(sqlGrammar.delete(tableDefinition, 1, idColumns), params);
+		invalidate(id);
+		record("delete", start, isSucceed ? 1 : 0, boundBytes(params), !isSucceed);
+		if (isSucceed && logCalls()) LOG.info(String.format("[delete]deleted %s", id));
+		return isSucceed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * With write-behind enabled and no transaction on the calling thread, the ids are only queued:
+	 * the number of ids queued is returned, and the rows are deleted by a later flush.
+	 */
+	@Override
+	public long delete (final Iterable<ID> ids) {
+		Preconditions.checkNotNull(ids, "ids must be provided");
+		Preconditions.checkArgument(ids.iterator().hasNext(), "ids must be provided");
+		Preconditions.checkState(tableDefinition.isMutable(), "table is immutable");
+		Preconditions.checkState(!tableDefinition.isReadonly(), "table is readonly");
+		
+		final WriteBehindBuffer<T, ID> buffer = bufferOutsideTransaction();
+		if (buffer != null) {
+			//the rows are deleted by a later flush, report the ids queued
+			long queued = 0;
+			for (ID id : ids) {
+				buffer.delete(id);
+				queued++;
+			}
+			return queued;
+		}
+		return deleteNow(ids, true).deleted;
+	}
+	
+	/**
+	 * The rows deleted by the chunks of an id delete, and the number of chunks that failed
+	 */
+	private static final class DeletedCount {
+		private final long deleted;
+		private final int failedChunks;
+		
+		private DeletedCount(long deleted, int failedChunks) {
+			this.deleted = deleted;
+			this.failedChunks = failedChunks;
 		}
+	}
+	
+	/**
+	 * Delete the ids in chunks of {@link #getDeleteChunkSize()}, running the chunks concurrently on the chunk executor.
+	 * In a transaction the chunks share its connection and run one after another on this thread, unless it is not joined
+	 */
+	private DeletedCount deleteNow (final Iterable<ID> ids, boolean joinTransaction) {
+		long start = System.nanoTime();
+		final List<Object[]> idList = toIdColumnsList(ids);
+		final List<List<Object[]>> chunks = Lists.partition(idList, deleteChunkSize);
+		final boolean inTransaction = TransactionSynchronizationManager.hasResource(getJdbcTemplate().getDataSource());
+		//a transaction that is not joined is kept out by running the chunks on the chunk executor
+		final boolean onThisThread = inTransaction ? joinTransaction : chunks.size() == 1;
+		final ExecutorService executor = onThisThread ? MoreExecutors.sameThreadExecutor() : chunkExecutor;
+		final List<Future<Integer>> futures = new ArrayList<Future<Integer>>(chunks.size());
+		long deleted = 0;
+		int failedChunks = 0;
+		try {
+			for (final List<Object[]> chunk : chunks) {
+				futures.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						return deleteIds(chunk);
+					}
+				}));
+			}
+			for (Future<Integer> future : futures) {
+				final int chunkDeleted = future.get();
+				if (chunkDeleted < 0) {
+					failedChunks++;
+				} else {
+					deleted += chunkDeleted;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while deleting ids", e);
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		} finally {
+			for (Future<Integer> future : futures) {
+				future.cancel(true);
+			}
+			for (ID id : ids) {
+				invalidate(id);
+			}
+		}
+		record("delete", start, deleted, boundBytes(idList), failedChunks > 0);
+		if (failedChunks > 0) {
+			LOG.warn(String.format("[delete]%s of %s chunks failed, %s rows deleted by the others", failedChunks, chunks.size(), deleted));
+		}
+		if (logCalls()) LOG.info(String.format("[delete]%s ids in %s chunks; deleted:%s; failed chunks:%s in %sms", 
+				idList.size(), chunks.size(), deleted, failedChunks, millisSince(start)));
+		return new DeletedCount(deleted, failedChunks);
+	}
+	
+	/**
+	 * @return the number of rows deleted, or -1 if failed
+	 */
+	private int deleteIds (List<Object[]> idChunk) {
 		//need to put all id components for all ids in a single flat array
-		final List<Object> idColumnValuesList = new LinkedList<Object>();
-		int idSize = 0;
+		final int idComponentSize = tableDefinition.getPrimaryId().size();
+		final Object[] idsArray = new Object[idChunk.size() * idComponentSize];
+		int i = 0;
+		for (Object[] idColumns : idChunk) {
+			System.arraycopy(idColumns, 0, idsArray, i, idComponentSize);
+			i += idComponentSize;
+		}
+		try {
+			return updateCommitted(sqlGrammar.delete(tableDefinition, idChunk.size(), idsArray), filterOutNull(idsArray));
+		} catch (DataAccessException e) {
+			LOG.error("Error in deleting records");
+			LOG.error(Throwables.getStackTraceAsString(e));
+			return -1;
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long delete (Query query) {
+		Preconditions.checkNotNull(query, "query must be provided");
+		Preconditions.checkArgument(query.getConditions() != null && !query.getConditions().isEmpty(), "conditions must be provided");
+		Preconditions.checkState(tableDefinition.isMutable(), "table is immutable");
+		Preconditions.checkState(!tableDefinition.isReadonly(), "table is readonly");
+		
+		//pending writes go first, so the statement sees the rows saved before it
+		flush();
+		long start = System.nanoTime();
+		final Object[] params = paramsOf(query);
+		int deleted;
+		try {
+			deleted = updateCommitted(sqlGrammar.deleteByCondition(tableDefinition, query.getConditions(), query.getHints()), params);
+		} catch (DataAccessException e) {
+			LOG.error("Error in deleting records");
+			LOG.error(Throwables.getStackTraceAsString(e));
+			deleted = -1;
+		} finally {
+			//the deleted ids are not known without reading them first, which the single statement avoids,
+			//and reading them would still miss rows inserted between the read and the delete
+			invalidateAll();
+		}
+		record("deleteWhere", start, Math.max(deleted, 0), boundBytes(params), deleted < 0);
+		if (logCalls()) LOG.info(String.format("[deleteWhere]query: %s; deleted:%s in %sms", query, deleted, millisSince(start)));
+		return deleted;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public T get (ID id) {
+		final Object[] idColumns = (id instanceof Object[]) ? (Object[]) id : new Object[]{id};
+		Preconditions.checkArgument(idColumns.length == tableDefinition.getPrimaryId().size(), "all id components must be provided ");
+		if (logCalls()) LOG.info(String.format("[get]id:%s", Arrays.toString(idColumns)));
+		
+		long start = System.nanoTime();
+		final WriteBehindBuffer<T, ID> buffer = writeBehind;
+		if (buffer != null) {
+			final WriteBehindBuffer.Pending<T, ID> pending = buffer.lookup(id);
+			if (pending != null) {
+				record("get", start, pending.isDelete() ? 0 : 1, 0, false);
+				return pending.getEntity();
+			}
+		}
+		final EntityCache<T, ID> cache = cacheOutsideTransaction();
+		if (cache != null) {
+			final Optional<T> cached = cache.getIfPresent(id);
+			if (cached != null) {
+				record("get", start, cached.isPresent() ? 1 : 0, 0, false);
+				if (logCalls()) LOG.info("[get]found in cache");
+				return cached.orNull();
+			}
+		}
+		
+		final long stamp = cache != null ? cache.stamp(id) : 0;
+		final Object[] params = filterOutNull(idColumns);
+		final List<T> entity = queryRecorded("get", start,
+				sqlGrammar.selectById(
+						tableDefinition,
+						null,
+						Query.DEFAULT_QUERY_LIMIT,
+						1,
+						idColumns,
+						rowColumnMapper.mapDynamicColumnsType(),
+						entitySelection(null),
+						lookupHints),
+				rowColumnMapper,
+				params);
+		if (logCalls()) LOG.info(String.format("[get]found in %sms", millisSince(start)));
+		final T result = entity.isEmpty() ? null : entity.get(0);
+		if (cache != null) {
+			cache.put(id, result, stamp);
+		}
+		return result;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterable<T> findAll () {
+		long start = System.nanoTime();
+		final List<T> result = queryRecorded("findAll", start,
+				sqlGrammar.selectById(
+						tableDefinition,
+						null,
+						Query.DEFAULT_QUERY_LIMIT,
+						-1,
+						null,
+						rowColumnMapper.mapDynamicColumnsType(),
+						entitySelection(null),
+						null),
+				rowColumnMapper,
+				ArrayUtils.EMPTY_OBJECT_ARRAY);
+		if (logCalls()) LOG.info(String.format("[findAll]limit:%s. found %s in %sms", Query.DEFAULT_QUERY_LIMIT, result.size(), millisSince(start)));
+		return result;
+	}
+		
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterable<T> find(Query query) {
+		Preconditions.checkNotNull(query, "query must be provided");
+		return findRows(query, rowColumnMapper, entitySelection(query.getColumnSelection()));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <R> List<R> find(Query query, RowMapper<R> rowMapper) {
+		Preconditions.checkNotNull(query, "query must be provided");
+		Preconditions.checkNotNull(rowMapper, "rowMapper must be provided");
+		return findRows(query, rowMapper, query.getColumnSelection());
+	}
+	
+	private <R> List<R> findRows(Query query, RowMapper<R> rowMapper, List<String> columnSelection) {
+		Preconditions.checkArgument(query.getLimit() != Query.NO_LIMIT, "unlimited query is only supported by stream");
+		Preconditions.checkArgument(!query.isAggregate(), "aggregate query is only supported by aggregate");
+		
+		long start = System.nanoTime();
+		final Object[] params = paramsOf(query);
+		final List<R> result = queryRecorded("find", start, selectByQuery(query, columnSelection), rowMapper, params);
+		if (logCalls()) LOG.info(String.format("[find]query: %s in %sms", query, millisSince(start)));
+		return result;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <R> List<R> find(Query query, Class<R> type) {
+		Preconditions.checkNotNull(type, "type must be provided");
+		@SuppressWarnings("unchecked")
+		RowMapper<R> rowMapper = (RowMapper<R>) beanRowMappers.get(type);
+		if (rowMapper == null) {
+			rowMapper = BeanPropertyRowMapper.newInstance(type);
+			beanRowMappers.putIfAbsent(type, rowMapper);
+		}
+		return find(query, rowMapper);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PreparedQuery prepare(Query query) {
+		Preconditions.checkNotNull(query, "query must be provided");
+		Preconditions.checkArgument(query.getLimit() != Query.NO_LIMIT, "unlimited query is only supported by stream");
+		Preconditions.checkArgument(!query.isAggregate(), "aggregate query is only supported by aggregate");
+		return PreparedQuery.compile(query, tableDefinition, selectByQuery(query, entitySelection(query.getColumnSelection())));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterable<T> find(PreparedQuery.Parameters parameters) {
+		Preconditions.checkNotNull(parameters, "parameters must be provided");
+		final PreparedQuery preparedQuery = parameters.getPreparedQuery();
+		Preconditions.checkArgument(preparedQuery.getTable() == tableDefinition, "query is prepared by another repository");
+		
+		long start = System.nanoTime();
+		final Object[] params = parameters.getValues();
+		final List<T> result = queryRecorded("find", start, preparedQuery.getSql(), rowColumnMapper, params);
+		if (logCalls()) LOG.info(String.format("[find]prepared query: %s; %s in %sms", preparedQuery.getQuery(), parameters, millisSince(start)));
+		return result;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<AggregateRow> aggregate(Query query) {
+		Preconditions.checkNotNull(query, "query must be provided");
+		Preconditions.checkArgument(query.isAggregate(), "aggregates must be provided");
+		Preconditions.checkArgument(query.getLimit() != Query.NO_LIMIT, "unlimited query is not supported");
+		
+		Object[] params = paramsOf(query);
+		if (query.getHaving() != null && !query.getHaving().isEmpty()) {
+			params = ArrayUtils.addAll(params, Condition.getParamsFromConditions(query.getHaving()));
+		}
+		long start = System.nanoTime();
+		final List<AggregateRow> result = queryRecorded("aggregate", start,
+				sqlGrammar.selectByAggregate(
+						tableDefinition,
+						query.getAggregates(),
+						query.getGroupBy(),
+						query.getConditions(),
+						query.getHaving(),
+						query.getSort(),
+						query.getLimit(),
+						rowColumnMapper.mapDynamicColumnsType(),
+						query.getHints()),
+				AggregateRow.rowMapper(query.getGroupBy(), query.getAggregates()),
+				params);
+		if (logCalls()) LOG.info(String.format("[aggregate]query: %s; %s rows in %sms", query, result.size(), millisSince(start)));
+		return result;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Slice<T> find(Query query, Pageable pageable) {
+		Preconditions.checkNotNull(query, "query must be provided");
+		Preconditions.checkNotNull(pageable, "pageable must be provided");
+		final int pageSize = pageable.getPageSize();
+		Preconditions.checkArgument(pageSize > 0 && pageSize <= Query.DEFAULT_QUERY_LIMIT, "page size out of supported range");
+		
+		final Object[] lastKey = (pageable instanceof KeysetPageable) ? ((KeysetPageable) pageable).getLastKey() : null;
+		Preconditions.checkArgument(lastKey != null || pageable.getPageNumber() == 0, 
+				"keyset pagination must continue from the nextPageable of the previous slice");
+		if (lastKey != null) {
+			Preconditions.checkArgument(lastKey.length == tableDefinition.getPrimaryId().size(), "all id components must be provided ");
+			Preconditions.checkArgument(!Arrays.asList(lastKey).contains(null), "id components of the key must not be null");
+		}
+		final Sort sort = keysetSort(pageable.getSort() != null ? pageable.getSort() : query.getSort());
+		final List<Condition> conditions = query.getConditions() != null ? query.getConditions() : Collections.<Condition>emptyList();
+		
+		long start = System.nanoTime();
+		final Object[] params = lastKey != null ? ArrayUtils.addAll(paramsOf(query), lastKey) : paramsOf(query);
+		//fetch one more row to know if there is a next slice
+		List<T> rows = queryRecorded("findPage", start,
+				sqlGrammar.selectByKeyset(
+						tableDefinition,
+						sort,
+						pageSize + 1,
+						lastKey != null,
+						conditions,
+						rowColumnMapper.mapDynamicColumnsType(),
+						keysetSelection(query.getColumnSelection()),
+						query.getHints()),
+				rowColumnMapper,
+				params);
+		final boolean hasNext = rows.size() > pageSize;
+		if (hasNext) {
+			rows = new ArrayList<T>(rows.subList(0, pageSize));
+		}
+		final Object[] continuation = rows.isEmpty() ? null : toIdColumns(rows.get(rows.size() - 1).getId());
+		if (logCalls()) LOG.info(String.format("[find]query: %s; pageable: %s; found %s in %sms", query, pageable, rows.size(), millisSince(start)));
+		return new KeysetSlice<T>(rows, new KeysetPageable(pageable.getPageNumber(), pageSize, sort, lastKey), hasNext, continuation);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Cursor<T> stream(Query query) {
+		Preconditions.checkNotNull(query, "query must be provided");
+		Preconditions.checkArgument(!query.isAggregate(), "aggregate query is only supported by aggregate");
+		
+		long start = System.nanoTime();
+		final Object[] params = paramsOf(query);
+		Cursor<T> cursor = new ResultSetCursor<T>(
+				getJdbcTemplate(), 
+				selectByQuery(query, entitySelection(query.getColumnSelection())), 
+				params,
+				rowColumnMapper, 
+				prefetchExecutor, 
+				ResultSetCursor.DEFAULT_PREFETCH_WINDOWS);
+		//the rows are read after this returns, only opening the cursor is measured
+		record("stream", start, 0, boundBytes(params), false);
+		if (logCalls()) LOG.info(String.format("[stream]query: %s", query));
+		return cursor;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Cursor<T> stream(Query query, List<KeyRange> ranges) {
+		Preconditions.checkNotNull(query, "query must be provided");
+		Preconditions.checkArgument(!query.isAggregate(), "aggregate query is only supported by aggregate");
+		Preconditions.checkArgument(ranges != null && !ranges.isEmpty(), "ranges must be provided");
+		
+		long start = System.nanoTime();
+		final boolean ordered = isOrderedBy(query.getSort(), ranges);
+		//a sort the ranges cannot keep is not worth running
+		final Sort sort = ordered ? query.getSort() : null;
+		if (ordered) {
+			//the ranges are merged one after the other, so they must be in the order of the column
+			for (int i = 1; i < ranges.size(); i++) {
+				Preconditions.checkArgument(ranges.get(i - 1).isBefore(ranges.get(i)), 
+						"ranges of an ordered scan must be ascending and not overlap: %s, %s", ranges.get(i - 1), ranges.get(i));
+			}
+		}
+		final List<String> sqls = new ArrayList<String>(ranges.size());
+		final List<Object[]> args = new ArrayList<Object[]>(ranges.size());
+		long boundBytes = 0;
+		for (KeyRange range : ranges) {
+			final List<Condition> conditions = new ArrayList<Condition>();
+			if (query.getConditions() != null) conditions.addAll(query.getConditions());
+			conditions.addAll(range.getConditions());
+			final Query partition = new Query(query.getColumnSelection(), conditions, sort, query.getLimit(), 
+					null, null, null, query.getHints());
+			final Object[] params = paramsOf(partition);
+			sqls.add(selectByQuery(partition, entitySelection(partition.getColumnSelection())));
+			args.add(params);
+			boundBytes += boundBytes(params);
+		}
+		if (ordered && sort.iterator().next().getDirection() == Direction.DESC) {
+			Collections.reverse(sqls);
+			Collections.reverse(args);
+		}
+		Cursor<T> cursor = new PartitionedCursor<T>(
+				getJdbcTemplate(), 
+				sqls, 
+				args, 
+				rowColumnMapper, 
+				getScanExecutor(), 
+				ordered, 
+				query.getLimit(), 
+				PartitionedCursor.DEFAULT_PREFETCH_WINDOWS);
+		//the rows are read after this returns, only starting the key ranges is measured
+		record("stream", start, 0, boundBytes, false);
+		if (logCalls()) LOG.info(String.format("[stream]query: %s; %s key ranges; ordered:%s", query, ranges.size(), ordered));
+		return cursor;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<KeyRange> splitKeyRange(Query query, int partitions) {
+		Preconditions.checkNotNull(query, "query must be provided");
+		Preconditions.checkArgument(partitions > 0, "partitions must be positive");
+		
+		final String column = tableDefinition.getPrimaryId().get(0);
+		final Aggregate min = Aggregate.min(column);
+		final Aggregate max = Aggregate.max(column);
+		final AggregateRow bounds = aggregate(new Query(null, query.getConditions(), null, 1, 
+				Arrays.asList(min, max), null, null)).get(0);
+		final Object lower = bounds.get(min);
+		final Object upper = bounds.get(max);
+		if (lower == null || upper == null) {
+			//no rows, a single range still sees the rows written meanwhile
+			return Collections.singletonList(KeyRange.between(column, null, null));
+		}
+		Preconditions.checkState(isIntegral(lower) && isIntegral(upper), 
+				"%s is not integral, split it with KeyRange.split at known boundaries", column);
+		return KeyRange.split(column, ((Number) lower).longValue(), ((Number) upper).longValue(), partitions);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterable<T> find(Iterable<ID> ids) {
+		return this.find(ids, new Query(null, null, null, Query.DEFAULT_QUERY_LIMIT));
+	}
+			
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterable<T> find(Iterable<ID> ids, final Query query) {
+		Preconditions.checkNotNull(ids, "ids must be provided");
+		Preconditions.checkNotNull(query, "query must be provided");
+		
+		if (query.getConditions()!=null && !query.getConditions().isEmpty()) {
+			LOG.warn("[find]conditions will be ignored when lookup by id list");
+		}
+		if (!ids.iterator().hasNext()) {
+			return Collections.emptyList();
+		}
+		final List<Object[]> idList = toIdColumnsList(ids);
+		long start = System.nanoTime();
+		List<T> result = recorded("findByIds", start, boundBytes(idList), new Callable<List<T>>() {
+			@Override
+			public List<T> call() {
+				return findByIdChunks(idList, query.getSort(), query.getLimit(), query.getColumnSelection(), 
+						query.getHints() != null ? query.getHints() : lookupHints);
+			}
+		});
+		if (query.getLimit() >= 0 && result.size() > query.getLimit()) {
+			result = result.subList(0, query.getLimit());
+		}
+		if (logCalls()) LOG.info(String.format("[find]ids:%s; query:%s; found %s in %sms",
+				idList.size(), query, result.size(), millisSince(start)));
+		return result;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<ID, T> getAll(Iterable<ID> ids) {
+		Preconditions.checkNotNull(ids, "ids must be provided");
+		
+		final List<Object[]> idList = toIdColumnsList(ids);
+		final Map<ID, T> result = new LinkedHashMap<ID, T>();
+		if (idList.isEmpty()) {
+			return result;
+		}
+		long start = System.nanoTime();
+		final List<T> entities = recorded("getAll", start, boundBytes(idList), new Callable<List<T>>() {
+			@Override
+			public List<T> call() {
+				//each id matches at most one row, so a chunk never returns more rows than it has ids
+				return findByIdChunks(idList, null, multiGetChunkSize, null, lookupHints);
+			}
+		});
+		final Map<List<Object>, T> byId = new HashMap<List<Object>, T>(entities.size() * 2);
+		for (T entity : entities) {
+			byId.put(keyOf(toIdColumns(entity.getId())), entity);
+		}
+		int i = 0;
 		for (ID id : ids) {
-			List<Object> idList;
-			if (id instanceof Object[]) {
-				idList = Arrays.asList((Object[]) id);
-			} else {
-				idList = Collections.<Object>singletonList(id);
+			T entity = byId.get(keyOf(idList.get(i++)));
+			if (entity != null) result.put(id, entity);
+		}
+		if (logCalls()) LOG.info(String.format("[getAll]ids:%s; found %s in %sms", idList.size(), result.size(), millisSince(start)));
+		return result;
+	}
+	
+	/**
+	 * Look up the ids in chunks of {@link #getMultiGetChunkSize()}, running the chunks concurrently on the chunk executor,
+	 * and merge the chunks in the sort order
+	 */
+	private List<T> findByIdChunks (List<Object[]> idList, final Sort sort, final long limit, final List<String> columnSelection, 
+			final List<Hint> hints) {
+		final List<String> selection = entitySelection(columnSelection);
+		if (sort == null || idList.size() <= multiGetChunkSize) {
+			return queryIdChunks(idList, sort, limit, rowColumnMapper.mapDynamicColumnsType(), selection, hints, rowColumnMapper);
+		}
+		//each chunk is sorted by the database, the chunks are merged by the sort column values they select
+		final Map<String, String> dynamicColumnsType = rowColumnMapper.mapDynamicColumnsType();
+		if (selection == null && dynamicColumnsType != null) {
+			for (Order order : sort) {
+				Preconditions.checkArgument(!dynamicColumnsType.containsKey(order.getProperty()), 
+						"sorting more than %s ids by the dynamic column %s needs a column selection", multiGetChunkSize, order.getProperty());
+			}
+		}
+		final List<ColumnSort.Keyed<T>> rows = queryIdChunks(idList, sort, limit, dynamicColumnsType, 
+				withSortColumns(selection, sort), hints, ColumnSort.keyed(rowColumnMapper, sort));
+		return ColumnSort.sort(rows, sort);
+	}
+	
+	/**
+	 * @return the column selection followed by the sort columns it does not select, or null to select all columns
+	 */
+	private static List<String> withSortColumns (List<String> columnSelection, Sort sort) {
+		if (columnSelection == null) return null;
+		final List<String> selection = new ArrayList<String>(columnSelection);
+		for (Order order : sort) {
+			if (!containsIgnoreCase(selection, order.getProperty())) selection.add(order.getProperty());
+		}
+		return selection;
+	}
+	
+	private <R> List<R> queryIdChunks (List<Object[]> idList, final Sort sort, final long limit, 
+			final Map<String, String> dynamicColumnsType, final List<String> columnSelection, final List<Hint> hints, 
+			final RowMapper<R> rowMapper) {
+		final List<List<Object[]>> chunks = Lists.partition(idList, multiGetChunkSize);
+		if (chunks.size() == 1) {
+			return queryIds(chunks.get(0), sort, limit, dynamicColumnsType, columnSelection, hints, rowMapper);
+		}
+		final List<Future<List<R>>> futures = new ArrayList<Future<List<R>>>(chunks.size());
+		try {
+			for (final List<Object[]> chunk : chunks) {
+				futures.add(chunkExecutor.submit(new Callable<List<R>>() {
+					@Override
+					public List<R> call() {
+						return queryIds(chunk, sort, limit, dynamicColumnsType, columnSelection, hints, rowMapper);
+					}
+				}));
+			}
+			final List<R> result = new ArrayList<R>();
+			for (Future<List<R>> future : futures) {
+				result.addAll(future.get());
+			}
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while looking up ids", e);
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		} finally {
+			for (Future<List<R>> future : futures) {
+				future.cancel(true);
 			}
-			idColumnValuesList.addAll(idList);
-			idSize++;
 		}
-		Object[] idsArray = idColumnValuesList.toArray();		
-		long start = System.currentTimeMillis();
-		List<T> result = getJdbcTemplate().query(
+	}
+	
+	private <R> List<R> queryIds (List<Object[]> idChunk, Sort sort, long limit, 
+			Map<String, String> dynamicColumnsType, List<String> columnSelection, List<Hint> hints, RowMapper<R> rowMapper) {
+		//need to put all id components for all ids in a single flat array
+		final int idComponentSize = tableDefinition.getPrimaryId().size();
+		final Object[] idsArray = new Object[idChunk.size() * idComponentSize];
+		int i = 0;
+		for (Object[] idColumns : idChunk) {
+			System.arraycopy(idColumns, 0, idsArray, i, idComponentSize);
+			i += idComponentSize;
+		}
+		return getJdbcTemplate().query(
 				sqlGrammar.selectById(
 						tableDefinition, 
-						query.getSort(), 
-						query.getLimit(), 
-						idSize,
+						sort, 
+						limit, 
+						idChunk.size(),
 						idsArray,
-						rowColumnMapper.mapDynamicColumnsType(), 
-						query.getColumnSelection()), 
-				rowColumnMapper, 
+						dynamicColumnsType, 
+						columnSelection, 
+						hints), 
+				rowMapper, 
 				filterOutNull(idsArray));
-		long end = System.currentTimeMillis() - start;
-		LOG.info(String.format("[find]ids:%s; query:%s; found %s in %sms", 
-				Arrays.toString(idsArray), query, result.size(), end));
-		return result;
 	}
 	
-	private boolean upsert (String preparedStatement, Object... args) {
+	/**
+	 * @return whether the id exists according to the pending writes or the cache, or null if neither knows it
+	 */
+	private Boolean knownExistence (ID id) {
+		final WriteBehindBuffer<T, ID> buffer = writeBehind;
+		if (buffer != null) {
+			final WriteBehindBuffer.Pending<T, ID> pending = buffer.lookup(id);
+			if (pending != null) {
+				return !pending.isDelete();
+			}
+		}
+		final EntityCache<T, ID> cache = cacheOutsideTransaction();
+		if (cache != null) {
+			final Optional<T> cached = cache.getIfPresent(id);
+			if (cached != null) {
+				return cached.isPresent();
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the cache, or null if there is none or the calling thread is in a transaction, 
+	 * which may read rows it has not committed yet
+	 */
+	private EntityCache<T, ID> cacheOutsideTransaction () {
+		final EntityCache<T, ID> cache = entityCache;
+		if (cache == null || TransactionSynchronizationManager.hasResource(getJdbcTemplate().getDataSource())) return null;
+		return cache;
+	}
+	
+	/**
+	 * Invalidate the id now and, in a transaction, again once it completes, 
+	 * since a lookup outside the transaction may cache the row committed before it meanwhile
+	 */
+	private void invalidate (ID id) {
+		final EntityCache<T, ID> cache = entityCache;
+		if (cache != null && id != null) {
+			cache.invalidate(id);
+			final CacheInvalidation<T, ID> invalidation = invalidationOfTransaction(cache);
+			if (invalidation != null) invalidation.ids.add(id);
+		}
+	}
+	
+	private void invalidateAll () {
+		final EntityCache<T, ID> cache = entityCache;
+		if (cache != null) {
+			cache.invalidateAll();
+			final CacheInvalidation<T, ID> invalidation = invalidationOfTransaction(cache);
+			if (invalidation != null) invalidation.all = true;
+		}
+	}
+	
+	/**
+	 * @return the invalidation run when the transaction of the calling thread completes, or null if there is no transaction
+	 */
+	@SuppressWarnings("unchecked")
+	private CacheInvalidation<T, ID> invalidationOfTransaction (EntityCache<T, ID> cache) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+		CacheInvalidation<T, ID> invalidation = (CacheInvalidation<T, ID>) TransactionSynchronizationManager.getResource(cacheInvalidationKey);
+		if (invalidation == null) {
+			invalidation = new CacheInvalidation<T, ID>(cacheInvalidationKey, cache);
+			TransactionSynchronizationManager.bindResource(cacheInvalidationKey, invalidation);
+			TransactionSynchronizationManager.registerSynchronization(invalidation);
+		}
+		return invalidation;
+	}
+	
+	/**
+	 * The ids a transaction wrote, invalidated again after it commits or rolls back
+	 */
+	private static final class CacheInvalidation<T, ID> extends TransactionSynchronizationAdapter {
+		private final Object key;
+		private final EntityCache<T, ID> cache;
+		private final Set<ID> ids = new HashSet<ID>();
+		private boolean all = false;
+		
+		private CacheInvalidation(Object key, EntityCache<T, ID> cache) {
+			this.key = key;
+			this.cache = cache;
+		}
+		
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(key);
+			if (all) {
+				cache.invalidateAll();
+				return;
+			}
+			for (ID id : ids) {
+				cache.invalidate(id);
+			}
+		}
+	}
+	
+	/**
+	 * @return the write-behind buffer, or null if it is not enabled or the calling thread is in a transaction
+	 */
+	private WriteBehindBuffer<T, ID> bufferOutsideTransaction () {
+		final WriteBehindBuffer<T, ID> buffer = writeBehind;
+		if (buffer == null) return null;
+		if (TransactionSynchronizationManager.hasResource(getJdbcTemplate().getDataSource())) {
+			buffer.flush();
+			return null;
+		}
+		return buffer;
+	}
+	
+	private List<Object[]> toIdColumnsList (Iterable<ID> ids) {
+		final List<Object[]> idList = new ArrayList<Object[]>();
+		for (ID id : ids) {
+			Preconditions.checkNotNull(id, "id must be provided");
+			final Object[] idColumns = toIdColumns(id);
+			Preconditions.checkArgument(idColumns.length == tableDefinition.getPrimaryId().size(), "all id components must be provided ");
+			idList.add(idColumns);
+		}
+		return idList;
+	}
+	
+	private String selectByQuery (Query query, List<String> columnSelection) {
+		if (query.getConditions()==null || query.getConditions().isEmpty()) { 
+			return sqlGrammar.selectById(
+					tableDefinition, 
+					query.getSort(), 
+					query.getLimit(), 
+					-1,
+					null,
+					rowColumnMapper.mapDynamicColumnsType(), 
+					columnSelection, 
+					query.getHints());
+		}
+		return sqlGrammar.selectByCondition(
+				tableDefinition, 
+				query.getSort(), 
+				query.getLimit(), 
+				query.getConditions(), 
+				rowColumnMapper.mapDynamicColumnsType(), 
+				columnSelection, 
+				query.getHints());
+	}
+	
+	/**
+	 * A {@link SelectableRowColumnMapper} reads its columns by position, so the rows it maps must select exactly its columns
+	 * 
+	 * @param requested the column selection of the query, or null
+	 * @return the column selection to map entities with
+	 */
+	private List<String> entitySelection (List<String> requested) {
+		if (!(rowColumnMapper instanceof SelectableRowColumnMapper)) {
+			return requested;
+		}
+		final List<String> selection = ((SelectableRowColumnMapper<T>) rowColumnMapper).getColumnSelection();
+		Preconditions.checkArgument(requested == null || requested.equals(selection), 
+				"the row column mapper reads the columns %s, use find(Query, RowMapper) for other column selections", selection);
+		return selection;
+	}
+	
+	/**
+	 * The key a slice continues from is read from its last entity, so keyset pagination selects the primary key columns
+	 * in addition to the requested ones
+	 * 
+	 * @param requested the column selection of the query, or null
+	 * @return the column selection to map entities with
+	 */
+	private List<String> keysetSelection (List<String> requested) {
+		List<String> selection = requested;
+		if (requested != null && !(rowColumnMapper instanceof SelectableRowColumnMapper)) {
+			selection = new ArrayList<String>(requested);
+			for (String idComponent : tableDefinition.getPrimaryId()) {
+				if (!containsIgnoreCase(selection, idComponent)) selection.add(idComponent);
+			}
+		}
+		selection = entitySelection(selection);
+		if (selection != null) {
+			for (String idComponent : tableDefinition.getPrimaryId()) {
+				Preconditions.checkArgument(containsIgnoreCase(selection, idComponent), 
+						"keyset pagination must select the primary key %s", tableDefinition.getPrimaryId());
+			}
+		}
+		return selection;
+	}
+	
+	/**
+	 * Keyset pagination walks the primary key, so only the primary key order in a single direction is supported
+	 */
+	private Sort keysetSort (Sort requested) {
+		final List<String> idComponents = tableDefinition.getPrimaryId();
+		if (requested == null) {
+			return new Sort(Direction.ASC, idComponents);
+		}
+		Direction direction = null;
+		int i = 0;
+		for (Order order : requested) {
+			Preconditions.checkArgument(i < idComponents.size() && idComponents.get(i).equalsIgnoreCase(order.getProperty()), 
+					"keyset pagination only supports sorting by the primary key %s", idComponents);
+			Preconditions.checkArgument(direction == null || direction == order.getDirection(), 
+					"keyset pagination requires a single sort direction");
+			direction = order.getDirection();
+			i++;
+		}
+		Preconditions.checkArgument(i == idComponents.size(), "keyset pagination only supports sorting by the primary key %s", idComponents);
+		return requested;
+	}
+	
+	/**
+	 * @return whether concatenating the key ranges in order, or in reverse for a descending sort, keeps the sort
+	 */
+	private static boolean isOrderedBy (Sort sort, List<KeyRange> ranges) {
+		final String column = ranges.get(0).getColumn();
+		for (KeyRange range : ranges) {
+			Preconditions.checkArgument(column.equalsIgnoreCase(range.getColumn()), "ranges must be of a single column");
+		}
+		return sort != null && sort.iterator().hasNext() && column.equalsIgnoreCase(sort.iterator().next().getProperty());
+	}
+	
+	private static boolean isIntegral (Object value) {
+		return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte 
+				|| value instanceof java.math.BigInteger;
+	}
+	
+	/**
+	 * A key comparable between a requested id and the primary key read back, 
+	 * which the driver may return as a wider type than the one requested
+	 */
+	private static List<Object> keyOf (Object[] idColumns) {
+		final Object[] key = new Object[idColumns.length];
+		for (int i = 0; i < idColumns.length; i++) {
+			final Object value = idColumns[i];
+			if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+				key[i] = ((Number) value).longValue();
+			} else if (value instanceof java.util.Date) {
+				key[i] = ((java.util.Date) value).getTime();
+			} else {
+				key[i] = value;
+			}
+		}
+		return Arrays.asList(key);
+	}
+	
+	private static boolean containsIgnoreCase (List<String> columns, String column) {
+		for (String c : columns) {
+			if (c.equalsIgnoreCase(column)) return true;
+		}
+		return false;
+	}
+	
+	private static Object[] toIdColumns (Object id) {
+
+		return (id instanceof Object[]) ? (Object[]) id : new Object[]{id};
+	}
+	
+	private static Object[] paramsOf (Query query) {
+		if (query.getConditions()==null || query.getConditions().isEmpty()) {
+			return ArrayUtils.EMPTY_OBJECT_ARRAY;
+		}
+		return Condition.getParamsFromConditions(query.getConditions());
+	}
+	
+	private long countOf (final String sql, final Object[] params) {
+		long start = System.nanoTime();
+		final Cache<List<Object>, Long> cache = countCache;
+		final List<Object> key = cache != null ? Arrays.asList(ArrayUtils.add(params, 0, sql)) : null;
+		if (cache != null) {
+			final Long cached = cache.getIfPresent(key);
+			if (cached != null) {
+				record("count", start, 0, 0, false);
+				return cached;
+			}
+		}
+		final Long count = recorded("count", start, boundBytes(params), new Callable<Long>() {
+			@Override
+			public Long call() {
+				return getJdbcTemplate().queryForObject(sql, Long.class, params);
+			}
+		});
+		if (cache != null) {
+			cache.put(key, count);
+		}
+		return count;
+	}
+	
+	/**
+	 * @return the statement that saves the columns bound by the row column binder, or null if the mapper maps columns instead
+	 */
+	private String bindStatement () {
+		Optional<String> statement = bindStatement;
+		if (statement == null) {
+			final List<String> bindColumns = rowColumnBinder != null ? rowColumnBinder.getBindColumns() : null;
+			if (bindColumns == null || !rowColumnMapper.mapDynamicColumnsType().isEmpty()) {
+				statement = Optional.absent();
+			} else {
+				Preconditions.checkState(!bindColumns.isEmpty(), "rowColumnBinder.getBindColumns must not be empty");
+				final LinkedHashMap<String, Object> columns = new LinkedHashMap<String, Object>();
+				for (String column : bindColumns) {
+					columns.put(column, null);
+				}
+				statement = Optional.of(sqlGrammar.save(tableDefinition, columns, new LinkedHashMap<String, Object>()));
+			}
+			bindStatement = statement;
+		}
+		return statement.orNull();
+	}
+	
+	/**
+	 * Run a statement and commit it, unless the connection commits automatically or takes part in a transaction
+	 * 
+	 * @return the number of rows updated
+	 */
+	private int updateCommitted (final String sql, final Object[] args) {
+		final DataSource dataSource = getJdbcTemplate().getDataSource();
+		return getJdbcTemplate().execute(new ConnectionCallback<Integer>() {
+			@Override
+			public Integer doInConnection(Connection con) throws SQLException {
+				final ArgumentPreparedStatementSetter setter = new ArgumentPreparedStatementSetter(args);
+				final PreparedStatement ps = con.prepareStatement(sql);
+				try {
+					setter.setValues(ps);
+					final int updated = ps.executeUpdate();
+					if (!con.getAutoCommit() && !DataSourceUtils.isConnectionTransactional(con, dataSource)) {
+						con.commit();
+					}
+					return updated;
+				} finally {
+					setter.cleanupParameters();
+					JdbcUtils.closeStatement(ps);
+				}
+			}
+		});
+	}
+	
+	private boolean upsert (String preparedStatement, PreparedStatementSetter setter) {
 		try{
-			getJdbcTemplate().update(preparedStatement, args);
+			getJdbcTemplate().update(preparedStatement, setter);
 			return true;
 		} catch (DataAccessException e) {
 			LOG.error("Error in upserting record");
@@ -383,17 +1857,88 @@ public abstract class JdbcDataRepository <T extends Persistable<ID>, ID extends
 		}
 	}
 	
-	private boolean upsertBatch (String preparedStatement, List<Object[]> args) {
+	private boolean upsert (String preparedStatement, Object... args) {
 		try{
-			getJdbcTemplate().batchUpdate(preparedStatement, args);
+			getJdbcTemplate().update(preparedStatement, args);
 			return true;
 		} catch (DataAccessException e) {
-			LOG.error("Error in upserting records");
+			LOG.error("Error in upserting record");
 			LOG.error(Throwables.getStackTraceAsString(e));
 			return false;
 		}
 	}
 	
+	private boolean logCalls () {
+		return callLogging && LOG.isInfoEnabled();
+	}
+	
+	private void record (String operation, long startNanos, long rows, long boundBytes, boolean failed) {
+		final RepositoryMetrics recorder = metrics;
+		if (recorder.isEnabled()) {
+			recorder.recordOperation(tableDefinition.getTableName(), operation, System.nanoTime() - startNanos, rows, boundBytes, failed);
+		}
+	}
+	
+	/**
+	 * Run a call of an operation and record it with the rows it read, or as failed if it throws
+	 * 
+	 * @param operation the operation
+	 * @param startNanos the start of the operation
+	 * @param boundBytes the estimated size of the bound parameters
+	 * @param call the call reading the rows
+	 * @return the result of the call
+	 */
+	private <R> R recorded (String operation, long startNanos, long boundBytes, Callable<R> call) {
+		final R result;
+		try {
+			result = call.call();
+		} catch (Exception e) {
+			record(operation, startNanos, 0, boundBytes, true);
+			throw Throwables.propagate(e);
+		}
+		record(operation, startNanos, result instanceof Collection ? ((Collection<?>) result).size() : (result != null ? 1 : 0), boundBytes, false);
+		return result;
+	}
+	
+	/**
+	 * Run a query of an operation and record it with the rows it returned, or as failed if it throws
+	 */
+	private <R> List<R> queryRecorded (String operation, long startNanos, final String sql, final RowMapper<R> rowMapper, final Object[] params) {
+		return recorded(operation, startNanos, boundBytes(params), new Callable<List<R>>() {
+			@Override
+			public List<R> call() {
+				return getJdbcTemplate().query(sql, rowMapper, params);
+			}
+		});
+	}
+	
+	/**
+	 * @return the estimated size of the parameters, or 0 if metrics are not recorded
+	 */
+	private long boundBytes (Object[] params) {
+		return metrics.isEnabled() ? BoundBytes.of(params) : 0;
+	}
+	
+	private long boundBytes (Collection<Object> params) {
+		return metrics.isEnabled() ? BoundBytes.of(params) : 0;
+	}
+	
+	/**
+	 * @return the estimated size of the columns the binder binds for the entity, mapped only if metrics are recorded
+	 */
+	private long boundBytes (List<Object[]> idList) {
+		if (!metrics.isEnabled()) return 0;
+		long bytes = 0;
+		for (Object[] idColumns : idList) {
+			bytes += BoundBytes.of(idColumns);
+		}
+		return bytes;
+	}
+	
+	private static long millisSince (long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+	
 	private Object[] filterOutNull (Object[] inputArray) {
 		List<Object> list = new ArrayList<Object>();
 	    for(Object s : inputArray) {
@@ -0,0 +1,383 @@
+package org.cg.rooster;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Persistable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+/**
+ * Buffers saves and deletes of a repository and writes them in batches on a background thread.
+ * 
+ * Pending writes are keyed by the primary key, a later write of the same key replaces the earlier one (last write wins).
+ * The buffer is flushed when it holds {@code flushSize} keys or every {@code flushIntervalMillis}, 
+ * a writer blocks while the buffer holds {@code capacity} keys. Flushes run one at a time in the order of their draining,
+ * so a later write of a key is never overwritten by an earlier one.
+ * 
+ * A failed write goes back to the buffer ahead of the newer writes, unless its key was written again in the meantime,
+ * and is given up after {@link #MAX_ATTEMPTS} attempts. Open buffers are closed by one shared shutdown hook.
+ * 
+ * @author WZ
+ *
+ */
+class WriteBehindBuffer <T extends Persistable<ID>, ID extends Serializable> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(WriteBehindBuffer.class);
+	
+	/**
+	 * The number of times a pending write is tried before it is given up
+	 */
+	public final static int MAX_ATTEMPTS = 3;
+	
+	//pending writes are flushed when the JVM exits without closing the buffers
+	private static final Set<WriteBehindBuffer<?, ?>> OPEN_BUFFERS = Collections.newSetFromMap(new ConcurrentHashMap<WriteBehindBuffer<?, ?>, Boolean>());
+	private static final AtomicBoolean SHUTDOWN_HOOK_ADDED = new AtomicBoolean();
+	
+	/**
+	 * Writes the drained entries to the database, bypassing the buffer and any transaction of the calling thread
+	 */
+	interface Writer <T, ID> {
+		/**
+		 * @return the entities that were not saved
+		 */
+		List<T> save (List<T> entities);
+		
+		/**
+		 * @return true if all ids were deleted
+		 */
+		boolean delete (List<ID> ids);
+	}
+	
+	/**
+	 * A pending write, the entity is null for a delete
+	 */
+	static final class Pending <T, ID> {
+		private final ID id;
+		private final T entity;
+		private final int attempts;
+		
+		Pending(ID id, T entity) {
+			this(id, entity, 0);
+		}
+		
+		private Pending(ID id, T entity, int attempts) {
+			this.id = id;
+			this.entity = entity;
+			this.attempts = attempts;
+		}
+		
+		boolean isDelete() {
+			return entity == null;
+		}
+
+		T getEntity() {
+			return entity;
+		}
+	}
+	
+	private final Writer<T, ID> writer;
+	private final int capacity;
+	private final int flushSize;
+	private final long flushIntervalNanos;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition flushNeeded = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Object writeLock = new Object();
+	private Map<List<Object>, Pending<T, ID>> pending = new LinkedHashMap<List<Object>, Pending<T, ID>>();
+	private volatile boolean closed = false;
+	
+	private final AtomicLong coalescedCount = new AtomicLong();
+	private final AtomicLong writtenCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong flushCount = new AtomicLong();
+	
+	private final Thread flusher;
+	
+	WriteBehindBuffer(String name, Writer<T, ID> writer, int capacity, int flushSize, long flushIntervalMillis) {
+		Preconditions.checkNotNull(writer, "writer must be provided");
+		Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+		Preconditions.checkArgument(flushSize > 0 && flushSize <= capacity, "flushSize must be positive and not greater than capacity");
+		Preconditions.checkArgument(flushIntervalMillis > 0, "flushIntervalMillis must be positive");
+		this.writer = writer;
+		this.capacity = capacity;
+		this.flushSize = flushSize;
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+		
+		this.flusher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runFlusher();
+			}
+		}, "rooster-write-behind-" + name);
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+		
+		OPEN_BUFFERS.add(this);
+		if (SHUTDOWN_HOOK_ADDED.compareAndSet(false, true)) {
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (WriteBehindBuffer<?, ?> buffer : OPEN_BUFFERS) {
+						buffer.close();
+					}
+				}
+			}, "rooster-write-behind-shutdown"));
+		}
+	}
+	
+	/**
+	 * Queue a save, blocking while the buffer is full
+	 */
+	void save(T entity) {
+		Preconditions.checkNotNull(entity.getId(), "entity id must be provided");
+		put(new Pending<T, ID>(entity.getId(), entity));
+	}
+	
+	/**
+	 * Queue a delete, blocking while the buffer is full
+	 */
+	void delete(ID id) {
+		put(new Pending<T, ID>(id, null));
+	}
+	
+	/**
+	 * @return the pending write of the id, or null if there is none
+	 */
+	Pending<T, ID> lookup(ID id) {
+		lock.lock();
+		try {
+			return pending.get(key(id));
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Write all pending entries on the calling thread, failed entries are queued again
+	 * 
+	 * @return true if all written successfully
+	 */
+	boolean flush() {
+		return drainAndWrite();
+	}
+	
+	/**
+	 * Stop the background thread and write the remaining entries, retrying the failed ones. Calling it more than once has no effect.
+	 */
+	void close() {
+		if (closed) return;
+		lock.lock();
+		try {
+			if (closed) return;
+			closed = true;
+			flushNeeded.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		//each entry is tried a bounded number of times, so this ends
+		while (!drainAndWrite()) {
+			if (size() == 0) break;
+		}
+		OPEN_BUFFERS.remove(this);
+	}
+	
+	int size() {
+		lock.lock();
+		try {
+			return pending.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	long getWrittenCount() {
+		return writtenCount.get();
+	}
+
+	/**
+	 * @return the number of entries given up after {@link #MAX_ATTEMPTS} attempts
+	 */
+	long getFailedCount() {
+		return failedCount.get();
+	}
+
+	long getFlushCount() {
+		return flushCount.get();
+	}
+
+	private void put(Pending<T, ID> entry) {
+		final List<Object> key = key(entry.id);
+		lock.lock();
+		try {
+			while (!closed && pending.size() >= capacity && !pending.containsKey(key)) {
+				flushNeeded.signal();
+				notFull.awaitUninterruptibly();
+			}
+			Preconditions.checkState(!closed, "write-behind buffer is closed");
+			//remove first so a rewritten key moves to the end of the drain order
+			if (pending.remove(key) != null) {
+				coalescedCount.incrementAndGet();
+			}
+			pending.put(key, entry);
+			if (pending.size() >= flushSize) {
+				flushNeeded.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private void runFlusher() {
+		while (!closed) {
+			lock.lock();
+			try {
+				long remaining = flushIntervalNanos;
+				while (!closed && pending.size() < flushSize && remaining > 0) {
+					try {
+						remaining = flushNeeded.awaitNanos(remaining);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (closed) return;
+			} finally {
+				lock.unlock();
+			}
+			try {
+				drainAndWrite();
+			} catch (RuntimeException e) {
+				LOG.error("Error in flushing write-behind buffer");
+				LOG.error(Throwables.getStackTraceAsString(e));
+			}
+		}
+	}
+	
+	private boolean drainAndWrite() {
+		synchronized (writeLock) {
+			final Map<List<Object>, Pending<T, ID>> drained;
+			lock.lock();
+			try {
+				if (pending.isEmpty()) return true;
+				drained = pending;
+				pending = new LinkedHashMap<List<Object>, Pending<T, ID>>();
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			
+			final List<T> saves = new ArrayList<T>();
+			final List<ID> deletes = new ArrayList<ID>();
+			for (Pending<T, ID> entry : drained.values()) {
+				if (entry.isDelete()) {
+					deletes.add(entry.id);
+				} else {
+					saves.add(entry.entity);
+				}
+			}
+			
+			long start = System.currentTimeMillis();
+			final List<Pending<T, ID>> failed = new ArrayList<Pending<T, ID>>();
+			if (!saves.isEmpty()) {
+				final List<T> unsaved = writeSaves(saves);
+				writtenCount.addAndGet(saves.size() - unsaved.size());
+				for (T entity : unsaved) {
+					failed.add(drained.get(key(entity.getId())));
+				}
+			}
+			if (!deletes.isEmpty()) {
+				if (writeDeletes(deletes)) {
+					writtenCount.addAndGet(deletes.size());
+				} else {
+					//deletes are idempotent, all of them are tried again
+					for (ID id : deletes) {
+						failed.add(drained.get(key(id)));
+					}
+				}
+			}
+			if (!failed.isEmpty()) {
+				requeue(failed);
+			}
+			flushCount.incrementAndGet();
+			LOG.info(String.format("[flush]saves:%s; deletes:%s; failed:%s in %sms", 
+					saves.size(), deletes.size(), failed.size(), System.currentTimeMillis() - start));
+			return failed.isEmpty();
+		}
+	}
+	
+	private List<T> writeSaves(List<T> saves) {
+		try {
+			return writer.save(saves);
+		} catch (RuntimeException e) {
+			LOG.error("Error in writing buffered saves");
+			LOG.error(Throwables.getStackTraceAsString(e));
+			return saves;
+		}
+	}
+	
+	private boolean writeDeletes(List<ID> deletes) {
+		try {
+			return writer.delete(deletes);
+		} catch (RuntimeException e) {
+			LOG.error("Error in writing buffered deletes");
+			LOG.error(Throwables.getStackTraceAsString(e));
+			return false;
+		}
+	}
+	
+	/**
+	 * Put failed entries back ahead of the pending ones, skipping keys written again since they were drained
+	 */
+	private void requeue(List<Pending<T, ID>> failed) {
+		lock.lock();
+		try {
+			final Map<List<Object>, Pending<T, ID>> requeued = new LinkedHashMap<List<Object>, Pending<T, ID>>();
+			for (Pending<T, ID> entry : failed) {
+				final List<Object> key = key(entry.id);
+				if (pending.containsKey(key)) continue;
+				if (entry.attempts + 1 >= MAX_ATTEMPTS) {
+					failedCount.incrementAndGet();
+					LOG.error(String.format("[flush]gave up %s of %s after %s attempts", 
+							entry.isDelete() ? "delete" : "save", key, MAX_ATTEMPTS));
+					continue;
+				}
+				requeued.put(key, new Pending<T, ID>(entry.id, entry.entity, entry.attempts + 1));
+			}
+			requeued.putAll(pending);
+			pending = requeued;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private static List<Object> key(Object id) {
+		Preconditions.checkNotNull(id, "id must be provided");
+		return Arrays.asList((id instanceof Object[]) ? (Object[]) id : new Object[]{id});
+	}
+}
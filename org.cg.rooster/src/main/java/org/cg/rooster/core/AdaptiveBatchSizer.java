@@ -0,0 +1,87 @@
+package org.cg.rooster.core;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Tunes the number of rows sent per JDBC batch from the observed latency of executing and committing a batch.
+ * The size grows while batches complete well within the target latency and shrinks in proportion when they exceed it,
+ * always staying between the minimum and maximum size.
+ * 
+ * @author WZ
+ *
+ */
+public class AdaptiveBatchSizer {
+	
+	public final static int DEFAULT_MIN_SIZE = 16;
+	public final static long DEFAULT_TARGET_LATENCY_MILLIS = 250;
+	
+	private final int minSize;
+	private final int maxSize;
+	private final long targetLatencyNanos;
+	private volatile int size;
+	
+	/**
+	 * @param maxSize the maximum batch size
+	 */
+	public AdaptiveBatchSizer(int maxSize) {
+		this(Math.min(DEFAULT_MIN_SIZE, maxSize), maxSize, DEFAULT_TARGET_LATENCY_MILLIS);
+	}
+	
+	/**
+	 * @param minSize the minimum batch size
+	 * @param maxSize the maximum batch size
+	 * @param targetLatencyMillis the latency a batch should complete in
+	 */
+	public AdaptiveBatchSizer(int minSize, int maxSize, long targetLatencyMillis) {
+		Preconditions.checkArgument(minSize > 0 && minSize <= maxSize, "minSize must be between 1 and maxSize");
+		Preconditions.checkArgument(targetLatencyMillis > 0, "targetLatencyMillis must be positive");
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+		this.size = maxSize;
+	}
+	
+	/**
+	 * @return the batch size to use for the next batch
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	/**
+	 * Record a completed batch and adjust the size for the next one
+	 * 
+	 * @param batchSize the number of rows in the batch
+	 * @param elapsedNanos the time taken to execute and commit the batch
+	 */
+	public void record(int batchSize, long elapsedNanos) {
+		if (batchSize <= 0) return;
+		int next;
+		if (elapsedNanos > targetLatencyNanos) {
+			next = (int) (batchSize * ((double) targetLatencyNanos / elapsedNanos));
+		} else if (elapsedNanos < targetLatencyNanos / 2 && batchSize >= size) {
+			//only grow when the batch was full, a short tail batch says nothing about a bigger one
+			next = size + Math.max(1, size / 2);
+		} else {
+			return;
+		}
+		size = Math.max(minSize, Math.min(maxSize, next));
+	}
+	
+	public int getMinSize() {
+		return minSize;
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptiveBatchSizer [size=" + size + ", minSize=" + minSize + ", maxSize=" + maxSize
+				+ ", targetLatencyMillis=" + TimeUnit.NANOSECONDS.toMillis(targetLatencyNanos) + "]";
+	}
+	
+}
@@ -0,0 +1,111 @@
+package org.cg.rooster.core;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+
+/**
+ * Defines an aggregate function over a column, computed by the database for each group of a query
+ * @author WZ
+ *
+ */
+public class Aggregate {
+	
+	/**
+	 * The aggregate functions
+	 */
+	public enum Function {
+		COUNT,
+		SUM,
+		MIN,
+		MAX,
+		AVG
+	}
+	
+	private final Function function;
+	private final String columnName;
+	private final String alias;
+	
+	/**
+	 * @param function the aggregate function
+	 * @param columnName the column name, or null for COUNT(*)
+	 * @param alias the label of the result, or null to label it with the expression
+	 */
+	public Aggregate(Function function, String columnName, String alias) {
+		Preconditions.checkNotNull(function, "function must be provided");
+		Preconditions.checkArgument(function == Function.COUNT || !Strings.isNullOrEmpty(columnName), "columnName must be provided");
+		this.function = function;
+		this.columnName = Strings.emptyToNull(columnName);
+		this.alias = Strings.emptyToNull(alias);
+	}
+	
+	/**
+	 * @return COUNT(*)
+	 */
+	public static Aggregate count() {
+		return new Aggregate(Function.COUNT, null, null);
+	}
+	
+	/**
+	 * @param columnName the column name
+	 * @return COUNT(columnName), which does not count null values
+	 */
+	public static Aggregate count(String columnName) {
+		return new Aggregate(Function.COUNT, columnName, null);
+	}
+	
+	public static Aggregate sum(String columnName) {
+		return new Aggregate(Function.SUM, columnName, null);
+	}
+	
+	public static Aggregate min(String columnName) {
+		return new Aggregate(Function.MIN, columnName, null);
+	}
+	
+	public static Aggregate max(String columnName) {
+		return new Aggregate(Function.MAX, columnName, null);
+	}
+	
+	public static Aggregate avg(String columnName) {
+		return new Aggregate(Function.AVG, columnName, null);
+	}
+	
+	/**
+	 * @param alias the label of the result
+	 * @return a copy of this aggregate with the alias
+	 */
+	public Aggregate as(String alias) {
+		Preconditions.checkArgument(!Strings.isNullOrEmpty(alias), "alias must be provided");
+		return new Aggregate(function, columnName, alias);
+	}
+
+	public Function getFunction() {
+		return function;
+	}
+
+	public String getColumnName() {
+		return columnName;
+	}
+
+	public String getAlias() {
+		return alias;
+	}
+	
+	/**
+	 * @return the SQL expression, e.g. SUM(amount)
+	 */
+	public String getExpression() {
+		return function.name() + "(" + (columnName == null ? "*" : columnName) + ")";
+	}
+	
+	/**
+	 * @return the label of the result in an {@link AggregateRow}, the alias if any, otherwise the expression
+	 */
+	public String getLabel() {
+		return alias != null ? alias : getExpression();
+	}
+
+	@Override
+	public String toString() {
+		return alias != null ? getExpression() + " AS " + alias : getExpression();
+	}
+}
@@ -0,0 +1,126 @@
+package org.cg.rooster.core;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A row of an aggregate query: the values of the group by columns, labeled by column name, 
+ * followed by the results of the aggregates, labeled by {@link Aggregate#getLabel()}
+ * @author WZ
+ *
+ */
+public class AggregateRow {
+	
+	private final Map<String, Object> values;
+	
+	public AggregateRow(Map<String, Object> values) {
+		Preconditions.checkNotNull(values, "values must be provided");
+		this.values = Collections.unmodifiableMap(values);
+	}
+	
+	/**
+	 * @return all values by label, in select order
+	 */
+	public Map<String, Object> getValues() {
+		return values;
+	}
+	
+	/**
+	 * @param label the group by column name or aggregate label
+	 * @return the value, null if the value is null
+	 */
+	public Object get(String label) {
+		Preconditions.checkArgument(values.containsKey(label), "no value labeled %s", label);
+		return values.get(label);
+	}
+	
+	/**
+	 * @param aggregate the aggregate of the query
+	 * @return the result of the aggregate
+	 */
+	public Object get(Aggregate aggregate) {
+		return get(aggregate.getLabel());
+	}
+	
+	/**
+	 * @param label the group by column name or aggregate label
+	 * @param type the expected type
+	 * @return the value
+	 * @throws ClassCastException if the value is not of the type
+	 */
+	public <V> V get(String label, Class<V> type) {
+		return type.cast(get(label));
+	}
+	
+	/**
+	 * @param label the group by column name or aggregate label
+	 * @return the numeric value as long, null if the value is null
+	 */
+	public Long getLong(String label) {
+		final Number value = (Number) get(label);
+		return value == null ? null : value.longValue();
+	}
+	
+	/**
+	 * @param label the group by column name or aggregate label
+	 * @return the numeric value as double, null if the value is null
+	 */
+	public Double getDouble(String label) {
+		final Number value = (Number) get(label);
+		return value == null ? null : value.doubleValue();
+	}
+	
+	/**
+	 * @param label the group by column name or aggregate label
+	 * @return the numeric value as decimal, null if the value is null
+	 */
+	public BigDecimal getDecimal(String label) {
+		final Object value = get(label);
+		if (value == null || value instanceof BigDecimal) return (BigDecimal) value;
+		return new BigDecimal(value.toString());
+	}
+	
+	/**
+	 * Maps the rows of a statement that selects the group by columns followed by the aggregates
+	 * 
+	 * @param groupBy the group by columns
+	 * @param aggregates the aggregates
+	 * @return the row mapper
+	 */
+	public static RowMapper<AggregateRow> rowMapper (List<String> groupBy, List<Aggregate> aggregates) {
+		final String[] labels = new String[(groupBy == null ? 0 : groupBy.size()) + aggregates.size()];
+		int i = 0;
+		if (groupBy != null) {
+			for (String column : groupBy) {
+				labels[i++] = column;
+			}
+		}
+		for (Aggregate aggregate : aggregates) {
+			labels[i++] = aggregate.getLabel();
+		}
+		return new RowMapper<AggregateRow>() {
+			@Override
+			public AggregateRow mapRow(ResultSet rs, int rowNum) throws SQLException {
+				final Map<String, Object> values = new LinkedHashMap<String, Object>(labels.length * 2);
+				for (int j = 0; j < labels.length; j++) {
+					values.put(labels[j], rs.getObject(j + 1));
+				}
+				return new AggregateRow(values);
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "AggregateRow " + values;
+	}
+}
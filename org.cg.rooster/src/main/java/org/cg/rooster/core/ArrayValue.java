@@ -0,0 +1,98 @@
+package org.cg.rooster.core;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.springframework.jdbc.core.support.AbstractSqlTypeValue;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+
+/**
+ * A list of values bound to one placeholder as a SQL array, created from the connection of the statement
+ * @author WZ
+ *
+ */
+public final class ArrayValue extends AbstractSqlTypeValue {
+
+	private final String elementType;
+	private final Object[] values;
+
+	/**
+	 * @param elementType the SQL type name of the elements, e.g. VARCHAR
+	 * @param values the values
+	 */
+	public ArrayValue(String elementType, Object[] values) {
+		Preconditions.checkArgument(!Strings.isNullOrEmpty(elementType), "elementType must be provided");
+		Preconditions.checkNotNull(values, "values must be provided");
+		this.elementType = elementType;
+		this.values = values;
+	}
+
+	/**
+	 * Create an array value, the element type is taken from the values that are not null, which must all be of one type.
+	 * A {@link java.util.Date} is bound as a TIMESTAMP
+	 *
+	 * @param values a collection or an array of values, primitive arrays are boxed
+	 * @return the array value
+	 * @throws IllegalArgumentException if the element type of the values is not supported or the values are of mixed types
+	 */
+	public static ArrayValue of(Object values) {
+		final Object[] elements = Condition.valuesOf(values);
+		String elementType = null;
+		for (int i = 0; i < elements.length; i++) {
+			final Object element = elements[i];
+			if (element instanceof java.util.Date && !(element instanceof java.sql.Timestamp 
+					|| element instanceof java.sql.Time || element instanceof java.sql.Date)) {
+				elements[i] = new java.sql.Timestamp(((java.util.Date) element).getTime());
+			}
+			final String type = typeOf(elements[i]);
+			if (elementType == null) {
+				elementType = type;
+			} else if (type != null && !type.equals(elementType)) {
+				throw new IllegalArgumentException(String.format("values must be of one type, found %s and %s", elementType, type));
+			}
+		}
+		Preconditions.checkArgument(elementType != null, "element type of the values cannot be inferred");
+		return new ArrayValue(elementType, elements);
+	}
+
+	private static String typeOf(Object value) {
+		if (value == null) return null;
+		if (value instanceof String) return "VARCHAR";
+		if (value instanceof Integer) return "INTEGER";
+		if (value instanceof Long) return "BIGINT";
+		if (value instanceof Short) return "SMALLINT";
+		if (value instanceof Byte) return "TINYINT";
+		if (value instanceof Float) return "FLOAT";
+		if (value instanceof Double) return "DOUBLE";
+		if (value instanceof java.math.BigDecimal) return "DECIMAL";
+		if (value instanceof Boolean) return "BOOLEAN";
+		if (value instanceof java.sql.Timestamp) return "TIMESTAMP";
+		if (value instanceof java.sql.Time) return "TIME";
+		if (value instanceof java.sql.Date) return "DATE";
+		throw new IllegalArgumentException("Data type unsupported: " + value.getClass().getName());
+	}
+
+	public String getElementType() {
+		return elementType;
+	}
+
+	public Object[] getValues() {
+		return values;
+	}
+
+	@Override
+	protected Object createTypeValue(Connection con, int sqlType, String typeName) throws SQLException {
+		return con.createArrayOf(elementType, values);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return elementType + " ARRAY" + Arrays.toString(values);
+	}
+}
@@ -0,0 +1,135 @@
+package org.cg.rooster.core;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a batch save, with one {@link ShapeResult} per distinct statement the entities were grouped by
+ * @author WZ
+ *
+ */
+public class BatchSaveReport {
+	
+	private final List<ShapeResult> shapes;
+	private final long elapsedMillis;
+	
+	public BatchSaveReport(List<ShapeResult> shapes, long elapsedMillis) {
+		this.shapes = Collections.unmodifiableList(shapes);
+		this.elapsedMillis = elapsedMillis;
+	}
+	
+	/**
+	 * @return the result of each statement shape
+	 */
+	public List<ShapeResult> getShapes() {
+		return shapes;
+	}
+	
+	/**
+	 * @return the wall clock time of the whole save
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+	
+	/**
+	 * @return true if every shape was saved without error
+	 */
+	public boolean isSucceed() {
+		for (ShapeResult shape : shapes) {
+			if (!shape.isSucceed()) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the number of entities submitted
+	 */
+	public long getSubmittedCount() {
+		long count = 0;
+		for (ShapeResult shape : shapes) {
+			count += shape.getSubmittedCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * @return the number of entities saved
+	 */
+	public long getSavedCount() {
+		long count = 0;
+		for (ShapeResult shape : shapes) {
+			count += shape.getSavedCount();
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return "BatchSaveReport [shapes=" + shapes + ", elapsedMillis=" + elapsedMillis + "]";
+	}
+	
+	/**
+	 * The outcome of saving the entities that share one statement
+	 */
+	public static class ShapeResult {
+		
+		private final String statement;
+		private final long submittedCount;
+		private final long savedCount;
+		private final int batchCount;
+		private final long elapsedNanos;
+		private final RuntimeException error;
+		
+		public ShapeResult(String statement, long submittedCount, long savedCount, int batchCount, long elapsedNanos, RuntimeException error) {
+			this.statement = statement;
+			this.submittedCount = submittedCount;
+			this.savedCount = savedCount;
+			this.batchCount = batchCount;
+			this.elapsedNanos = elapsedNanos;
+			this.error = error;
+		}
+		
+		public String getStatement() {
+			return statement;
+		}
+		
+		public long getSubmittedCount() {
+			return submittedCount;
+		}
+		
+		public long getSavedCount() {
+			return savedCount;
+		}
+		
+		public int getBatchCount() {
+			return batchCount;
+		}
+		
+		/**
+		 * @return the time spent executing and committing the batches of this shape
+		 */
+		public long getElapsedMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+		}
+		
+		/**
+		 * @return the error that stopped this shape, or null
+		 */
+		public RuntimeException getError() {
+			return error;
+		}
+		
+		public boolean isSucceed() {
+			return error == null;
+		}
+
+		@Override
+		public String toString() {
+			return "ShapeResult [statement=" + statement + ", submittedCount=" + submittedCount 
+					+ ", savedCount=" + savedCount + ", batchCount=" + batchCount 
+					+ ", elapsedMillis=" + getElapsedMillis() + ", error=" + error + "]";
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package org.cg.rooster.core;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The positions of the columns of a {@link ResultSet}, resolved once from its {@link ResultSetMetaData}.
+ * Column names are matched case-insensitively, like {@link ResultSet#findColumn(String)},
+ * and the first column wins if a label is repeated.
+ *
+ * An index is not thread safe, it belongs to the thread reading the result set.
+ *
+ * @author WZ
+ *
+ */
+public final class ColumnIndex {
+
+	public final static int NOT_FOUND = -1;
+
+	//weak, so an index kept by a thread does not hold on to the rows of a closed result set
+	private final WeakReference<ResultSet> resultSet;
+	private final Map<String, Integer> byLabel;
+	private final Map<String, Integer> byLabelIgnoreCase;
+	private final int columnCount;
+
+	private ColumnIndex (ResultSet resultSet, Map<String, Integer> byLabel, Map<String, Integer> byLabelIgnoreCase, int columnCount) {
+		this.resultSet = new WeakReference<ResultSet>(resultSet);
+		this.byLabel = byLabel;
+		this.byLabelIgnoreCase = byLabelIgnoreCase;
+		this.columnCount = columnCount;
+	}
+
+	/**
+	 * Resolve the column positions of a result set
+	 *
+	 * @param rs the result set
+	 * @return the column index
+	 * @throws SQLException if the metadata cannot be read
+	 */
+	public static ColumnIndex of (ResultSet rs) throws SQLException {
+		final ResultSetMetaData metaData = rs.getMetaData();
+		final int columnCount = metaData.getColumnCount();
+		final Map<String, Integer> byLabel = new HashMap<String, Integer>(columnCount * 4);
+		final Map<String, Integer> byLabelIgnoreCase = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+		for (int i = 1; i <= columnCount; i++) {
+			final String label = metaData.getColumnLabel(i);
+			if (label == null) continue;
+			if (!byLabel.containsKey(label)) byLabel.put(label, i);
+			if (!byLabelIgnoreCase.containsKey(label)) byLabelIgnoreCase.put(label, i);
+		}
+		return new ColumnIndex(rs, byLabel, byLabelIgnoreCase, columnCount);
+	}
+
+	/**
+	 * @param rs a result set
+	 * @return true if the index was resolved from this result set
+	 */
+	public boolean isFor (ResultSet rs) {
+		return resultSet.get() == rs;
+	}
+
+	/**
+	 * @return the number of columns
+	 */
+	public int getColumnCount() {
+		return columnCount;
+	}
+
+	/**
+	 * @param column the column name
+	 * @return the 1-based position of the column, or {@link #NOT_FOUND}
+	 */
+	public int indexOf (String column) {
+		Integer index = byLabel.get(column);
+		if (index == null) {
+			index = byLabelIgnoreCase.get(column);
+			if (index == null) return NOT_FOUND;
+			//the next rows look the name up as spelled by the mapper
+			byLabel.put(column, index);
+		}
+		return index;
+	}
+
+	/**
+	 * @param column the column name
+	 * @return the 1-based position of the column
+	 * @throws SQLException if the result set has no such column
+	 */
+	public int findColumn (String column) throws SQLException {
+		final int index = indexOf(column);
+		if (index == NOT_FOUND) {
+			throw new SQLException(String.format("column %s not found in result set", column));
+		}
+		return index;
+	}
+}
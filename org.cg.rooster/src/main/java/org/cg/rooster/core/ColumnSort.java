@@ -0,0 +1,141 @@
+package org.cg.rooster.core;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Sorts rows in memory by their column values, used to merge results of statements that were run separately.
+ * The values of the sorted columns are read from the result set while the rows are mapped,
+ * so dynamic columns and columns the entity does not map can be sorted by, as long as the statements select them.
+ * Null values come first in ascending order, the same as Apache Phoenix.
+ *
+ * @author WZ
+ *
+ */
+public final class ColumnSort {
+
+	private ColumnSort() {
+
+	}
+
+	/**
+	 * Wrap a row mapper to read the values of the sort columns of each row along with it
+	 *
+	 * @param rowMapper the row mapper
+	 * @param sort the sorting order
+	 * @return the row mapper of keyed rows
+	 */
+	public static <T> RowMapper<Keyed<T>> keyed (final RowMapper<T> rowMapper, Sort sort) {
+		Preconditions.checkNotNull(rowMapper, "rowMapper must be provided");
+		Preconditions.checkNotNull(sort, "sort must be provided");
+		final List<String> columns = new ArrayList<String>();
+		for (Order order : sort) {
+			columns.add(order.getProperty());
+		}
+		//chunks are mapped on several threads, each of them reads one result set at a time
+		final ThreadLocal<ColumnIndex> columnIndex = new ThreadLocal<ColumnIndex>();
+		return new RowMapper<Keyed<T>>() {
+			@Override
+			public Keyed<T> mapRow(ResultSet rs, int rowNum) throws SQLException {
+				ColumnIndex index = columnIndex.get();
+				if (index == null || !index.isFor(rs)) {
+					index = ColumnIndex.of(rs);
+					columnIndex.set(index);
+				}
+				final Object[] keys = new Object[columns.size()];
+				for (int i = 0; i < keys.length; i++) {
+					keys[i] = rs.getObject(index.findColumn(columns.get(i)));
+				}
+				return new Keyed<T>(rowMapper.mapRow(rs, rowNum), keys);
+			}
+		};
+	}
+
+	/**
+	 * Sort keyed rows by the sort order
+	 *
+	 * @param rows the rows read with {@link #keyed(RowMapper, Sort)} of the same sort
+	 * @param sort the sorting order
+	 * @return a new sorted list of the rows
+	 */
+	public static <T> List<T> sort (List<Keyed<T>> rows, Sort sort) {
+		Preconditions.checkNotNull(rows, "rows must be provided");
+		Preconditions.checkNotNull(sort, "sort must be provided");
+		final List<Direction> directions = new ArrayList<Direction>();
+		for (Order order : sort) {
+			directions.add(order.getDirection());
+		}
+
+		final List<Keyed<T>> keyed = new ArrayList<Keyed<T>>(rows);
+		Collections.sort(keyed, new Comparator<Keyed<T>>() {
+			@Override
+			public int compare(Keyed<T> a, Keyed<T> b) {
+				for (int j = 0; j < directions.size(); j++) {
+					int c = compareValues(a.keys[j], b.keys[j]);
+					if (c != 0) {
+						return directions.get(j) == Direction.DESC ? -c : c;
+					}
+				}
+				return 0;
+			}
+		});
+
+		final List<T> sorted = new ArrayList<T>(keyed.size());
+		for (Keyed<T> k : keyed) {
+			sorted.add(k.row);
+		}
+		return sorted;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compareValues (Object a, Object b) {
+		if (a == b) return 0;
+		if (a == null) return -1;
+		if (b == null) return 1;
+		if (a instanceof byte[] && b instanceof byte[]) {
+			return compareBytes((byte[]) a, (byte[]) b);
+		}
+		return ((Comparable) a).compareTo(b);
+	}
+
+	/**
+	 * Binary values sort as unsigned bytes, like the row keys they are stored in
+	 */
+	private static int compareBytes (byte[] a, byte[] b) {
+		for (int i = 0; i < a.length && i < b.length; i++) {
+			int c = (a[i] & 0xff) - (b[i] & 0xff);
+			if (c != 0) return c;
+		}
+		return a.length - b.length;
+	}
+
+	/**
+	 * A row with the values of its sort columns
+	 *
+	 * @param <T> The row type
+	 */
+	public static final class Keyed<T> {
+		private final T row;
+		private final Object[] keys;
+
+		private Keyed(T row, Object[] keys) {
+			this.row = row;
+			this.keys = keys;
+		}
+
+		public T getRow() {
+			return row;
+		}
+	}
+}
@@ -1,8 +1,12 @@
 package org.cg.rooster.core;
 
-import java.util.LinkedList;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+import org.cg.rooster.core.ConditionOperator.Operand;
+
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 
@@ -19,9 +23,14 @@ public class Condition {
 	
 	public final static String SPACE = " ";
 	public final static String PLACEHOLDER = " ?";
+	public final static String COMMA_PLACEHOLDER = ", ?";
+	public final static String RANGE_PLACEHOLDERS = " ? AND ?";
+	public final static String ARRAY_PLACEHOLDER = " (?)";
 	
 	/**
-	 * Construct a Condition for where clause. Any column name/type mismatch will cause a SQLException during query
+	 * Construct a Condition for where clause. Any column name/type mismatch will cause a SQLException during query. 
+	 * The value of an operator taking a {@link Operand#LIST} or a {@link Operand#RANGE} is a collection or an array of values, 
+	 * the value of an operator taking an {@link Operand#ARRAY} is a collection, an array, an {@link ArrayValue} or a {@link java.sql.Array}
 	 * @param columnName The column name
 	 * @param operator The {@link ConditionOperator}
 	 * @param value The condition value
@@ -32,7 +41,57 @@ public class Condition {
 		
 		this.lhsOperand = columnName;
 		this.operator = operator;
-		this.rhsOperand = value;
+		this.rhsOperand = operandOf(operator, value);
+	}
+	
+	private static Object operandOf (ConditionOperator operator, Object value) {
+		switch (operandKindOf(operator)) {
+		case LIST:
+			final Object[] values = valuesOf(value);
+			Preconditions.checkArgument(values.length > 0, "values must be provided");
+			return values;
+		case RANGE:
+			final Object[] range = valuesOf(value);
+			Preconditions.checkArgument(range.length == 2, "a range must have two values");
+			return range;
+		case ARRAY:
+			Preconditions.checkNotNull(value, "value must be provided");
+			if (value instanceof ArrayValue || value instanceof java.sql.Array || value instanceof PreparedQuery.Parameter) {
+				return value;
+			}
+			return ArrayValue.of(value);
+		default:
+			return value;
+		}
+	}
+	
+	/**
+	 * @param operator the operator
+	 * @return the kind of right hand side operand the operator takes, a single value unless it is a {@link MultiValuedConditionOperator}
+	 */
+	public static Operand operandKindOf (ConditionOperator operator) {
+		return operator instanceof MultiValuedConditionOperator ? ((MultiValuedConditionOperator) operator).getOperand() : Operand.SINGLE;
+	}
+	
+	/**
+	 * Copy the values of a collection or an array, the elements of a primitive array are boxed
+	 * @param values the collection or the array
+	 * @return the values
+	 */
+	static Object[] valuesOf (Object values) {
+		Preconditions.checkNotNull(values, "values must be provided");
+		if (values instanceof Collection) {
+			return ((Collection<?>) values).toArray();
+		} else if (values instanceof Object[]) {
+			return ((Object[]) values).clone();
+		} else if (values.getClass().isArray()) {
+			final Object[] boxed = new Object[Array.getLength(values)];
+			for (int i = 0; i < boxed.length; i++) {
+				boxed[i] = Array.get(values, i);
+			}
+			return boxed;
+		}
+		throw new IllegalArgumentException("values must be a collection or an array");
 	}
 	
 	/**
@@ -55,6 +114,9 @@ public class Condition {
 		return lhsOperand;
 	}
 	
+	/**
+	 * @return the value, an Object[] for operators taking a {@link Operand#LIST} or a {@link Operand#RANGE}, or the right hand side condition
+	 */
 	public Object getRhsOperand() {
 		return rhsOperand;
 	}
@@ -78,8 +140,25 @@ public class Condition {
 			final StringBuilder sb = new StringBuilder();
 			sb.append("(");
 			sb.append((String)lhs).append(SPACE).append(op);
-			if (rhs!=null) {
-				sb.append(PLACEHOLDER);
+			switch (operandKindOf(conditon.getOperator())) {
+			case LIST:
+				final int size = ((Object[]) rhs).length;
+				sb.append(" (?");
+				for (int i = 1; i < size; i++) {
+					sb.append(COMMA_PLACEHOLDER);
+				}
+				sb.append(")");
+				break;
+			case RANGE:
+				sb.append(RANGE_PLACEHOLDERS);
+				break;
+			case ARRAY:
+				sb.append(ARRAY_PLACEHOLDER);
+				break;
+			default:
+				if (rhs!=null) {
+					sb.append(PLACEHOLDER);
+				}
 			}
 			sb.append(")");
 			return sb.toString();
@@ -98,25 +177,59 @@ public class Condition {
 	public static Object[] getParamsFromConditions (final List<Condition> conditions) {
 		Preconditions.checkNotNull(conditions, "conditions must be provided");
 		
-		final List<Object> params = new LinkedList<Object>();
+		final List<Object> params = new ArrayList<Object>();
+		visitParams(conditions, new ParamVisitor() {
+			@Override
+			public void visit(String column, Object value, boolean array) {
+				params.add(value);
+			}
+		});
+		return params.toArray();
+	}
+	
+	/**
+	 * Recursively walk the parameters of the conditions in the order of their placeholders
+	 * @param conditions The condition list
+	 * @param visitor The visitor of each parameter
+	 */
+	static void visitParams (final List<Condition> conditions, ParamVisitor visitor) {
 		for (Condition c : conditions) {
-			parseConditionParam(c, params);
+			parseConditionParam(c, visitor);
 		}
-		return params.toArray();
 	}
 	
-	private static void parseConditionParam (Condition c, List<Object> params) {
+	private static void parseConditionParam (Condition c, ParamVisitor visitor) {
 		Object lhs = c.getLhsOperand();
 		Object rhs = c.getRhsOperand();		
 		if (lhs instanceof String) {
-			if (rhs!=null) params.add(rhs);
+			final Operand operand = operandKindOf(c.getOperator());
+			if (operand == Operand.LIST || operand == Operand.RANGE) {
+				for (Object value : (Object[]) rhs) {
+					visitor.visit((String) lhs, value, false);
+				}
+			} else if (rhs!=null) {
+				visitor.visit((String) lhs, rhs, operand == Operand.ARRAY);
+			}
 			return;
 		} else if (lhs instanceof Condition && rhs instanceof Condition) {
-			parseConditionParam((Condition)lhs, params);
-			parseConditionParam((Condition)rhs, params);
+			parseConditionParam((Condition)lhs, visitor);
+			parseConditionParam((Condition)rhs, visitor);
 		} else {
 		    throw new UnsupportedOperationException("Invalid operation for condition.");
 		}
 	}
+	
+	/**
+	 * Receives the parameters of conditions, one per placeholder
+	 */
+	interface ParamVisitor {
+		
+		/**
+		 * @param column the column of the condition
+		 * @param value the parameter
+		 * @param array true if the parameter is bound as a single array
+		 */
+		void visit (String column, Object value, boolean array);
+	}
 
 }
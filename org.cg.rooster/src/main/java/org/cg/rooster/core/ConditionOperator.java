@@ -7,6 +7,20 @@ package org.cg.rooster.core;
  */
 public interface ConditionOperator {
 	
+	/**
+	 * The kinds of right hand side operand of an operator, see {@link MultiValuedConditionOperator}
+	 */
+	public enum Operand {
+		/** a value, or none for unary operators, e.g. = ? or IS NULL */
+		SINGLE,
+		/** a non-empty list of values, each bound to a placeholder, e.g. IN (?, ?, ?) */
+		LIST,
+		/** a lower and an upper bound, e.g. BETWEEN ? AND ? */
+		RANGE,
+		/** a list of values bound to one placeholder as a SQL array, e.g. = ANY (?) */
+		ARRAY
+	}
+	
 	/**
 	 * Get the operator SQL string
 	 * @return the operator SQL string
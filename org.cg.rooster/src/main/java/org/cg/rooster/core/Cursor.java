@@ -0,0 +1,29 @@
+package org.cg.rooster.core;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * A forward-only iterator over the rows of a query that holds database resources until it is closed.
+ * A cursor closes itself once it is exhausted, otherwise it must be closed by the caller:
+ *
+ * <pre>
+ * try (Cursor&lt;Event&gt; cursor = repository.stream(query)) {
+ *     while (cursor.hasNext()) {
+ *         process(cursor.next());
+ *     }
+ * }
+ * </pre>
+ *
+ * @author WZ
+ *
+ * @param <T> The entity type
+ */
+public interface Cursor<T> extends Iterator<T>, Closeable {
+
+	/**
+	 * Release the statement and connection held by the cursor. Calling it more than once has no effect.
+	 */
+	@Override
+	public void close();
+}
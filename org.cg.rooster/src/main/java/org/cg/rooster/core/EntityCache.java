@@ -0,0 +1,57 @@
+package org.cg.rooster.core;
+
+import com.google.common.base.Optional;
+
+/**
+ * A cache of entities by id in front of a repository. Compound ids (Object []) are compared by their components.
+ * 
+ * Besides entities, a cache may remember ids known to have no entity, so repeated lookups of a missing id
+ * do not reach the database either.
+ * 
+ * A lookup takes a {@link #stamp(Object)} of the id before it reads the database and passes it to {@link #put(Object, Object, long)},
+ * so a result read before an invalidation of the id is not cached after it. 
+ * In a transaction a repository neither reads nor fills the cache, since it may read rows it has not committed yet,
+ * and it invalidates the ids the transaction wrote again once it commits or rolls back, 
+ * so a row committed before the transaction that was cached meanwhile is not kept.
+ * The cached entity instances are returned to every caller, they must not be changed.
+ * 
+ * @author WZ
+ *
+ * @param <T> The entity type
+ * @param <ID> The id type
+ */
+public interface EntityCache<T, ID> {
+
+	/**
+	 * @param id the id
+	 * @return null if the id is not cached, {@link Optional#absent()} if it is cached as missing, or the cached entity
+	 */
+	public Optional<T> getIfPresent (ID id);
+	
+	/**
+	 * @param id the id
+	 * @return the stamp of the id, taken before it is looked up in the database
+	 */
+	public long stamp (ID id);
+	
+	/**
+	 * Cache the result of a lookup, unless the id was invalidated since the stamp was taken
+	 * 
+	 * @param id the id
+	 * @param entity the entity, or null if there is none
+	 * @param stamp the stamp of the id taken before the lookup
+	 */
+	public void put (ID id, T entity, long stamp);
+	
+	/**
+	 * Discard the cached result of the id
+	 * 
+	 * @param id the id
+	 */
+	public void invalidate (ID id);
+	
+	/**
+	 * Discard all cached results
+	 */
+	public void invalidateAll ();
+}
@@ -0,0 +1,95 @@
+package org.cg.rooster.core;
+
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+
+/**
+ * Defines an optimizer hint of a statement, e.g. SMALL for a point lookup or NO_CACHE for an export.
+ * Hints are rendered as a comment after the leading keyword, e.g. SELECT /&#42;+ SMALL NO_CACHE &#42;/ * FROM ...,
+ * by the dialects that support them
+ * @author WZ
+ *
+ */
+public final class Hint {
+
+	/** the query reads a few rows, runs it without setting up a parallel scan */
+	public final static Hint SMALL = new Hint("SMALL");
+	/** the rows read do not go into the block cache, for scans that read a row once */
+	public final static Hint NO_CACHE = new Hint("NO_CACHE");
+	/** run the scan on a single thread */
+	public final static Hint SERIAL = new Hint("SERIAL");
+	/** use a skip scan over the primary key */
+	public final static Hint SKIP_SCAN = new Hint("SKIP_SCAN");
+	/** use a range scan instead of a skip scan */
+	public final static Hint RANGE_SCAN = new Hint("RANGE_SCAN");
+	/** read the data table instead of an index */
+	public final static Hint NO_INDEX = new Hint("NO_INDEX");
+
+	private final String text;
+
+	private Hint(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Read a table through one of its indexes
+	 *
+	 * @param table the table name
+	 * @param indexes the index names, the optimizer picks one of them
+	 * @return INDEX(table index ...)
+	 */
+	public static Hint index(String table, String... indexes) {
+		checkName(table);
+		Preconditions.checkArgument(indexes != null && indexes.length > 0, "indexes must be provided");
+		final StringBuilder sb = new StringBuilder("INDEX(").append(table);
+		for (String index : indexes) {
+			checkName(index);
+			sb.append(' ').append(index);
+		}
+		return new Hint(sb.append(')').toString());
+	}
+
+	private static void checkName(String name) {
+		Preconditions.checkArgument(!Strings.isNullOrEmpty(name), "name must be provided");
+		Preconditions.checkArgument(!name.contains("*/"), "name must not end the hint comment");
+	}
+
+	/**
+	 * Render hints as a comment followed by a space
+	 *
+	 * @param hints the hints, may be null
+	 * @return the comment, or an empty string if there are no hints
+	 */
+	public static String comment(List<Hint> hints) {
+		if (hints == null || hints.isEmpty()) return "";
+		final StringBuilder sb = new StringBuilder("/*+ ");
+		for (Hint hint : hints) {
+			sb.append(hint.text).append(' ');
+		}
+		return sb.append("*/ ").toString();
+	}
+
+	/**
+	 * @return the hint as it appears in the comment
+	 */
+	public String getText() {
+		return text;
+	}
+
+	@Override
+	public int hashCode() {
+		return text.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return this == obj || (obj instanceof Hint && text.equals(((Hint) obj).text));
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+}
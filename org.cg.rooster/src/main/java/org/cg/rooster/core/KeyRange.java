@@ -0,0 +1,233 @@
+package org.cg.rooster.core;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+
+/**
+ * A range of values of a primary key column, the unit of work of a partitioned scan.
+ * The lower bound is inclusive and the upper bound exclusive, a missing bound leaves the range open on that side.
+ * The conditions of a range are added to the conditions of the query it partitions:
+ *
+ * <pre>
+ * Cursor&lt;Event&gt; byTenant = repository.stream(query, KeyRange.values("tid", Arrays.asList(1, 2, 3)));
+ * Cursor&lt;Event&gt; bySplit = repository.stream(query, repository.splitKeyRange(query, 8));
+ * </pre>
+ *
+ * The ranges of a scan must not overlap. For a scan ordered by their column, they are listed in ascending order.
+ *
+ * @author WZ
+ *
+ */
+public final class KeyRange {
+
+	/**
+	 * The comparisons of a range, rendered the same by every dialect
+	 */
+	private enum Bound implements ConditionOperator {
+		EQUAL ("="),
+		GREATER_OR_EQUAL (">="),
+		LESS ("<");
+
+		private final String operator;
+
+		private Bound(String operator) {
+			this.operator = operator;
+		}
+
+		@Override
+		public String getOperatorSQLStr() {
+			return operator;
+		}
+	}
+
+	private final String column;
+	private final Object lower;
+	private final Object upper;
+	private final boolean single;
+
+	private KeyRange(String column, Object lower, Object upper, boolean single) {
+		Preconditions.checkArgument(!Strings.isNullOrEmpty(column), "column must be provided");
+		this.column = column;
+		this.lower = lower;
+		this.upper = upper;
+		this.single = single;
+	}
+
+	/**
+	 * The range of a single value
+	 *
+	 * @param column the column
+	 * @param value the value
+	 * @return the range
+	 */
+	public static KeyRange of (String column, Object value) {
+		Preconditions.checkNotNull(value, "value must be provided");
+		return new KeyRange(column, value, value, true);
+	}
+
+	/**
+	 * The range from a lower bound, inclusive, to an upper bound, exclusive
+	 *
+	 * @param column the column
+	 * @param lower the lower bound, or null for no lower bound
+	 * @param upper the upper bound, or null for no upper bound
+	 * @return the range
+	 */
+	public static KeyRange between (String column, Object lower, Object upper) {
+		return new KeyRange(column, lower, upper, false);
+	}
+
+	/**
+	 * A range per value, e.g. per value of the leading primary key column
+	 *
+	 * @param column the column
+	 * @param values the values, in ascending order for an ordered scan
+	 * @return the ranges, in the order of the values
+	 */
+	public static List<KeyRange> values (String column, Iterable<?> values) {
+		Preconditions.checkNotNull(values, "values must be provided");
+		final List<KeyRange> ranges = new ArrayList<KeyRange>();
+		for (Object value : values) {
+			ranges.add(of(column, value));
+		}
+		Preconditions.checkArgument(!ranges.isEmpty(), "values must be provided");
+		return ranges;
+	}
+
+	/**
+	 * Split a column at the boundaries, e.g. the start keys of regions.
+	 * The first range has no lower bound and the last range has no upper bound, so every row falls into a range
+	 *
+	 * @param column the column
+	 * @param boundaries the boundaries in ascending order
+	 * @return the ranges, one more than the boundaries
+	 */
+	public static List<KeyRange> split (String column, List<?> boundaries) {
+		Preconditions.checkNotNull(boundaries, "boundaries must be provided");
+		final List<KeyRange> ranges = new ArrayList<KeyRange>(boundaries.size() + 1);
+		Object lower = null;
+		for (Object boundary : boundaries) {
+			Preconditions.checkNotNull(boundary, "boundary must be provided");
+			ranges.add(between(column, lower, boundary));
+			lower = boundary;
+		}
+		ranges.add(between(column, lower, null));
+		return ranges;
+	}
+
+	/**
+	 * Split the values of an integral column from min to max into ranges of about equal width.
+	 * Values outside of min and max fall into the first or the last range
+	 *
+	 * @param column the column
+	 * @param min the minimum value
+	 * @param max the maximum value
+	 * @param partitions the number of ranges, fewer are returned if there are not as many values
+	 * @return the ranges in ascending order
+	 */
+	public static List<KeyRange> split (String column, long min, long max, int partitions) {
+		Preconditions.checkArgument(partitions > 0, "partitions must be positive");
+		Preconditions.checkArgument(min <= max, "min must not be greater than max");
+		if (partitions == 1) {
+			return Collections.singletonList(between(column, null, null));
+		}
+		final BigInteger from = BigInteger.valueOf(min);
+		final BigInteger width = BigInteger.valueOf(max).subtract(from).add(BigInteger.ONE);
+		final List<Long> boundaries = new ArrayList<Long>(partitions - 1);
+		long previous = min;
+		for (int i = 1; i < partitions; i++) {
+			final long boundary = from.add(width.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(partitions))).longValue();
+			if (boundary > previous) {
+				boundaries.add(boundary);
+				previous = boundary;
+			}
+		}
+		return split(column, boundaries);
+	}
+
+	/**
+	 * Whether every value of this range is below every value of the next one, 
+	 * integral bounds are compared by value and other bounds must be comparable to each other
+	 *
+	 * @param next the next range
+	 * @return true if the ranges are ascending and do not overlap
+	 * @throws IllegalArgumentException if the bounds cannot be compared
+	 */
+	public boolean isBefore (KeyRange next) {
+		Preconditions.checkNotNull(next, "next must be provided");
+		if (upper == null || next.lower == null) return false;
+		final int compared = compare(upper, next.lower);
+		//the value of a single value range is inclusive, an upper bound is not
+		return single ? compared < 0 : compared <= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int compare (Object a, Object b) {
+		if (isIntegral(a) && isIntegral(b)) {
+			return toBigInteger(a).compareTo(toBigInteger(b));
+		}
+		if (a instanceof Comparable && (a.getClass().isInstance(b) || b.getClass().isInstance(a))) {
+			return ((Comparable<Object>) a).compareTo(b);
+		}
+		throw new IllegalArgumentException(String.format("bounds %s and %s cannot be compared", a, b));
+	}
+
+	private static boolean isIntegral (Object value) {
+		return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte 
+				|| value instanceof BigInteger;
+	}
+
+	private static BigInteger toBigInteger (Object value) {
+		return value instanceof BigInteger ? (BigInteger) value : BigInteger.valueOf(((Number) value).longValue());
+	}
+
+	/**
+	 * @return the conditions selecting the rows of the range
+	 */
+	public List<Condition> getConditions() {
+		final List<Condition> conditions = new ArrayList<Condition>(2);
+		if (single) {
+			conditions.add(new Condition(column, Bound.EQUAL, lower));
+			return conditions;
+		}
+		if (lower != null) {
+			conditions.add(new Condition(column, Bound.GREATER_OR_EQUAL, lower));
+		}
+		if (upper != null) {
+			conditions.add(new Condition(column, Bound.LESS, upper));
+		}
+		return conditions;
+	}
+
+	public String getColumn() {
+		return column;
+	}
+
+	/**
+	 * @return the lower bound, inclusive, or null if there is none
+	 */
+	public Object getLower() {
+		return lower;
+	}
+
+	/**
+	 * @return the upper bound, exclusive, or null if there is none. The value of a single value range
+	 */
+	public Object getUpper() {
+		return upper;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		if (single) return "KeyRange [" + column + " = " + lower + "]";
+		return "KeyRange [" + column + " in [" + (lower != null ? lower : "") + ", " + (upper != null ? upper : "") + ")]";
+	}
+}
@@ -0,0 +1,75 @@
+package org.cg.rooster.core;
+
+import java.util.Arrays;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * A {@link Pageable} that continues after the primary key of the last row of the previous page, 
+ * so fetching page N costs the same as fetching the first page.
+ * 
+ * Get the pageable of the next page from {@link KeysetSlice#nextPageable()}, 
+ * a page other than the first one cannot be requested by its number alone.
+ * 
+ * @author WZ
+ *
+ */
+public class KeysetPageable extends PageRequest {
+
+	private static final long serialVersionUID = -2716309377405536829L;
+	
+	private final Object[] lastKey;
+	
+	/**
+	 * Create a pageable for the first page
+	 * 
+	 * @param size the page size
+	 */
+	public KeysetPageable(int size) {
+		this(0, size, null, null);
+	}
+	
+	/**
+	 * @param page the page number
+	 * @param size the page size
+	 * @param sort the sorting order, must be the primary key order if provided
+	 * @param lastKey the primary key components of the last row of the previous page, null for the first page
+	 */
+	public KeysetPageable(int page, int size, Sort sort, Object[] lastKey) {
+		super(page, size, sort);
+		this.lastKey = lastKey;
+	}
+	
+	/**
+	 * @return the primary key components of the last row of the previous page, or null for the first page
+	 */
+	public Object[] getLastKey() {
+		return lastKey;
+	}
+	
+	@Override
+	public Pageable first() {
+		return new KeysetPageable(0, getPageSize(), getSort(), null);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof KeysetPageable)) return false;
+		return super.equals(obj) && Arrays.equals(lastKey, ((KeysetPageable) obj).lastKey);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * super.hashCode() + Arrays.hashCode(lastKey);
+	}
+
+	@Override
+	public String toString() {
+		return "KeysetPageable [page=" + getPageNumber() + ", size=" + getPageSize() + ", sort=" + getSort()
+				+ ", lastKey=" + Arrays.toString(lastKey) + "]";
+	}
+	
+}
@@ -0,0 +1,47 @@
+package org.cg.rooster.core;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+
+/**
+ * A slice of a keyset paginated query, carrying the continuation to fetch the next slice
+ * @author WZ
+ *
+ * @param <T> The entity type
+ */
+public class KeysetSlice<T> extends SliceImpl<T> {
+
+	private static final long serialVersionUID = 4207755563412698453L;
+	
+	private final Object[] continuation;
+	
+	/**
+	 * @param content the content of this slice
+	 * @param pageable the pageable this slice was requested with
+	 * @param hasNext whether there is a next slice
+	 * @param continuation the primary key components of the last row of this slice
+	 */
+	public KeysetSlice(List<T> content, Pageable pageable, boolean hasNext, Object[] continuation) {
+		super(content, pageable, hasNext);
+		this.continuation = continuation;
+	}
+	
+	/**
+	 * @return the primary key components of the last row of this slice, or null if it is empty
+	 */
+	public Object[] getContinuation() {
+		return continuation;
+	}
+	
+	/**
+	 * @return the {@link KeysetPageable} continuing after this slice, or null if this is the last slice
+	 */
+	@Override
+	public Pageable nextPageable() {
+		if (!hasNext()) return null;
+		return new KeysetPageable(getNumber() + 1, getSize(), getSort(), continuation);
+	}
+	
+}
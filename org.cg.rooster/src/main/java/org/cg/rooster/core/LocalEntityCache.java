@@ -0,0 +1,120 @@
+package org.cg.rooster.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * An in-process {@link EntityCache} with a maximum size, least recently used entries are evicted first, 
+ * and a time to live counted from the lookup that loaded the entry.
+ * 
+ * Only a table that is not mutable may be cached without a time to live, 
+ * since the repository can only invalidate the writes made through itself.
+ * 
+ * Invalidations are counted in stripes of ids, a lookup that ran while its stripe was invalidated is not cached.
+ * Cached entities are shared by all callers and must not be changed.
+ * 
+ * @author WZ
+ *
+ * @param <T> The entity type
+ * @param <ID> The id type
+ */
+public class LocalEntityCache<T, ID> implements EntityCache<T, ID> {
+
+	public final static long NO_EXPIRY = 0;
+	
+	private final static int STAMP_STRIPES = 64;
+	
+	private final Cache<List<Object>, Optional<T>> cache;
+	private final boolean cacheMisses;
+	private final AtomicLongArray invalidations = new AtomicLongArray(STAMP_STRIPES);
+	
+	/**
+	 * @param tableDefinition the table of the cached entities
+	 * @param maxSize the maximum number of cached ids
+	 * @param ttlMillis the time to live in milliseconds, or {@link #NO_EXPIRY} for a table that is not mutable
+	 * @param cacheMisses if ids without an entity are cached
+	 */
+	public LocalEntityCache(TableDefinition tableDefinition, long maxSize, long ttlMillis, boolean cacheMisses) {
+		Preconditions.checkNotNull(tableDefinition, "tableDefinition must be provided");
+		Preconditions.checkArgument(maxSize > 0, "maxSize must be positive");
+		Preconditions.checkArgument(ttlMillis >= 0, "ttlMillis must not be negative");
+		Preconditions.checkArgument(ttlMillis != NO_EXPIRY || !tableDefinition.isMutable(), 
+				"a mutable table requires a time to live");
+		
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats();
+		if (ttlMillis != NO_EXPIRY) {
+			builder.expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS);
+		}
+		this.cache = builder.build();
+		this.cacheMisses = cacheMisses;
+	}
+
+	@Override
+	public Optional<T> getIfPresent(ID id) {
+		return cache.getIfPresent(key(id));
+	}
+
+	@Override
+	public long stamp(ID id) {
+		return invalidations.get(stripe(key(id)));
+	}
+
+	@Override
+	public void put(ID id, T entity, long stamp) {
+		if (entity == null && !cacheMisses) return;
+		final List<Object> key = key(id);
+		final int stripe = stripe(key);
+		if (invalidations.get(stripe) != stamp) return;
+		cache.put(key, Optional.fromNullable(entity));
+		//an invalidation counted before this check is removed here, one counted after it removes the entry itself
+		if (invalidations.get(stripe) != stamp) {
+			cache.invalidate(key);
+		}
+	}
+
+	@Override
+	public void invalidate(ID id) {
+		final List<Object> key = key(id);
+		invalidations.incrementAndGet(stripe(key));
+		cache.invalidate(key);
+	}
+
+	@Override
+	public void invalidateAll() {
+		for (int i = 0; i < STAMP_STRIPES; i++) {
+			invalidations.incrementAndGet(i);
+		}
+		cache.invalidateAll();
+	}
+	
+	public long size() {
+		return cache.size();
+	}
+	
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+	
+	private static int stripe(List<Object> key) {
+		return (key.hashCode() & Integer.MAX_VALUE) % STAMP_STRIPES;
+	}
+	
+	private static List<Object> key(Object id) {
+		Preconditions.checkNotNull(id, "id must be provided");
+		return (id instanceof Object[]) ? Arrays.asList((Object[]) id) : Collections.singletonList(id);
+	}
+
+	@Override
+	public String toString() {
+		return "LocalEntityCache [size=" + cache.size() + ", cacheMisses=" + cacheMisses + ", stats=" + cache.stats() + "]";
+	}
+}
@@ -0,0 +1,16 @@
+package org.cg.rooster.core;
+
+/**
+ * Implement this interface instead of {@link ConditionOperator} for operators taking more than one value,
+ * e.g. IN or BETWEEN. Operators that only implement {@link ConditionOperator} take a single value.
+ * @author WZ
+ *
+ */
+public interface MultiValuedConditionOperator extends ConditionOperator {
+
+	/**
+	 * Get the kind of right hand side operand the operator takes
+	 * @return the operand kind
+	 */
+	public Operand getOperand();
+}
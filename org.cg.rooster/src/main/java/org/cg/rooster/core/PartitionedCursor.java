@@ -0,0 +1,329 @@
+package org.cg.rooster.core;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlProvider;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+/**
+ * A {@link Cursor} over the rows of several statements, e.g. the key ranges of a query, that run in parallel.
+ *
+ * Each statement is executed, read and mapped on a thread of the executor, one fetch window at a time.
+ * An ordered cursor returns the rows of the statements one statement after another, in the order they are given,
+ * and buffers at most {@code prefetchWindows} windows of each statement ahead of the caller.
+ * An unordered cursor returns the windows as they are mapped, and buffers at most {@code prefetchWindows} windows per statement in total.
+ * The statements do not join a transaction bound to the calling thread. Closing the cursor cancels the statements still running.
+ *
+ * When the executor is a {@link ForkJoinPool}, a thread waiting for the caller to consume its windows lets the pool
+ * run the other statements on a spare thread. Other executors must be able to run all statements of an ordered cursor at once.
+ *
+ * @author WZ
+ *
+ * @param <T> The entity type
+ */
+public class PartitionedCursor<T> implements Cursor<T> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PartitionedCursor.class);
+
+	public final static int DEFAULT_PREFETCH_WINDOWS = 4;
+
+	private static final Object END = new Object();
+	private static final long OFFER_WAIT_MILLIS = 100;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final boolean ordered;
+	private final long limit;
+	private final List<BlockingQueue<Object>> windows;
+	private final List<Future<?>> producers;
+	private final Set<PreparedStatement> statements = Collections.newSetFromMap(new ConcurrentHashMap<PreparedStatement, Boolean>());
+
+	private int partition = 0;
+	private int running;
+	private long returned = 0;
+	private Iterator<T> current = Collections.<T>emptyList().iterator();
+	private boolean exhausted = false;
+	private volatile boolean closed = false;
+
+	/**
+	 * Start running the statements
+	 *
+	 * @param jdbcTemplate the template providing the data source, fetch size and exception translation
+	 * @param sqls the SQL string of each statement
+	 * @param args the parameters of each statement
+	 * @param rowMapper the row mapper
+	 * @param executor the executor running the statements
+	 * @param ordered whether to return the rows of the statements in their order
+	 * @param limit the maximum number of rows of all statements, {@link Query#NO_LIMIT} for none,
+	 * another negative limit is {@link Query#DEFAULT_QUERY_LIMIT}
+	 * @param prefetchWindows the number of fetch windows buffered ahead of the caller per statement
+	 */
+	public PartitionedCursor(JdbcTemplate jdbcTemplate, List<String> sqls, List<Object[]> args, final RowMapper<T> rowMapper,
+			ExecutorService executor, boolean ordered, long limit, int prefetchWindows) {
+		Preconditions.checkNotNull(jdbcTemplate, "jdbcTemplate must be provided");
+		Preconditions.checkArgument(sqls != null && !sqls.isEmpty(), "sqls must be provided");
+		Preconditions.checkArgument(args != null && args.size() == sqls.size(), "args must be provided for each statement");
+		Preconditions.checkNotNull(rowMapper, "rowMapper must be provided");
+		Preconditions.checkNotNull(executor, "executor must be provided");
+		Preconditions.checkArgument(prefetchWindows > 0, "prefetchWindows must be positive");
+
+		this.jdbcTemplate = jdbcTemplate;
+		this.ordered = ordered;
+		this.limit = limit < 0 && limit != Query.NO_LIMIT ? Query.DEFAULT_QUERY_LIMIT : limit;
+		this.running = sqls.size();
+		this.windows = new ArrayList<BlockingQueue<Object>>(ordered ? sqls.size() : 1);
+		if (ordered) {
+			for (int i = 0; i < sqls.size(); i++) {
+				windows.add(new ArrayBlockingQueue<Object>(prefetchWindows));
+			}
+		} else {
+			windows.add(new ArrayBlockingQueue<Object>(prefetchWindows * sqls.size()));
+		}
+		final int windowSize = jdbcTemplate.getFetchSize() > 0 ? jdbcTemplate.getFetchSize() : ResultSetCursor.DEFAULT_WINDOW_SIZE;
+
+		//submitted in order, so the statement read by the caller is started first
+		this.producers = new ArrayList<Future<?>>(sqls.size());
+		for (int i = 0; i < sqls.size(); i++) {
+			final String sql = sqls.get(i);
+			final Object[] statementArgs = args.get(i);
+			final BlockingQueue<Object> queue = windows.get(ordered ? i : 0);
+			producers.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					produce(queue, sql, statementArgs, rowMapper, windowSize);
+				}
+			}));
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (current.hasNext()) return true;
+		if (exhausted) return false;
+		if (limit != Query.NO_LIMIT && returned >= limit) {
+			close();
+			return false;
+		}
+		while (!current.hasNext()) {
+			Object window = take();
+			if (window == END) {
+				running--;
+				if (ordered) partition++;
+				if (running == 0) {
+					close();
+					return false;
+				}
+			} else if (window instanceof Throwable) {
+				close();
+				throw translate((Throwable) window);
+			} else {
+				@SuppressWarnings("unchecked")
+				List<T> rows = (List<T>) window;
+				if (limit != Query.NO_LIMIT && rows.size() > limit - returned) {
+					rows = rows.subList(0, (int) (limit - returned));
+				}
+				current = rows.iterator();
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		returned++;
+		return current.next();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("remove is not supported by a cursor");
+	}
+
+	@Override
+	public void close() {
+		if (closed) return;
+		closed = true;
+		exhausted = true;
+		current = Collections.<T>emptyList().iterator();
+		//unblock the producers, cancel the statements still executing and wait for them to be released
+		for (BlockingQueue<Object> queue : windows) {
+			queue.clear();
+		}
+		for (PreparedStatement statement : statements) {
+			cancel(statement);
+		}
+		for (Future<?> producer : producers) {
+			try {
+				producer.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				LOG.warn("Error in reading a partition", e.getCause());
+			}
+		}
+		for (BlockingQueue<Object> queue : windows) {
+			queue.clear();
+		}
+	}
+
+	private void produce(final BlockingQueue<Object> queue, String sql, Object[] args, final RowMapper<T> rowMapper, final int windowSize) {
+		if (closed) return;
+		final CancelableStatementCreator creator = new CancelableStatementCreator(sql, args);
+		try {
+			final boolean completed = jdbcTemplate.query(creator, new ResultSetExtractor<Boolean>() {
+				@Override
+				public Boolean extractData(ResultSet rs) throws SQLException, DataAccessException {
+					List<T> window = new ArrayList<T>(windowSize);
+					int rowNum = 0;
+					while (!closed && rs.next()) {
+						window.add(rowMapper.mapRow(rs, rowNum++));
+						if (window.size() == windowSize) {
+							if (!put(queue, window)) return false;
+							window = new ArrayList<T>(windowSize);
+						}
+					}
+					return !closed && (window.isEmpty() || put(queue, window));
+				}
+			});
+			if (completed) put(queue, END);
+		} catch (Throwable t) {
+			put(queue, t);
+		} finally {
+			creator.release();
+		}
+	}
+
+	/**
+	 * @return whether the window was queued, false if the cursor was closed
+	 */
+	private boolean put(BlockingQueue<Object> queue, Object window) {
+		final Put put = new Put(queue, window);
+		try {
+			ForkJoinPool.managedBlock(put);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return put.queued;
+	}
+
+	private void cancel(PreparedStatement statement) {
+		try {
+			statement.cancel();
+		} catch (SQLException e) {
+			//the statement may have completed meanwhile
+			LOG.debug("Error in canceling a partition", e);
+		}
+	}
+
+	private Object take() {
+		try {
+			return windows.get(ordered ? partition : 0).take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new IllegalStateException("Interrupted while waiting for rows", e);
+		}
+	}
+
+	private RuntimeException translate(Throwable t) {
+		Throwables.propagateIfPossible(t);
+		return new IllegalStateException("Error in reading rows", t);
+	}
+
+	/**
+	 * Prepares a statement that {@link #close()} can cancel while it is executing
+	 */
+	private class CancelableStatementCreator implements PreparedStatementCreator, SqlProvider {
+
+		private final String sql;
+		private final Object[] args;
+		private PreparedStatement statement;
+
+		private CancelableStatementCreator(String sql, Object[] args) {
+			this.sql = sql;
+			this.args = args;
+		}
+
+		@Override
+		public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+			final PreparedStatement statement = con.prepareStatement(sql);
+			try {
+				new ArgumentPreparedStatementSetter(args).setValues(statement);
+			} catch (SQLException e) {
+				statement.close();
+				throw e;
+			}
+			this.statement = statement;
+			statements.add(statement);
+			//closed before it was registered, no one else cancels it
+			if (closed) cancel(statement);
+			return statement;
+		}
+
+		@Override
+		public String getSql() {
+			return sql;
+		}
+
+		private void release() {
+			if (statement != null) statements.remove(statement);
+		}
+	}
+
+	/**
+	 * Queues a window, as a blocker the pool can compensate for
+	 */
+	private class Put implements ForkJoinPool.ManagedBlocker {
+
+		private final BlockingQueue<Object> queue;
+		private final Object window;
+		private boolean queued = false;
+
+		private Put(BlockingQueue<Object> queue, Object window) {
+			this.queue = queue;
+			this.window = window;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			if (!isReleasable()) {
+				queued = queue.offer(window, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+			}
+			return isReleasable();
+		}
+
+		@Override
+		public boolean isReleasable() {
+			if (queued || closed) return true;
+			queued = queue.offer(window);
+			return queued;
+		}
+	}
+}
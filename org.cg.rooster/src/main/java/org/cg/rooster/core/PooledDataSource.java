@@ -0,0 +1,524 @@
+package org.cg.rooster.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A data source that keeps a pool of physical connections opened by a target data source, instead of opening
+ * a new one for every call. It works with any JDBC driver, {@link org.cg.rooster.phoenix.PooledPhoenixDataSource}
+ * pools the connections of a {@link org.cg.rooster.phoenix.PhoenixDataSource} with it.
+ *
+ * Closing a borrowed connection returns it to the pool. Uncommitted changes are rolled back on return
+ * and the auto commit mode is reset to the one the connection was opened with.
+ *
+ * @author WZ
+ *
+ */
+public class PooledDataSource extends AbstractDataSource implements DisposableBean {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PooledDataSource.class);
+
+	public static final int DEFAULT_MIN_SIZE = 1;
+	public static final int DEFAULT_MAX_SIZE = 10;
+	public static final long DEFAULT_MAX_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+	public static final long DEFAULT_EVICTION_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+	public static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+	public static final int DEFAULT_VALIDATION_TIMEOUT_SECONDS = 5;
+
+	private final DataSource target;
+	private int minSize = DEFAULT_MIN_SIZE;
+	private int maxSize = DEFAULT_MAX_SIZE;
+	private long maxIdleMillis = DEFAULT_MAX_IDLE_MILLIS;
+	private long evictionIntervalMillis = DEFAULT_EVICTION_INTERVAL_MILLIS;
+	private long acquireTimeoutMillis = DEFAULT_ACQUIRE_TIMEOUT_MILLIS;
+	private int validationTimeoutSeconds = DEFAULT_VALIDATION_TIMEOUT_SECONDS;
+	private boolean validateOnBorrow = true;
+
+	private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<PooledConnection>();
+	private final AtomicInteger totalCount = new AtomicInteger();
+	private final AtomicLong acquisitionCount = new AtomicLong();
+	private final AtomicLong acquisitionNanos = new AtomicLong();
+	private final AtomicLong maxAcquisitionNanos = new AtomicLong();
+	private final AtomicLong acquisitionTimeoutCount = new AtomicLong();
+	private final AtomicLong validationFailureCount = new AtomicLong();
+	private final AtomicLong createdCount = new AtomicLong();
+	private final AtomicLong evictedCount = new AtomicLong();
+
+	private volatile Semaphore permits;
+	private volatile ScheduledExecutorService evictor;
+	private volatile boolean closed = false;
+
+	/**
+	 *
+	 * @param target The data source opening the physical connections
+	 */
+	public PooledDataSource(DataSource target) {
+		Preconditions.checkNotNull(target, "target must be provided");
+		this.target = target;
+	}
+
+	/**
+	 *
+	 * @param target The data source opening the physical connections
+	 * @param minSize The number of connections kept open when idle
+	 * @param maxSize The maximum number of connections open at the same time
+	 */
+	public PooledDataSource(DataSource target, int minSize, int maxSize) {
+		this(target);
+		setMaxSize(maxSize);
+		setMinSize(minSize);
+	}
+
+	/**
+	 *
+	 * @param driverClassName The JDBC driver class name
+	 * @param url The connection url
+	 * @param minSize The number of connections kept open when idle
+	 * @param maxSize The maximum number of connections open at the same time
+	 */
+	public PooledDataSource(String driverClassName, String url, int minSize, int maxSize) {
+		this(driverManagerDataSource(driverClassName, url), minSize, maxSize);
+	}
+
+	/**
+	 * Borrow a connection from the pool, opening a new one if none is idle and the pool is not full
+	 * @throws SQLException if the data source is closed, no connection is available in time or one cannot be opened
+	 */
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (closed) {
+			throw new SQLException("data source is closed");
+		}
+
+		final long start = System.nanoTime();
+		final Semaphore semaphore = permits();
+		try {
+			if (!semaphore.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				acquisitionTimeoutCount.incrementAndGet();
+				throw new SQLException(String.format("Timed out after %sms waiting for a connection, pool size %s", acquireTimeoutMillis, maxSize));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection", e);
+		}
+
+		try {
+			PooledConnection pooled;
+			while ((pooled = idle.pollFirst()) != null) {
+				if (!validateOnBorrow || isValid(pooled.connection)) break;
+				validationFailureCount.incrementAndGet();
+				destroy(pooled);
+			}
+			if (pooled == null) {
+				pooled = open();
+			}
+			recordAcquisition(System.nanoTime() - start);
+			return pooled.borrow();
+		} catch (SQLException | RuntimeException e) {
+			semaphore.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Open a connection of the target with other credentials, it is not pooled
+	 */
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return target.getConnection(username, password);
+	}
+
+	/**
+	 * Open the minimum number of connections up front and start the idle eviction
+	 *
+	 * @throws SQLException if a connection cannot be opened
+	 */
+	public void init() throws SQLException {
+		permits();
+		while (totalCount.get() < minSize) {
+			idle.offerFirst(open());
+		}
+	}
+
+	/**
+	 * Close all idle connections and stop the eviction. Connections still borrowed are closed when returned.
+	 */
+	public void close() {
+		closed = true;
+		if (evictor != null) {
+			evictor.shutdownNow();
+		}
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			destroy(pooled);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		close();
+	}
+
+	public DataSource getTarget() {
+		return target;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public void setMinSize(int minSize) {
+		Preconditions.checkArgument(minSize >= 0 && minSize <= maxSize, "minSize must be between 0 and maxSize");
+		this.minSize = minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		Preconditions.checkArgument(maxSize > 0, "maxSize must be positive");
+		Preconditions.checkState(permits == null, "maxSize cannot be changed once the pool is in use");
+		this.maxSize = maxSize;
+		if (minSize > maxSize) {
+			this.minSize = maxSize;
+		}
+	}
+
+	public long getMaxIdleMillis() {
+		return maxIdleMillis;
+	}
+
+	public void setMaxIdleMillis(long maxIdleMillis) {
+		Preconditions.checkArgument(maxIdleMillis > 0, "maxIdleMillis must be positive");
+		this.maxIdleMillis = maxIdleMillis;
+	}
+
+	public long getEvictionIntervalMillis() {
+		return evictionIntervalMillis;
+	}
+
+	public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+		Preconditions.checkArgument(evictionIntervalMillis > 0, "evictionIntervalMillis must be positive");
+		Preconditions.checkState(evictor == null, "evictionIntervalMillis cannot be changed once the pool is in use");
+		this.evictionIntervalMillis = evictionIntervalMillis;
+	}
+
+	public long getAcquireTimeoutMillis() {
+		return acquireTimeoutMillis;
+	}
+
+	public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+		Preconditions.checkArgument(acquireTimeoutMillis >= 0, "acquireTimeoutMillis must not be negative");
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+	}
+
+	public int getValidationTimeoutSeconds() {
+		return validationTimeoutSeconds;
+	}
+
+	public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+		Preconditions.checkArgument(validationTimeoutSeconds >= 0, "validationTimeoutSeconds must not be negative");
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+	}
+
+	public boolean isValidateOnBorrow() {
+		return validateOnBorrow;
+	}
+
+	public void setValidateOnBorrow(boolean validateOnBorrow) {
+		this.validateOnBorrow = validateOnBorrow;
+	}
+
+	/**
+	 * @return the number of open physical connections, idle or borrowed
+	 */
+	public int getTotalCount() {
+		return totalCount.get();
+	}
+
+	/**
+	 * @return the number of idle connections
+	 */
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * @return the number of borrowed connections
+	 */
+	public int getActiveCount() {
+		return Math.max(0, totalCount.get() - idle.size());
+	}
+
+	/**
+	 * @return the number of successful acquisitions
+	 */
+	public long getAcquisitionCount() {
+		return acquisitionCount.get();
+	}
+
+	/**
+	 * @return the total time spent acquiring connections, in nanoseconds
+	 */
+	public long getAcquisitionTimeNanos() {
+		return acquisitionNanos.get();
+	}
+
+	/**
+	 * @return the longest time spent acquiring a connection, in nanoseconds
+	 */
+	public long getMaxAcquisitionTimeNanos() {
+		return maxAcquisitionNanos.get();
+	}
+
+	/**
+	 * @return the mean time spent acquiring a connection, in milliseconds
+	 */
+	public double getMeanAcquisitionTimeMillis() {
+		long count = acquisitionCount.get();
+		return count == 0 ? 0 : (acquisitionNanos.get() / (double) count) / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	public long getAcquisitionTimeoutCount() {
+		return acquisitionTimeoutCount.get();
+	}
+
+	public long getValidationFailureCount() {
+		return validationFailureCount.get();
+	}
+
+	public long getCreatedCount() {
+		return createdCount.get();
+	}
+
+	public long getEvictedCount() {
+		return evictedCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "PooledDataSource [target=" + target + ", total=" + getTotalCount()
+				+ ", idle=" + getIdleCount() + ", acquisitions=" + getAcquisitionCount()
+				+ ", meanAcquisitionMs=" + getMeanAcquisitionTimeMillis() + "]";
+	}
+
+	private static DataSource driverManagerDataSource(String driverClassName, String url) {
+		Preconditions.checkArgument(driverClassName != null && !driverClassName.isEmpty(), "driverClassName must be provided");
+		Preconditions.checkArgument(url != null && !url.isEmpty(), "url must be provided");
+		final DriverManagerDataSource dataSource = new DriverManagerDataSource(url);
+		dataSource.setDriverClassName(driverClassName);
+		return dataSource;
+	}
+
+	private Semaphore permits() {
+		Semaphore semaphore = permits;
+		if (semaphore == null) {
+			synchronized (this) {
+				if (permits == null) {
+					permits = new Semaphore(maxSize, true);
+					startEvictor();
+				}
+				semaphore = permits;
+			}
+		}
+		return semaphore;
+	}
+
+	private void startEvictor() {
+		evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "rooster-pool-evictor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		evictor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					evictIdle();
+				} catch (RuntimeException e) {
+					LOG.warn("Error in evicting idle connections", e);
+				}
+			}
+		}, evictionIntervalMillis, evictionIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Close connections idle longer than maxIdleMillis, keeping at least minSize open.
+	 * The deque is used LIFO, so the longest idle connections are at the tail.
+	 */
+	private void evictIdle() {
+		final long now = System.currentTimeMillis();
+		final Iterator<PooledConnection> iter = idle.descendingIterator();
+		while (iter.hasNext() && totalCount.get() > minSize) {
+			PooledConnection pooled = iter.next();
+			if (now - pooled.lastReturned < maxIdleMillis) break;
+			if (idle.removeLastOccurrence(pooled)) {
+				evictedCount.incrementAndGet();
+				destroy(pooled);
+			}
+		}
+	}
+
+	private PooledConnection open() throws SQLException {
+		Connection connection = target.getConnection();
+		totalCount.incrementAndGet();
+		createdCount.incrementAndGet();
+		try {
+			return new PooledConnection(connection, connection.getAutoCommit());
+		} catch (SQLException e) {
+			totalCount.decrementAndGet();
+			connection.close();
+			throw e;
+		}
+	}
+
+	private void destroy(PooledConnection pooled) {
+		totalCount.decrementAndGet();
+		try {
+			pooled.connection.close();
+		} catch (SQLException e) {
+			LOG.warn("Error in closing connection", e);
+		}
+	}
+
+	private boolean isValid(Connection connection) {
+		try {
+			return !connection.isClosed() && connection.isValid(validationTimeoutSeconds);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void release(PooledConnection pooled) {
+		try {
+			if (closed || !reset(pooled)) {
+				destroy(pooled);
+			} else {
+				pooled.lastReturned = System.currentTimeMillis();
+				idle.offerFirst(pooled);
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	private boolean reset(PooledConnection pooled) {
+		final Connection connection = pooled.connection;
+		try {
+			if (connection.isClosed()) return false;
+			if (!connection.getAutoCommit()) {
+				connection.rollback();
+			}
+			if (connection.getAutoCommit() != pooled.autoCommit) {
+				connection.setAutoCommit(pooled.autoCommit);
+			}
+			return true;
+		} catch (SQLException e) {
+			LOG.warn("Error in resetting connection, discarding it", e);
+			return false;
+		}
+	}
+
+	private void recordAcquisition(long nanos) {
+		acquisitionCount.incrementAndGet();
+		acquisitionNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = maxAcquisitionNanos.get())) {
+			if (maxAcquisitionNanos.compareAndSet(max, nanos)) break;
+		}
+	}
+
+	/**
+	 * A physical connection owned by the pool
+	 */
+	private final class PooledConnection {
+
+		private final Connection connection;
+		private final boolean autoCommit;
+		private volatile long lastReturned = System.currentTimeMillis();
+
+		private PooledConnection(Connection connection, boolean autoCommit) {
+			this.connection = connection;
+			this.autoCommit = autoCommit;
+		}
+
+		private Connection borrow() {
+			return (Connection) Proxy.newProxyInstance(
+					Connection.class.getClassLoader(),
+					new Class<?>[] {Connection.class},
+					new BorrowedConnectionHandler(this));
+		}
+	}
+
+	/**
+	 * Hands a pooled connection to the caller until it is closed, then returns it to the pool
+	 */
+	private final class BorrowedConnectionHandler implements InvocationHandler {
+
+		private final PooledConnection pooled;
+		private boolean returned = false;
+
+		private BorrowedConnectionHandler(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			final String name = method.getName();
+			if ("close".equals(name)) {
+				synchronized (this) {
+					if (!returned) {
+						returned = true;
+						release(pooled);
+					}
+				}
+				return null;
+			} else if ("isClosed".equals(name)) {
+				synchronized (this) {
+					if (returned) return true;
+				}
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("toString".equals(name)) {
+				return "Pooled[" + pooled.connection + "]";
+			}
+			synchronized (this) {
+				if (returned) throw new SQLException("Connection has been returned to the pool");
+			}
+			try {
+				return method.invoke(pooled.connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+	}
+}
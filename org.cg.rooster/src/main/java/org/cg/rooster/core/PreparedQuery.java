@@ -0,0 +1,260 @@
+package org.cg.rooster.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+
+/**
+ * A {@link Query} compiled once into its SQL and the layout of its parameter slots,
+ * to run the same condition shape many times with different values.
+ * Create it with {@code DataRepository.prepare(Query)}, then bind values and run it with {@code DataRepository.find(Parameters)}:
+ *
+ * <pre>
+ * PreparedQuery byUser = repository.prepare(QueryBuilder.newBuilder()
+ *     .conditions(Arrays.asList(
+ *         new Condition("uid", EQUAL, PreparedQuery.param("user")),
+ *         new Condition("event_time", GREATER_OR_EQUAL, PreparedQuery.param("from"))))
+ *     .build());
+ * repository.find(byUser.bind().set("user", "u1").set("from", 0L));
+ * </pre>
+ *
+ * A slot is named after the {@link #param(String)} in its condition, or after the column of the condition when the condition has a value,
+ * which is then the default value of the slot. Setting a name sets every slot with that name.
+ * Each value of an IN list or a BETWEEN range has its own slot, the values of an array operator such as = ANY share one,
+ * so a list of any length can be bound to it.
+ * Positions start at 1, in the order of the placeholders in the SQL.
+ *
+ * @author WZ
+ *
+ */
+public final class PreparedQuery {
+
+	private final Query query;
+	private final TableDefinition table;
+	private final String sql;
+	private final String[] names;
+	private final Object[] defaults;
+	private final boolean[] arraySlots;
+	private final Map<String, int[]> slots;
+
+	private PreparedQuery(Query query, TableDefinition table, String sql, String[] names, Object[] defaults, boolean[] arraySlots) {
+		this.query = query;
+		this.table = table;
+		this.sql = sql;
+		this.names = names;
+		this.defaults = defaults;
+		this.arraySlots = arraySlots;
+
+		final Map<String, List<Integer>> positions = new HashMap<String, List<Integer>>();
+		for (int i = 0; i < names.length; i++) {
+			List<Integer> indexes = positions.get(names[i]);
+			if (indexes == null) {
+				indexes = new ArrayList<Integer>(1);
+				positions.put(names[i], indexes);
+			}
+			indexes.add(i);
+		}
+		final Map<String, int[]> slots = new HashMap<String, int[]>();
+		for (Map.Entry<String, List<Integer>> e : positions.entrySet()) {
+			final int[] indexes = new int[e.getValue().size()];
+			for (int i = 0; i < indexes.length; i++) indexes[i] = e.getValue().get(i);
+			slots.put(e.getKey(), indexes);
+		}
+		this.slots = slots;
+	}
+
+	/**
+	 * Compile a query whose SQL has been generated, laying out a slot per parameter of its conditions
+	 *
+	 * @param query the query
+	 * @param table the table the SQL reads
+	 * @param sql the SQL of the query
+	 * @return the prepared query
+	 */
+	public static PreparedQuery compile (Query query, TableDefinition table, String sql) {
+		Preconditions.checkNotNull(query, "query must be provided");
+		Preconditions.checkNotNull(table, "table must be provided");
+		Preconditions.checkArgument(!Strings.isNullOrEmpty(sql), "sql must be provided");
+
+		final List<String> names = new ArrayList<String>();
+		final List<Object> defaults = new ArrayList<Object>();
+		final List<Boolean> arrays = new ArrayList<Boolean>();
+		if (query.getConditions() != null) {
+			//the same walk as the parameters of a query, so the slots follow the placeholders
+			Condition.visitParams(query.getConditions(), new Condition.ParamVisitor() {
+				@Override
+				public void visit(String column, Object value, boolean array) {
+					names.add(value instanceof Parameter ? ((Parameter) value).getName() : column);
+					defaults.add(value);
+					arrays.add(array);
+				}
+			});
+		}
+		final boolean[] arraySlots = new boolean[arrays.size()];
+		for (int i = 0; i < arraySlots.length; i++) arraySlots[i] = arrays.get(i);
+		return new PreparedQuery(query, table, sql, names.toArray(new String[names.size()]), defaults.toArray(), arraySlots);
+	}
+
+	/**
+	 * A named parameter without a default value, to use as the value of a condition
+	 *
+	 * @param name the name of the parameter
+	 * @return the parameter
+	 */
+	public static Parameter param (String name) {
+		return new Parameter(name);
+	}
+
+	/**
+	 * Start binding values for a run of the query, the slots are set to their default values
+	 *
+	 * @return the parameters
+	 */
+	public Parameters bind () {
+		return new Parameters(defaults.length == 0 ? defaults : defaults.clone());
+	}
+
+	public Query getQuery() {
+		return query;
+	}
+
+	public TableDefinition getTable() {
+		return table;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @return the number of parameter slots
+	 */
+	public int getParameterCount() {
+		return names.length;
+	}
+
+	/**
+	 * @return the names of the slots, in the order of the placeholders
+	 */
+	public List<String> getParameterNames() {
+		return Collections.unmodifiableList(Arrays.asList(names));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "PreparedQuery [sql=" + sql + ", parameters=" + Arrays.toString(names) + "]";
+	}
+
+	/**
+	 * A named parameter of a condition, bound when the query runs
+	 */
+	public static final class Parameter {
+
+		private final String name;
+
+		private Parameter(String name) {
+			Preconditions.checkArgument(!Strings.isNullOrEmpty(name), "name must be provided");
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public String toString() {
+			return ":" + name;
+		}
+	}
+
+	/**
+	 * The values bound for one run of a {@link PreparedQuery}, not thread safe
+	 */
+	public final class Parameters {
+
+		private final Object[] values;
+
+		private Parameters(Object[] values) {
+			this.values = values;
+		}
+
+		/**
+		 * Set the value of a slot
+		 *
+		 * @param position the position of the slot, starting at 1
+		 * @param value the value
+		 * @return the parameters
+		 */
+		public Parameters set (int position, Object value) {
+			Preconditions.checkElementIndex(position - 1, values.length, "position");
+			values[position - 1] = valueOf(position - 1, value);
+			return this;
+		}
+
+		/**
+		 * Set the value of every slot with a name
+		 *
+		 * @param name the name of the slots
+		 * @param value the value
+		 * @return the parameters
+		 */
+		public Parameters set (String name, Object value) {
+			final int[] indexes = slots.get(name);
+			Preconditions.checkArgument(indexes != null, "no parameter named %s", name);
+			for (int index : indexes) {
+				values[index] = valueOf(index, value);
+			}
+			return this;
+		}
+
+		/**
+		 * A collection or an array set to the slot of an array operator is bound as an {@link ArrayValue}
+		 */
+		private Object valueOf (int index, Object value) {
+			if (arraySlots[index] && (value instanceof Collection || value instanceof Object[])) {
+				return ArrayValue.of(value);
+			}
+			return value;
+		}
+
+		/**
+		 * @return the prepared query these parameters are bound to
+		 */
+		public PreparedQuery getPreparedQuery() {
+			return PreparedQuery.this;
+		}
+
+		/**
+		 * Get the values to run the query with, the array is not copied
+		 *
+		 * @return the values, in the order of the placeholders
+		 * @throws IllegalStateException if a named parameter has not been set
+		 */
+		public Object[] getValues() {
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] instanceof Parameter) {
+					throw new IllegalStateException(String.format("parameter %s is not bound", names[i]));
+				}
+			}
+			return values;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "Parameters " + Arrays.toString(values);
+		}
+	}
+}
@@ -15,14 +15,34 @@ public class Query {
 	private final List<Condition> conditions;
 	private final Sort sort;
 	private final int limit;
+	private final List<Aggregate> aggregates;
+	private final List<String> groupBy;
+	private final List<Condition> having;
+	private final List<Hint> hints;
 	public final static int DEFAULT_QUERY_LIMIT = 5000;
+	/** no row limit, a limit of 0 selects no rows */
+	public final static int NO_LIMIT = -1;
 	
 	public Query(List<String> columnSelection, List<Condition> conditions, Sort sort, Integer limit) {
+		this(columnSelection, conditions, sort, limit, null, null, null);
+	}
+	
+	public Query(List<String> columnSelection, List<Condition> conditions, Sort sort, Integer limit, 
+			List<Aggregate> aggregates, List<String> groupBy, List<Condition> having) {
+		this(columnSelection, conditions, sort, limit, aggregates, groupBy, having, null);
+	}
+	
+	public Query(List<String> columnSelection, List<Condition> conditions, Sort sort, Integer limit, 
+			List<Aggregate> aggregates, List<String> groupBy, List<Condition> having, List<Hint> hints) {
 		super();
 		this.columnSelection = columnSelection;
 		this.conditions = conditions;
 		this.sort = sort;
 		this.limit = limit;
+		this.aggregates = aggregates;
+		this.groupBy = groupBy;
+		this.having = having;
+		this.hints = hints;
 	}
 	
 	/**
@@ -52,6 +72,41 @@ public class Query {
 	public Integer getLimit() {
 		return limit;
 	}
+	
+	/**
+	 * @return the aggregates
+	 */
+	public List<Aggregate> getAggregates() {
+		return aggregates;
+	}
+	
+	/**
+	 * @return the group by columns
+	 */
+	public List<String> getGroupBy() {
+		return groupBy;
+	}
+	
+	/**
+	 * @return the conditions on the groups
+	 */
+	public List<Condition> getHaving() {
+		return having;
+	}
+	
+	/**
+	 * @return the optimizer hints, null if none were given
+	 */
+	public List<Hint> getHints() {
+		return hints;
+	}
+	
+	/**
+	 * @return true if the query has aggregates
+	 */
+	public boolean isAggregate() {
+		return aggregates != null && !aggregates.isEmpty();
+	}
 
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
@@ -59,7 +114,9 @@ public class Query {
 	@Override
 	public String toString() {
 		return "Query [columnSelection=" + columnSelection + ", conditions="
-				+ conditions + ", sort=" + sort + ", limit=" + limit + "]";
+				+ conditions + ", sort=" + sort + ", limit=" + limit 
+				+ (isAggregate() ? ", aggregates=" + aggregates + ", groupBy=" + groupBy + ", having=" + having : "") 
+				+ (hints != null ? ", hints=" + hints : "") + "]";
 	}
 	
 }
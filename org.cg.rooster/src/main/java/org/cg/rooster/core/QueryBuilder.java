@@ -1,5 +1,8 @@
 package org.cg.rooster.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.springframework.data.domain.Sort;
@@ -17,6 +20,10 @@ public class QueryBuilder {
 	private List<Condition> conditions = null;
 	private Sort sort = null;
 	private int limit = Query.DEFAULT_QUERY_LIMIT;
+	private List<Aggregate> aggregates = null;
+	private List<String> groupBy = null;
+	private List<Condition> having = null;
+	private List<Hint> hints = null;
 	
 	/**
 	 * create a QueryBuilder instance
@@ -26,15 +33,27 @@ public class QueryBuilder {
 	}
 	
 	/**
+	 * Select only these columns, map the rows with a mapper that reads only them, 
+	 * e.g. with {@code DataRepository.find(Query, RowMapper)}
 	 * 
 	 * @param columnSelection the column to select
 	 * @return the builder
 	 */
-//  TODO support columnSelection
-//	public QueryBuilder columnSelection(List<String> columnSelection) {
-//		this.columnSelection = columnSelection;
-//		return this;
-//	}
+	public QueryBuilder columnSelection(List<String> columnSelection) {
+		Preconditions.checkArgument(columnSelection != null && !columnSelection.isEmpty(), "columnSelection must be provided");
+		this.columnSelection = columnSelection;
+		return this;
+	}
+	
+	/**
+	 * 
+	 * @param columns the column to select
+	 * @return the builder
+	 */
+	public QueryBuilder columnSelection(String... columns) {
+		Preconditions.checkArgument(columns != null, "columns must be provided");
+		return columnSelection(Arrays.asList(columns));
+	}
 		
 	/**
 	 * 
@@ -67,12 +86,78 @@ public class QueryBuilder {
 		return this;
 	}
 	
+	/**
+	 * Remove the row limit, only supported when streaming the results with a {@link Cursor}
+	 * 
+	 * @return the builder
+	 */
+	public QueryBuilder noLimit() {
+		this.limit = Query.NO_LIMIT;
+		return this;
+	}
+	
+	/**
+	 * Add aggregates, the query then returns one row per group of the group by columns 
+	 * 
+	 * @param aggregates the aggregates
+	 * @return the builder
+	 */
+	public QueryBuilder aggregate(Aggregate... aggregates) {
+		Preconditions.checkArgument(aggregates != null && aggregates.length > 0, "aggregates must be provided");
+		if (this.aggregates == null) {
+			this.aggregates = new ArrayList<Aggregate>();
+		}
+		this.aggregates.addAll(Arrays.asList(aggregates));
+		return this;
+	}
+	
 	/**
 	 * 
+	 * @param columns the columns to group by
+	 * @return the builder
+	 */
+	public QueryBuilder groupBy(String... columns) {
+		Preconditions.checkArgument(columns != null && columns.length > 0, "columns must be provided");
+		this.groupBy = Arrays.asList(columns);
+		return this;
+	}
+	
+	/**
+	 * 
+	 * @param having the conditions on the groups, a condition column may be an aggregate label
+	 * @return the builder
+	 */
+	public QueryBuilder having(List<Condition> having) {
+		this.having = having;
+		return this;
+	}
+	
+	/**
+	 * Add optimizer hints, they replace the default hints of the repository for the statements of the query
+	 * 
+	 * @param hints the hints, e.g. {@link Hint#NO_CACHE}
+	 * @return the builder
+	 */
+	public QueryBuilder hints(Hint... hints) {
+		Preconditions.checkArgument(hints != null && hints.length > 0, "hints must be provided");
+		if (this.hints == null) {
+			this.hints = new ArrayList<Hint>();
+		}
+		this.hints.addAll(Arrays.asList(hints));
+		return this;
+	}
+	
+	/**
+	 * The aggregates and hints gathered so far are copied, so the builder can go on without changing the query
 	 * @return the query
 	 */
 	public Query build() {
-		return new Query(columnSelection, conditions, sort, limit);
+		Preconditions.checkState(aggregates != null || (groupBy == null && having == null), "groupBy and having require aggregates");
+		return new Query(columnSelection, conditions, sort, limit, copyOf(aggregates), groupBy, having, copyOf(hints));
+	}
+	
+	private static <E> List<E> copyOf(List<E> list) {
+		return list == null ? null : Collections.unmodifiableList(new ArrayList<E>(list));
 	}
 
 }
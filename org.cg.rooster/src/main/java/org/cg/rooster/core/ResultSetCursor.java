@@ -0,0 +1,253 @@
+package org.cg.rooster.core;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+/**
+ * A {@link Cursor} that maps rows from an open {@link ResultSet} while the caller consumes them.
+ *
+ * The statement is executed on the calling thread, so a transaction bound to it is honored.
+ * Rows are then read and mapped on a background thread one fetch window at a time (the {@link JdbcTemplate} fetch size),
+ * so the next window is fetched while the caller consumes the current one. At most {@code prefetchWindows}
+ * windows are buffered ahead of the caller. Within an active transaction the connection is not handed to another thread,
+ * the windows are read on the calling thread as it consumes them. All resources are released on the thread that closes the cursor.
+ *
+ * @author WZ
+ *
+ * @param <T> The entity type
+ */
+public class ResultSetCursor<T> implements Cursor<T> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ResultSetCursor.class);
+
+	public final static int DEFAULT_WINDOW_SIZE = 1000;
+	public final static int DEFAULT_PREFETCH_WINDOWS = 1;
+
+	private static final Object END = new Object();
+	private static final long OFFER_WAIT_MILLIS = 100;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final DataSource dataSource;
+	private final String sql;
+	private final RowMapper<T> rowMapper;
+	private final int windowSize;
+	private final boolean background;
+	private final BlockingQueue<Object> windows;
+
+	private Connection connection;
+	private PreparedStatement statement;
+	private ResultSet resultSet;
+	private Future<?> producer;
+	private int rowNum = 0;
+	private Iterator<T> current = Collections.<T>emptyList().iterator();
+	private boolean exhausted = false;
+	private volatile boolean closed = false;
+
+	/**
+	 * Execute the query and start prefetching rows
+	 *
+	 * @param jdbcTemplate the template providing the data source, fetch size and exception translation
+	 * @param sql the SQL string
+	 * @param args the parameters of the statement
+	 * @param rowMapper the row mapper
+	 * @param executor the executor reading rows in the background, not used within an active transaction
+	 * @param prefetchWindows the number of fetch windows buffered ahead of the caller
+	 * @throws DataAccessException if the query cannot be executed
+	 * @throws RejectedExecutionException if the executor does not take the reader
+	 */
+	public ResultSetCursor(JdbcTemplate jdbcTemplate, String sql, Object[] args, RowMapper<T> rowMapper,
+			ExecutorService executor, int prefetchWindows) {
+		Preconditions.checkNotNull(jdbcTemplate, "jdbcTemplate must be provided");
+		Preconditions.checkNotNull(sql, "sql must be provided");
+		Preconditions.checkNotNull(rowMapper, "rowMapper must be provided");
+		Preconditions.checkNotNull(executor, "executor must be provided");
+		Preconditions.checkArgument(prefetchWindows > 0, "prefetchWindows must be positive");
+
+		this.jdbcTemplate = jdbcTemplate;
+		this.dataSource = jdbcTemplate.getDataSource();
+		this.sql = sql;
+		this.rowMapper = rowMapper;
+		this.windowSize = jdbcTemplate.getFetchSize() > 0 ? jdbcTemplate.getFetchSize() : DEFAULT_WINDOW_SIZE;
+		this.background = !TransactionSynchronizationManager.isActualTransactionActive();
+		this.windows = background ? new ArrayBlockingQueue<Object>(prefetchWindows) : null;
+
+		try {
+			connection = DataSourceUtils.getConnection(dataSource);
+			statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			statement.setFetchSize(windowSize);
+			if (jdbcTemplate.getQueryTimeout() > 0) {
+				statement.setQueryTimeout(jdbcTemplate.getQueryTimeout());
+			}
+			new ArgumentPreparedStatementSetter(args).setValues(statement);
+			resultSet = statement.executeQuery();
+		} catch (SQLException e) {
+			release();
+			throw jdbcTemplate.getExceptionTranslator().translate("ResultSetCursor", sql, e);
+		} catch (RuntimeException e) {
+			release();
+			throw e;
+		}
+
+		if (!background) return;
+		try {
+			producer = executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					produce();
+				}
+			});
+		} catch (RuntimeException e) {
+			release();
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (current.hasNext()) return true;
+		if (exhausted) return false;
+		while (!current.hasNext()) {
+			Object window = take();
+			if (window == END) {
+				close();
+				return false;
+			} else if (window instanceof Throwable) {
+				close();
+				throw translate((Throwable) window);
+			}
+			@SuppressWarnings("unchecked")
+			List<T> rows = (List<T>) window;
+			current = rows.iterator();
+		}
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		return current.next();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("remove is not supported by a cursor");
+	}
+
+	@Override
+	public void close() {
+		if (closed) return;
+		closed = true;
+		exhausted = true;
+		current = Collections.<T>emptyList().iterator();
+		//unblock the producer and wait for it to leave the result set before releasing it
+		if (windows != null) windows.clear();
+		if (producer != null) {
+			try {
+				producer.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				LOG.warn("Error in prefetching rows", e.getCause());
+			}
+		}
+		if (windows != null) windows.clear();
+		release();
+	}
+
+	private void produce() {
+		try {
+			Object window;
+			do {
+				window = readWindow();
+				if (!put(window)) return;
+			} while (window != END);
+		} catch (Throwable t) {
+			put(t);
+		}
+	}
+
+	/**
+	 * @return the next window of mapped rows, or END if there are no more rows
+	 */
+	private Object readWindow() throws SQLException {
+		final List<T> window = new ArrayList<T>(windowSize);
+		while (window.size() < windowSize && !closed && resultSet.next()) {
+			window.add(rowMapper.mapRow(resultSet, rowNum++));
+		}
+		return window.isEmpty() ? END : window;
+	}
+
+	private boolean put(Object window) {
+		try {
+			while (!closed) {
+				if (windows.offer(window, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+
+	private Object take() {
+		if (!background) {
+			try {
+				return readWindow();
+			} catch (Throwable t) {
+				return t;
+			}
+		}
+		try {
+			return windows.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new IllegalStateException("Interrupted while waiting for rows", e);
+		}
+	}
+
+	private RuntimeException translate(Throwable t) {
+		if (t instanceof SQLException) {
+			return jdbcTemplate.getExceptionTranslator().translate("ResultSetCursor", sql, (SQLException) t);
+		}
+		Throwables.propagateIfPossible(t);
+		return new IllegalStateException("Error in reading rows", t);
+	}
+
+	private void release() {
+		JdbcUtils.closeResultSet(resultSet);
+		JdbcUtils.closeStatement(statement);
+		DataSourceUtils.releaseConnection(connection, dataSource);
+		resultSet = null;
+		statement = null;
+		connection = null;
+	}
+}
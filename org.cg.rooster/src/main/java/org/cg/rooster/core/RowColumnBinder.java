@@ -0,0 +1,34 @@
+package org.cg.rooster.core;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Optionally implemented by a {@link RowColumnMapper} to bind the column values of an entity directly to the statement
+ * that persists it, instead of mapping them with {@link RowColumnMapper#mapColumns(Object)}.
+ * Only used for tables without dynamic columns.
+ * Saves bound this way are recorded with 0 bound bytes, their values are never mapped to be measured.
+ *
+ * @author WZ
+ *
+ * @param <T> The entity type
+ */
+public interface RowColumnBinder<T> {
+
+	/**
+	 * @return the columns bound by {@link #bindColumns(PreparedStatement, Object, int)} in order
+	 */
+	public List<String> getBindColumns ();
+
+	/**
+	 * Bind each fields of data in the T in the order of {@link #getBindColumns()}
+	 *
+	 * @param ps the statement
+	 * @param t the entity to be bound
+	 * @param startIndex the index of the first parameter to bind
+	 * @return the index of the next parameter
+	 * @throws SQLException if a parameter cannot be set
+	 */
+	public int bindColumns (PreparedStatement ps, T t, int startIndex) throws SQLException;
+}
@@ -1,17 +1,29 @@
 package org.cg.rooster.core;
 
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.LinkedHashMap;
 import org.springframework.jdbc.core.RowMapper;
 
 /**
  * A abstract class that implements {@link RowMapper} used to map rows
  * 
+ * Subclasses can read columns by name through the accessors such as {@link #getString(ResultSet, String)}, 
+ * which resolve the column positions once per result set instead of looking the name up in every row.
+ * A column the query does not select reads as null, or as 0 or false for a primitive type, 
+ * so the same mapper maps the rows of a narrow column selection.
+ * 
  * @author WZ
  *
  * @param <T> The entity type
  */
 public abstract class RowColumnMapper<T> implements RowMapper<T> {
 	
+	//a result set is read by a single thread, a mapper is shared by all of them
+	private final ThreadLocal<ColumnIndex> columnIndex = new ThreadLocal<ColumnIndex>();
+	
 	/**
 	 * 
 	 * Subclass can implement this method to map each fields of data in the T in order to persist the entity. 
@@ -48,5 +60,97 @@ public abstract class RowColumnMapper<T> implements RowMapper<T> {
 	public LinkedHashMap<String, String> mapDynamicColumnsType() {
 		return new LinkedHashMap<String, String>();
 	}
+	
+
+	/**
+	 * Get the column positions of the result set, resolved on its first row
+	 * 
+	 * @param rs the result set being mapped
+	 * @return the column index of the result set
+	 * @throws SQLException if the metadata cannot be read
+	 */
+	protected final ColumnIndex columnIndex(ResultSet rs) throws SQLException {
+		ColumnIndex index = columnIndex.get();
+		if (index == null || !index.isFor(rs)) {
+			index = ColumnIndex.of(rs);
+			columnIndex.set(index);
+		}
+		return index;
+	}
+	
+	/**
+	 * @param rs the result set being mapped
+	 * @param column the column name
+	 * @return true if the result set has the column, e.g. when a query selects only some of the columns
+	 * @throws SQLException if the metadata cannot be read
+	 */
+	protected final boolean hasColumn(ResultSet rs, String column) throws SQLException {
+		return columnIndex(rs).indexOf(column) != ColumnIndex.NOT_FOUND;
+	}
+	
+	protected final String getString(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? null : rs.getString(index);
+	}
+	
+	protected final int getInt(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? 0 : rs.getInt(index);
+	}
+	
+	protected final long getLong(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? 0 : rs.getLong(index);
+	}
+	
+	protected final short getShort(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? 0 : rs.getShort(index);
+	}
+	
+	protected final byte getByte(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? 0 : rs.getByte(index);
+	}
+	
+	protected final boolean getBoolean(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? false : rs.getBoolean(index);
+	}
+	
+	protected final float getFloat(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? 0 : rs.getFloat(index);
+	}
+	
+	protected final double getDouble(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? 0 : rs.getDouble(index);
+	}
+	
+	protected final BigDecimal getBigDecimal(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? null : rs.getBigDecimal(index);
+	}
+	
+	protected final byte[] getBytes(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? null : rs.getBytes(index);
+	}
+	
+	protected final Timestamp getTimestamp(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? null : rs.getTimestamp(index);
+	}
+	
+	protected final java.sql.Date getDate(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? null : rs.getDate(index);
+	}
+	
+	protected final Object getObject(ResultSet rs, String column) throws SQLException {
+		final int index = columnIndex(rs).indexOf(column);
+		return index == ColumnIndex.NOT_FOUND ? null : rs.getObject(index);
+	}
 
 }
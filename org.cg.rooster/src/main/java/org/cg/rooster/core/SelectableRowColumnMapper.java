@@ -1,29 +1,52 @@
 package org.cg.rooster.core;
 
-import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Map;
+import java.util.List;
 
 import org.springframework.jdbc.core.RowMapper;
 
 /**
- * A abstract class that implements {@link RowMapper} used to map rows
+ * A {@link RowMapper} that maps a fixed list of columns by their position instead of their name. 
+ * A repository selects exactly these columns, in this order, for the rows it maps with it.
+ * 
+ * Entities are bound to the statement that saves them in the same order, see {@link RowColumnBinder}.
+ * 
+ * Subclasses are usually generated from a {@link org.cg.rooster.mapping.MappedEntity} class.
  * 
  * @author WZ
  *
  * @param <T> The entity type
  */
-public abstract class SelectableRowColumnMapper<T> extends RowColumnMapper<T> {
+public abstract class SelectableRowColumnMapper<T> extends RowColumnMapper<T> implements RowColumnBinder<T> {
 	
 	/**
+	 * @return the columns read by {@link #mapRow(ResultSet, int)} and bound by {@link #bindColumns(PreparedStatement, Object, int)}, in order
+	 */
+	public abstract List<String> getColumnSelection();
+	
+	/**
+	 * Map a row whose columns are {@link #getColumnSelection()} in order
+	 * 
 	 * {@inheritDoc}
 	 */
 	@Override
-	public abstract T mapRow(ResultSet rs, int rowNum);
+	public abstract T mapRow(ResultSet rs, int rowNum) throws SQLException;
 	
-	//TODO
-	//TODO
-	//TODO
-	public abstract Map<String, Field> mapRows() throws SQLException;
+	/**
+	 * @return the column selection, entities are saved with the columns they are read from
+	 */
+	@Override
+	public List<String> getBindColumns() {
+		return getColumnSelection();
+	}
+	
+	/**
+	 * Bind the column values of the entity in the order of {@link #getColumnSelection()}
+	 * 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public abstract int bindColumns(PreparedStatement ps, T t, int startIndex) throws SQLException;
 }
@@ -6,7 +6,7 @@ import java.util.Map;
 import org.springframework.data.domain.Sort;
 
 /**
- * A interface for sql grammar
+ * A interface for sql grammar. Dialects without optimizer hints leave them out of the statements taking hints
  * @author WZ
  *
  */
@@ -27,6 +27,38 @@ public interface SqlGrammar {
 	 * @return the SQL string
 	 */
 	public String count (TableDefinition table);
+	
+	/**
+	 * generate SQL for counting the rows matching the conditions
+	 * 
+	 * @param table the {@link TableDefinition} class
+	 * @param conditions
+	 * @param dynamicColumnsType
+	 * @return the SQL string
+	 */
+	public String countByCondition (TableDefinition table, final List<Condition> conditions, 
+			final Map<String, String> dynamicColumnsType);
+	
+	/**
+	 * generate SQL for counting the rows matching the conditions, with optimizer hints
+	 * 
+	 * @param table the {@link TableDefinition} class
+	 * @param conditions
+	 * @param dynamicColumnsType
+	 * @param hints the optimizer hints, may be null
+	 * @return the SQL string
+	 */
+	public String countByCondition (TableDefinition table, final List<Condition> conditions, 
+			final Map<String, String> dynamicColumnsType, final List<Hint> hints);
+	
+	/**
+	 * generate SQL for estimating the number of rows from the table statistics, without scanning the table.
+	 * The statement returns the estimate of each column family in its first column, or no row if there are no statistics
+	 * 
+	 * @param table the {@link TableDefinition} class
+	 * @return the SQL string
+	 */
+	public String approximateCount (TableDefinition table);
 
 	/**
 	 * generate SQL for deleting row(s)
@@ -39,6 +71,36 @@ public interface SqlGrammar {
 
 	public String delete (TableDefinition table, int idSize, Object[] flatIds);
 	
+	/**
+	 * generate SQL for deleting row(s), with optimizer hints
+	 * 
+	 * @param table the {@link TableDefinition} class
+	 * @param idSize
+	 * @param flatIds
+	 * @param hints the optimizer hints, may be null
+	 * @return the SQL string
+	 */
+	public String delete (TableDefinition table, int idSize, Object[] flatIds, final List<Hint> hints);
+	
+	/**
+	 * generate SQL for deleting the rows matching the conditions, evaluated by the database without reading the rows
+	 * 
+	 * @param table the {@link TableDefinition} class
+	 * @param conditions the conditions, must not be empty
+	 * @return the SQL string
+	 */
+	public String deleteByCondition (TableDefinition table, final List<Condition> conditions);
+	
+	/**
+	 * generate SQL for deleting the rows matching the conditions, evaluated by the database without reading the rows, with optimizer hints
+	 * 
+	 * @param table the {@link TableDefinition} class
+	 * @param conditions the conditions, must not be empty
+	 * @param hints the optimizer hints, may be null
+	 * @return the SQL string
+	 */
+	public String deleteByCondition (TableDefinition table, final List<Condition> conditions, final List<Hint> hints);
+	
 	/**
 	 * generate SQL for selecting row(s) by id
 	 *  
@@ -55,6 +117,24 @@ public interface SqlGrammar {
 			final Map<String, String> dynamicColumnsType, 
 			final List<String> columnSelection);
 	
+	/**
+	 * generate SQL for selecting row(s) by id, with optimizer hints
+	 *  
+	 * @param table table the {@link TableDefinition} class
+	 * @param sort
+	 * @param limit
+	 * @param idSize
+	 * @param flatIds
+	 * @param dynamicColumnsType
+	 * @param columnSelection 
+	 * @param hints the optimizer hints, may be null
+	 * @return the SQL string
+	 */
+	public String selectById (TableDefinition table, Sort sort, long limit, int idSize, Object[] flatIds,
+			final Map<String, String> dynamicColumnsType, 
+			final List<String> columnSelection, 
+			final List<Hint> hints);
+	
 	/**
 	 * generate SQL for selecting row(s) with conditions
 	 *  
@@ -71,6 +151,99 @@ public interface SqlGrammar {
 			final Map<String, String> dynamicColumnsType, 
 			final List<String> columnSelection);
 	
+	/**
+	 * generate SQL for selecting row(s) with conditions, with optimizer hints
+	 *  
+	 * @param table the {@link TableDefinition} class
+	 * @param sort
+	 * @param limit
+	 * @param conditions
+	 * @param dynamicColumnsType
+	 * @param columnSelection
+	 * @param hints the optimizer hints, may be null
+	 * @return the SQL string
+	 */
+	public String selectByCondition (TableDefinition table, Sort sort, long limit, 
+			final List<Condition> conditions,  
+			final Map<String, String> dynamicColumnsType, 
+			final List<String> columnSelection, 
+			final List<Hint> hints);
+	
+	/**
+	 * generate SQL for selecting a page of rows in primary key order, 
+	 * continuing after the primary key of the last row of the previous page
+	 *  
+	 * @param table the {@link TableDefinition} class
+	 * @param sort the primary key sorting order
+	 * @param limit
+	 * @param afterKey whether to continue after a key, the key components are the last parameters
+	 * @param conditions
+	 * @param dynamicColumnsType
+	 * @param columnSelection
+	 * @return the SQL string
+	 */
+	public String selectByKeyset (TableDefinition table, Sort sort, long limit, boolean afterKey, 
+			final List<Condition> conditions,  
+			final Map<String, String> dynamicColumnsType, 
+			final List<String> columnSelection);
+	
+	/**
+	 * generate SQL for selecting a page of rows in primary key order, 
+	 * continuing after the primary key of the last row of the previous page, with optimizer hints
+	 *  
+	 * @param table the {@link TableDefinition} class
+	 * @param sort the primary key sorting order
+	 * @param limit
+	 * @param afterKey whether to continue after a key, the key components are the last parameters
+	 * @param conditions
+	 * @param dynamicColumnsType
+	 * @param columnSelection
+	 * @param hints the optimizer hints, may be null
+	 * @return the SQL string
+	 */
+	public String selectByKeyset (TableDefinition table, Sort sort, long limit, boolean afterKey, 
+			final List<Condition> conditions,  
+			final Map<String, String> dynamicColumnsType, 
+			final List<String> columnSelection, 
+			final List<Hint> hints);
+	
+	/**
+	 * generate SQL for aggregating rows, selecting the group by columns followed by the aggregates. 
+	 * Conditions of having may refer to an aggregate by its label
+	 *  
+	 * @param table the {@link TableDefinition} class
+	 * @param aggregates
+	 * @param groupBy
+	 * @param conditions
+	 * @param having
+	 * @param sort
+	 * @param limit
+	 * @param dynamicColumnsType
+	 * @return the SQL string
+	 */
+	public String selectByAggregate (TableDefinition table, final List<Aggregate> aggregates, final List<String> groupBy, 
+			final List<Condition> conditions, final List<Condition> having, Sort sort, long limit, 
+			final Map<String, String> dynamicColumnsType);
+	
+	/**
+	 * generate SQL for aggregating rows with optimizer hints, selecting the group by columns followed by the aggregates. 
+	 * Conditions of having may refer to an aggregate by its label
+	 *  
+	 * @param table the {@link TableDefinition} class
+	 * @param aggregates
+	 * @param groupBy
+	 * @param conditions
+	 * @param having
+	 * @param sort
+	 * @param limit
+	 * @param dynamicColumnsType
+	 * @param hints the optimizer hints, may be null
+	 * @return the SQL string
+	 */
+	public String selectByAggregate (TableDefinition table, final List<Aggregate> aggregates, final List<String> groupBy, 
+			final List<Condition> conditions, final List<Condition> having, Sort sort, long limit, 
+			final Map<String, String> dynamicColumnsType, final List<Hint> hints);
+	
 	/**
 	 * generate SQL for saving row(s) 
 	 * 
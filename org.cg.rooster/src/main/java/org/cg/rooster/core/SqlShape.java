@@ -0,0 +1,322 @@
+package org.cg.rooster.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.springframework.data.domain.Sort;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * The shape of a generated SQL statement, used as the key of a {@link SqlShapeCache}.
+ *
+ * A shape captures everything that changes the SQL text (table, id count, null mask of id components,
+ * column names, dynamic column signature, sort, limit, projection and hints) but none of the parameter values.
+ * Lookups go through a per-thread probe that is reset in place, so a cache hit does not allocate;
+ * only a miss takes a {@link #snapshot()} to store.
+ *
+ * @author WZ
+ *
+ */
+public final class SqlShape {
+
+	/**
+	 * The statement kind
+	 */
+	public enum Kind {
+		COUNT,
+		APPROXIMATE_COUNT,
+		DELETE,
+		SELECT_BY_ID,
+		SELECT_HEAD,
+		SELECT_TAIL,
+		KEYSET,
+		SAVE
+	}
+
+	private static final String[] EMPTY = new String[0];
+	private static final long[] NO_MASK = new long[0];
+
+	private static final ThreadLocal<SqlShape> PROBE = new ThreadLocal<SqlShape>() {
+		@Override
+		protected SqlShape initialValue() {
+			return new SqlShape();
+		}
+	};
+
+	private Kind kind;
+	private TableDefinition table;
+	private Sort sort;
+	private long limit;
+	private int idSize;
+	private long[] nullMask = NO_MASK;
+	private int nullMaskWords;
+	private String[] columns = EMPTY;
+	private int columnCount;
+	private String[] dynamicNames = EMPTY;
+	private String[] dynamicTypes = EMPTY;
+	private int dynamicCount;
+	private String[] selection = EMPTY;
+	private int selectionCount;
+	private String[] hints = EMPTY;
+	private int hintCount;
+
+	private SqlShape() {
+
+	}
+
+	/**
+	 * Get the reusable probe of the current thread, reset to the given kind and table
+	 *
+	 * @param kind the statement kind
+	 * @param table the {@link TableDefinition}
+	 * @return the probe
+	 */
+	public static SqlShape probe (Kind kind, TableDefinition table) {
+		Preconditions.checkNotNull(kind, "kind must be provided");
+		Preconditions.checkNotNull(table, "table must be provided");
+
+		SqlShape probe = PROBE.get();
+		probe.kind = kind;
+		probe.table = table;
+		probe.sort = null;
+		probe.limit = 0;
+		probe.idSize = 0;
+		probe.nullMaskWords = 0;
+		probe.columnCount = 0;
+		probe.dynamicCount = 0;
+		probe.selectionCount = 0;
+		probe.hintCount = 0;
+		return probe;
+	}
+
+	/**
+	 * @param sort the sorting order
+	 * @return this shape
+	 */
+	public SqlShape sort (Sort sort) {
+		this.sort = sort;
+		return this;
+	}
+
+	/**
+	 * @param limit the limit
+	 * @return this shape
+	 */
+	public SqlShape limit (long limit) {
+		this.limit = limit;
+		return this;
+	}
+
+	/**
+	 * Record the id count and which id components are null
+	 *
+	 * @param idSize the number of ids
+	 * @param flatIds the flat id components
+	 * @return this shape
+	 */
+	public SqlShape ids (int idSize, Object[] flatIds) {
+		this.idSize = idSize;
+		int length = (idSize > 0 && flatIds != null) ? flatIds.length : 0;
+		int words = (length + 63) >>> 6;
+		if (nullMask.length < words) {
+			nullMask = new long[words];
+		} else {
+			Arrays.fill(nullMask, 0, words, 0L);
+		}
+		for (int i = 0; i < length; i++) {
+			if (flatIds[i] == null) {
+				nullMask[i >>> 6] |= 1L << (i & 63);
+			}
+		}
+		this.nullMaskWords = words;
+		return this;
+	}
+
+	/**
+	 * @param names the ordered column names
+	 * @return this shape
+	 */
+	public SqlShape columns (Collection<String> names) {
+		if (names == null) {
+			columnCount = 0;
+			return this;
+		}
+		columns = fill(columns, names);
+		columnCount = names.size();
+		return this;
+	}
+
+	/**
+	 * @param columnSelection the column projection
+	 * @return this shape
+	 */
+	public SqlShape selection (List<String> columnSelection) {
+		if (columnSelection == null) {
+			selectionCount = 0;
+			return this;
+		}
+		selection = fill(selection, columnSelection);
+		selectionCount = columnSelection.size();
+		return this;
+	}
+
+	/**
+	 * Record the hints, so that a cache hit does not render the hint comment
+	 *
+	 * @param hints the optimizer hints, may be null
+	 * @return this shape
+	 */
+	public SqlShape hints (List<Hint> hints) {
+		hintCount = 0;
+		if (hints == null) return this;
+		if (this.hints.length < hints.size()) {
+			this.hints = new String[hints.size()];
+		}
+		for (int i = 0; i < hints.size(); i++) {
+			this.hints[hintCount++] = hints.get(i).getText();
+		}
+		return this;
+	}
+
+	/**
+	 * @param dynamicColumnsType the dynamic column name to data type mapping
+	 * @return this shape
+	 */
+	public SqlShape dynamicColumnTypes (Map<String, String> dynamicColumnsType) {
+		dynamicCount = 0;
+		if (dynamicColumnsType == null) return this;
+		ensureDynamicCapacity(dynamicColumnsType.size());
+		for (Entry<String, String> e : dynamicColumnsType.entrySet()) {
+			dynamicNames[dynamicCount] = e.getKey();
+			dynamicTypes[dynamicCount] = e.getValue();
+			dynamicCount++;
+		}
+		return this;
+	}
+
+	/**
+	 * Record the dynamic column signature from the values to be saved
+	 *
+	 * @param dynamicColumnMapper the dynamic column name to value mapping
+	 * @param grammar the grammar used to resolve the value data type
+	 * @return this shape
+	 */
+	public SqlShape dynamicColumnValues (Map<String, Object> dynamicColumnMapper, SqlGrammar grammar) {
+		dynamicCount = 0;
+		if (dynamicColumnMapper == null) return this;
+		ensureDynamicCapacity(dynamicColumnMapper.size());
+		for (Entry<String, Object> e : dynamicColumnMapper.entrySet()) {
+			dynamicNames[dynamicCount] = e.getKey();
+			dynamicTypes[dynamicCount] = e.getValue() == null ? null : grammar.getParamDataType(e.getValue());
+			dynamicCount++;
+		}
+		return this;
+	}
+
+	/**
+	 * Take an immutable copy of this shape that is safe to keep as a cache key
+	 *
+	 * @return the copy
+	 */
+	public SqlShape snapshot () {
+		SqlShape copy = new SqlShape();
+		copy.kind = kind;
+		copy.table = table;
+		copy.sort = sort;
+		copy.limit = limit;
+		copy.idSize = idSize;
+		copy.nullMask = Arrays.copyOf(nullMask, nullMaskWords);
+		copy.nullMaskWords = nullMaskWords;
+		copy.columns = Arrays.copyOf(columns, columnCount);
+		copy.columnCount = columnCount;
+		copy.dynamicNames = Arrays.copyOf(dynamicNames, dynamicCount);
+		copy.dynamicTypes = Arrays.copyOf(dynamicTypes, dynamicCount);
+		copy.dynamicCount = dynamicCount;
+		copy.selection = Arrays.copyOf(selection, selectionCount);
+		copy.selectionCount = selectionCount;
+		copy.hints = Arrays.copyOf(hints, hintCount);
+		copy.hintCount = hintCount;
+		return copy;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = kind.hashCode();
+		h = 31 * h + System.identityHashCode(table);
+		h = 31 * h + (sort == null ? 0 : sort.hashCode());
+		h = 31 * h + (int) (limit ^ (limit >>> 32));
+		h = 31 * h + idSize;
+		for (int i = 0; i < nullMaskWords; i++) {
+			h = 31 * h + (int) (nullMask[i] ^ (nullMask[i] >>> 32));
+		}
+		h = 31 * h + hash(columns, columnCount);
+		h = 31 * h + hash(dynamicNames, dynamicCount);
+		h = 31 * h + hash(dynamicTypes, dynamicCount);
+		h = 31 * h + hash(selection, selectionCount);
+		h = 31 * h + hash(hints, hintCount);
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof SqlShape)) return false;
+		SqlShape other = (SqlShape) obj;
+		if (kind != other.kind || table != other.table || limit != other.limit || idSize != other.idSize) return false;
+		if (nullMaskWords != other.nullMaskWords || columnCount != other.columnCount
+				|| dynamicCount != other.dynamicCount || selectionCount != other.selectionCount
+				|| hintCount != other.hintCount) return false;
+		for (int i = 0; i < nullMaskWords; i++) {
+			if (nullMask[i] != other.nullMask[i]) return false;
+		}
+		return Objects.equal(sort, other.sort)
+				&& equal(hints, other.hints, hintCount)
+				&& equal(columns, other.columns, columnCount)
+				&& equal(dynamicNames, other.dynamicNames, dynamicCount)
+				&& equal(dynamicTypes, other.dynamicTypes, dynamicCount)
+				&& equal(selection, other.selection, selectionCount);
+	}
+
+	@Override
+	public String toString() {
+		return "SqlShape [kind=" + kind + ", table=" + table.getTableName() + ", idSize=" + idSize
+				+ ", sort=" + sort + ", limit=" + limit + "]";
+	}
+
+	private void ensureDynamicCapacity (int size) {
+		if (dynamicNames.length < size) {
+			dynamicNames = new String[size];
+			dynamicTypes = new String[size];
+		}
+	}
+
+	private static String[] fill (String[] target, Collection<String> values) {
+		String[] array = target.length < values.size() ? new String[values.size()] : target;
+		Iterator<String> iter = values.iterator();
+		for (int i = 0; iter.hasNext(); i++) {
+			array[i] = iter.next();
+		}
+		return array;
+	}
+
+	private static int hash (String[] values, int count) {
+		int h = 1;
+		for (int i = 0; i < count; i++) {
+			h = 31 * h + (values[i] == null ? 0 : values[i].hashCode());
+		}
+		return h;
+	}
+
+	private static boolean equal (String[] a, String[] b, int count) {
+		for (int i = 0; i < count; i++) {
+			if (!Objects.equal(a[i], b[i])) return false;
+		}
+		return true;
+	}
+}
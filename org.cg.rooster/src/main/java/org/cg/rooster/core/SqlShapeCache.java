@@ -0,0 +1,103 @@
+package org.cg.rooster.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A bounded cache of generated SQL statements keyed by {@link SqlShape}.
+ * Lookups do not take a global lock, the least recently used statements are evicted once the cache is full.
+ * @author WZ
+ *
+ */
+public class SqlShapeCache {
+
+	public final static int DEFAULT_MAX_SIZE = 1024;
+
+	private final int maxSize;
+	private final Cache<SqlShape, String> statements;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Construct a cache with {@link #DEFAULT_MAX_SIZE}
+	 */
+	public SqlShapeCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize the maximum number of statements to keep
+	 */
+	public SqlShapeCache(final int maxSize) {
+		Preconditions.checkArgument(maxSize > 0, "maxSize must be positive");
+		this.maxSize = maxSize;
+		this.statements = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.<SqlShape, String>build();
+	}
+
+	/**
+	 * Get the cached statement of the shape
+	 *
+	 * @param shape the shape, usually a {@link SqlShape#probe}
+	 * @return the statement, or null if it is not cached
+	 */
+	public String get (SqlShape shape) {
+		final String sql = statements.getIfPresent(shape);
+		if (sql != null) {
+			hitCount.incrementAndGet();
+		} else {
+			missCount.incrementAndGet();
+		}
+		return sql;
+	}
+
+	/**
+	 * Cache the statement of the shape. The shape is copied, so a probe can be passed in.
+	 *
+	 * @param shape the shape
+	 * @param sql the statement
+	 * @return the statement
+	 */
+	public String put (SqlShape shape, String sql) {
+		Preconditions.checkNotNull(shape, "shape must be provided");
+		Preconditions.checkNotNull(sql, "sql must be provided");
+
+		statements.put(shape.snapshot(), sql);
+		return sql;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int size() {
+		return (int) statements.size();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Remove all cached statements and reset the counters
+	 */
+	public void clear() {
+		statements.invalidateAll();
+		hitCount.set(0);
+		missCount.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "SqlShapeCache [size=" + size() + ", maxSize=" + maxSize
+				+ ", hitCount=" + hitCount + ", missCount=" + missCount + "]";
+	}
+}
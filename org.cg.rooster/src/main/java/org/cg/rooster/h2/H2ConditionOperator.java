@@ -0,0 +1,57 @@
+package org.cg.rooster.h2;
+
+import org.cg.rooster.core.ConditionOperator;
+import org.cg.rooster.core.MultiValuedConditionOperator;
+
+/**
+ * A Enum implements {@link ConditionOperator} that is supported by H2
+ * @author WZ
+ *
+ */
+public enum H2ConditionOperator implements MultiValuedConditionOperator {
+
+	EQUAL ("="),
+	LESS ("<"),
+	GREATER (">"),
+	LESS_OR_EQUAL ("<="),
+	GREATER_OR_EQUAL (">="),
+	NOT_EQUAL ("<>"),
+	LIKE ("LIKE"),
+	ILIKE ("ILIKE"),
+	REGEXP ("REGEXP"),
+	IS_NOT_NULL ("IS NOT NULL"),
+	IS_NULL ("IS NULL"),
+	AND("AND"),
+	OR("OR"),
+	IN ("IN", Operand.LIST),
+	NOT_IN ("NOT IN", Operand.LIST),
+	BETWEEN ("BETWEEN", Operand.RANGE),
+	NOT_BETWEEN ("NOT BETWEEN", Operand.RANGE),
+	EQUAL_ANY ("= ANY", Operand.ARRAY);
+
+	private final String operator;
+	private final Operand operand;
+
+	private H2ConditionOperator(String s) {
+		this(s, Operand.SINGLE);
+	}
+
+	private H2ConditionOperator(String s, Operand operand) {
+		this.operator = s;
+		this.operand = operand;
+	}
+
+	public String toString(){
+		return operator;
+	}
+
+	@Override
+	public String getOperatorSQLStr() {
+		return operator;
+	}
+
+	@Override
+	public Operand getOperand() {
+		return operand;
+	}
+}
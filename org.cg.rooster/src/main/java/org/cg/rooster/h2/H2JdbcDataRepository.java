@@ -0,0 +1,48 @@
+package org.cg.rooster.h2;
+
+import java.io.Serializable;
+
+import javax.sql.DataSource;
+
+import org.cg.rooster.JdbcDataRepository;
+import org.cg.rooster.core.RowColumnMapper;
+import org.cg.rooster.core.TableDefinition;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * A extended {@link JdbcDataRepository} using H2 SQL grammar
+ * @author WZ
+ *
+ * @param <T>
+ * @param <ID>
+ */
+public class H2JdbcDataRepository <T extends Persistable<ID>, ID extends Serializable> extends JdbcDataRepository<T, ID> {
+
+	/**
+	 * 
+	 * @param dataSource 
+	 * @param tableDefinition
+	 * @param rowColumnMapper
+	 */
+	public H2JdbcDataRepository(DataSource dataSource, TableDefinition tableDefinition, RowColumnMapper<T> rowColumnMapper) {
+		super(tableDefinition, 
+			  rowColumnMapper, 
+			  dataSource,
+			  H2SqlGrammar.getInstance());
+	}
+
+	/**
+	 * 
+	 * @param dataSource 
+	 * @param tableDefinition
+	 * @param rowColumnMapper
+	 * @param lazyinit
+	 */
+	public H2JdbcDataRepository(DataSource dataSource, TableDefinition tableDefinition, RowColumnMapper<T> rowColumnMapper, boolean lazyinit) {
+		super(tableDefinition, 
+			  rowColumnMapper, 
+			  dataSource,
+			  H2SqlGrammar.getInstance(),
+			  lazyinit);
+	}
+}
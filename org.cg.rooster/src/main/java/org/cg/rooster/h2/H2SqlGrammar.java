@@ -0,0 +1,146 @@
+package org.cg.rooster.h2;
+
+import java.util.List;
+import java.util.Map;
+
+import org.cg.rooster.core.Aggregate;
+import org.cg.rooster.core.Condition;
+import org.cg.rooster.core.Hint;
+import org.cg.rooster.core.SqlGrammar;
+import org.cg.rooster.core.SqlShape;
+import org.cg.rooster.core.TableDefinition;
+import org.cg.rooster.phoenix.PhoenixSqlGrammar;
+import org.springframework.data.domain.Sort;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link SqlGrammar} implementation for H2, e.g. to run repositories in process for tests and load tests.
+ * The statements are the same as those of {@link PhoenixSqlGrammar}, except that rows are saved with MERGE INTO,
+ * approximate counts come from INFORMATION_SCHEMA, optimizer hints are left out and dynamic columns are not supported
+ * @author WZ
+ *
+ */
+public class H2SqlGrammar extends PhoenixSqlGrammar {
+
+	public final static String MERGE = "MERGE INTO ";
+	public final static String INFORMATION_SCHEMA_TABLES = "INFORMATION_SCHEMA.TABLES";
+	public final static String ROW_COUNT_ESTIMATE = "ROW_COUNT_ESTIMATE";
+
+	private static H2SqlGrammar singleton = new H2SqlGrammar( );
+
+	private H2SqlGrammar() {
+
+	}
+
+	/**
+	 * Get the singleton instance of H2SqlGrammar
+	 * @return the singleton instance
+	 */
+	public static H2SqlGrammar getInstance( ) {
+		return singleton;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Reads the row count estimate H2 keeps for the table.
+	 */
+	@Override
+	public String approximateCount(TableDefinition table) {
+		Preconditions.checkNotNull(table, "table must be provided");
+
+		final SqlShape shape = SqlShape.probe(SqlShape.Kind.APPROXIMATE_COUNT, table);
+		final String cached = getShapeCache().get(shape);
+		if (cached != null) return cached;
+
+		final String name = physicalName(table.getTableName());
+		final int dot = name.lastIndexOf('.');
+		String query = SELECT + ROW_COUNT_ESTIMATE + SPACE + FROM + INFORMATION_SCHEMA_TABLES
+				+ WHERE + "TABLE_NAME = '" + name.substring(dot + 1) + "'";
+		if (dot > 0) {
+			query = query + AND + "TABLE_SCHEMA = '" + name.substring(0, dot) + "'";
+		}
+		return getShapeCache().put(shape, query);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String countByCondition(TableDefinition table, List<Condition> conditions, Map<String, String> dynamicColumnsType,
+			List<Hint> hints) {
+		checkNoDynamicColumns(dynamicColumnsType);
+		return super.countByCondition(table, conditions, dynamicColumnsType, hints);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String selectById(TableDefinition table, Sort sort, long limit, int idSize, Object[] flatIds,
+			Map<String, String> dynamicColumnsType, List<String> columnSelectionList, List<Hint> hints) {
+		checkNoDynamicColumns(dynamicColumnsType);
+		return super.selectById(table, sort, limit, idSize, flatIds, dynamicColumnsType, columnSelectionList, hints);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String selectByCondition(TableDefinition table, Sort sort, long limit, List<Condition> conditions,
+			Map<String, String> dynamicColumnsType, List<String> columnSelectionList, List<Hint> hints) {
+		checkNoDynamicColumns(dynamicColumnsType);
+		return super.selectByCondition(table, sort, limit, conditions, dynamicColumnsType, columnSelectionList, hints);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String selectByKeyset(TableDefinition table, Sort sort, long limit, boolean afterKey, List<Condition> conditions,
+			Map<String, String> dynamicColumnsType, List<String> columnSelectionList, List<Hint> hints) {
+		checkNoDynamicColumns(dynamicColumnsType);
+		return super.selectByKeyset(table, sort, limit, afterKey, conditions, dynamicColumnsType, columnSelectionList, hints);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String selectByAggregate(TableDefinition table, List<Aggregate> aggregates, List<String> groupBy,
+			List<Condition> conditions, List<Condition> having, Sort sort, long limit, Map<String, String> dynamicColumnsType,
+			List<Hint> hints) {
+		checkNoDynamicColumns(dynamicColumnsType);
+		return super.selectByAggregate(table, aggregates, groupBy, conditions, having, sort, limit, dynamicColumnsType, hints);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String save(TableDefinition table, Map<String, Object> columnMapper, Map<String, Object> dynamicColumnMapper) {
+		checkNoDynamicColumns(dynamicColumnMapper);
+		return super.save(table, columnMapper, dynamicColumnMapper);
+	}
+
+	/**
+	 * H2 has no optimizer hints, they are left out
+	 */
+	@Override
+	protected String hintComment(List<Hint> hints) {
+		return "";
+	}
+
+	@Override
+	protected String upsertInto() {
+		return MERGE;
+	}
+
+	private static void checkNoDynamicColumns(Map<String, ?> dynamicColumns) {
+		if (dynamicColumns != null && !dynamicColumns.isEmpty()) {
+			throw new UnsupportedOperationException("Dynamic columns are not supported by H2.");
+		}
+	}
+
+}
@@ -0,0 +1,32 @@
+package org.cg.rooster.mapping;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maps a field of a {@link MappedEntity} to a column. Columns are selected and bound in the order of the fields. 
+ * 
+ * Supported field types are the primitives and their wrappers, String, BigDecimal, byte[], 
+ * java.util.Date and java.sql.Date, Time and Timestamp.
+ * 
+ * @author WZ
+ *
+ */
+@Documented
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.CLASS)
+public @interface Column {
+
+	/**
+	 * @return the column name, the default is the field name
+	 */
+	String value() default "";
+	
+	/**
+	 * @return true to store a java.util.Date as milliseconds since the epoch in a BIGINT column instead of a TIMESTAMP
+	 */
+	boolean epochMillis() default false;
+}
@@ -0,0 +1,29 @@
+package org.cg.rooster.mapping;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an entity class to generate a {@link org.cg.rooster.core.SelectableRowColumnMapper} for at compile time.
+ * Fields annotated with {@link Column} are mapped, through their getter and setter, or directly if they are public.
+ * The class needs a public no-arg constructor.
+ * 
+ * The mapper is generated in the package of the entity, named after it with a RowColumnMapper suffix, 
+ * e.g. EventRowColumnMapper, and its INSTANCE can be shared.
+ * 
+ * @author WZ
+ *
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface MappedEntity {
+
+	/**
+	 * @return the simple name of the generated mapper, the default is the entity name followed by RowColumnMapper
+	 */
+	String mapperName() default "";
+}
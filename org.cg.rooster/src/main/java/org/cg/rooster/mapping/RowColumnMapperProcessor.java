@@ -0,0 +1,389 @@
+package org.cg.rooster.mapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a {@link org.cg.rooster.core.SelectableRowColumnMapper} for each {@link MappedEntity} class.
+ * The generated mapper reads columns by position and binds parameters by index, without reflection.
+ *
+ * The processor is registered in META-INF/services, so it runs whenever this library is on the compile class path.
+ *
+ * @author WZ
+ *
+ */
+@SupportedAnnotationTypes("org.cg.rooster.mapping.MappedEntity")
+public class RowColumnMapperProcessor extends AbstractProcessor {
+
+	public final static String MAPPER_SUFFIX = "RowColumnMapper";
+
+	/**
+	 * How a field type is read from a ResultSet and bound to a PreparedStatement
+	 */
+	private static final class JdbcType {
+		private final String accessor;
+		private final String sqlType;
+		private final String boxed;
+
+		JdbcType(String accessor, String sqlType, String boxed) {
+			this.accessor = accessor;
+			this.sqlType = sqlType;
+			this.boxed = boxed;
+		}
+	}
+
+	private static final Map<String, JdbcType> TYPES = new HashMap<String, JdbcType>();
+	static {
+		register("int", "java.lang.Integer", "Int", "INTEGER");
+		register("long", "java.lang.Long", "Long", "BIGINT");
+		register("short", "java.lang.Short", "Short", "SMALLINT");
+		register("byte", "java.lang.Byte", "Byte", "TINYINT");
+		register("boolean", "java.lang.Boolean", "Boolean", "BOOLEAN");
+		register("float", "java.lang.Float", "Float", "FLOAT");
+		register("double", "java.lang.Double", "Double", "DOUBLE");
+		TYPES.put("java.lang.String", new JdbcType("String", "VARCHAR", null));
+		TYPES.put("java.math.BigDecimal", new JdbcType("BigDecimal", "DECIMAL", null));
+		TYPES.put("byte[]", new JdbcType("Bytes", "VARBINARY", null));
+		TYPES.put("java.sql.Timestamp", new JdbcType("Timestamp", "TIMESTAMP", null));
+		TYPES.put("java.sql.Date", new JdbcType("Date", "DATE", null));
+		TYPES.put("java.sql.Time", new JdbcType("Time", "TIME", null));
+	}
+
+	private static void register(String primitive, String wrapper, String accessor, String sqlType) {
+		TYPES.put(primitive, new JdbcType(accessor, sqlType, null));
+		TYPES.put(wrapper, new JdbcType(accessor, sqlType, primitive));
+	}
+
+	private static final String UTIL_DATE = "java.util.Date";
+
+	/**
+	 * A mapped field
+	 */
+	private static final class Mapping {
+		private String column;
+		private String type;
+		private boolean epochMillis;
+		private String getter;
+		private String setter;
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getElementsAnnotatedWith(MappedEntity.class)) {
+			if (element.getKind() != ElementKind.CLASS) {
+				error(element, "@MappedEntity is only supported on classes");
+				continue;
+			}
+			final TypeElement entity = (TypeElement) element;
+			final List<Mapping> mappings = collect(entity);
+			if (mappings == null) continue;
+			if (mappings.isEmpty()) {
+				error(entity, "@MappedEntity class has no @Column field");
+				continue;
+			}
+			try {
+				generate(entity, mappings);
+			} catch (IOException e) {
+				error(entity, "cannot generate mapper: " + e.getMessage());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the mapped fields of the class and its super classes, super classes first, or null if there was an error
+	 */
+	private List<Mapping> collect(TypeElement entity) {
+		boolean valid = true;
+		if (entity.getModifiers().contains(Modifier.ABSTRACT)) {
+			error(entity, "@MappedEntity class must not be abstract");
+			valid = false;
+		}
+		if (entity.getNestingKind().isNested() && !entity.getModifiers().contains(Modifier.STATIC)) {
+			error(entity, "@MappedEntity nested class must be static");
+			valid = false;
+		}
+		if (!hasPublicNoArgConstructor(entity)) {
+			error(entity, "@MappedEntity class needs a public no-arg constructor");
+			valid = false;
+		}
+
+		final LinkedList<TypeElement> hierarchy = new LinkedList<TypeElement>();
+		for (TypeElement type = entity; type != null; type = superclass(type)) {
+			hierarchy.addFirst(type);
+		}
+		final List<Mapping> mappings = new ArrayList<Mapping>();
+		for (TypeElement type : hierarchy) {
+			for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+				final Column column = field.getAnnotation(Column.class);
+				if (column == null) continue;
+				final Mapping mapping = map(entity, field, column);
+				if (mapping == null) {
+					valid = false;
+				} else {
+					mappings.add(mapping);
+				}
+			}
+		}
+		return valid ? mappings : null;
+	}
+
+	private Mapping map(TypeElement entity, VariableElement field, Column column) {
+		final Mapping mapping = new Mapping();
+		final String name = field.getSimpleName().toString();
+		mapping.column = column.value().isEmpty() ? name : column.value();
+		mapping.type = field.asType().toString();
+		mapping.epochMillis = column.epochMillis();
+
+		if (!TYPES.containsKey(mapping.type) && !UTIL_DATE.equals(mapping.type)) {
+			error(field, "unsupported @Column type " + mapping.type);
+			return null;
+		}
+		if (mapping.epochMillis && !UTIL_DATE.equals(mapping.type)) {
+			error(field, "epochMillis is only supported for java.util.Date");
+			return null;
+		}
+		if (field.getModifiers().contains(Modifier.STATIC)) {
+			error(field, "@Column field must not be static");
+			return null;
+		}
+
+		final String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		final List<ExecutableElement> methods = methodsOf(entity);
+		final String getter = findMethod(methods, field.asType(), "get" + capitalized, "boolean".equals(mapping.type) ? "is" + capitalized : null);
+		final String setter = findSetter(methods, field.asType(), "set" + capitalized);
+		final boolean publicField = field.getModifiers().contains(Modifier.PUBLIC);
+		if (getter == null && !publicField) {
+			error(field, "@Column field needs a public getter get" + capitalized + "()");
+			return null;
+		}
+		if (setter == null && (!publicField || field.getModifiers().contains(Modifier.FINAL))) {
+			error(field, "@Column field needs a public setter set" + capitalized + "(" + mapping.type + ")");
+			return null;
+		}
+		mapping.getter = getter != null ? getter + "()" : name;
+		mapping.setter = setter;
+		return mapping;
+	}
+
+	private void generate(TypeElement entity, List<Mapping> mappings) throws IOException {
+		final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(entity);
+		final String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		final String entityName = entity.getQualifiedName().toString();
+		final String mapperName = mapperName(entity);
+		final String qualifiedMapperName = packageName.isEmpty() ? mapperName : packageName + "." + mapperName;
+
+		final JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedMapperName, entity);
+		final PrintWriter out = new PrintWriter(file.openWriter());
+		try {
+			if (!packageName.isEmpty()) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+			out.println("import java.sql.PreparedStatement;");
+			out.println("import java.sql.ResultSet;");
+			out.println("import java.sql.SQLException;");
+			out.println("import java.sql.Types;");
+			out.println("import java.util.Arrays;");
+			out.println("import java.util.Collections;");
+			out.println("import java.util.LinkedHashMap;");
+			out.println("import java.util.List;");
+			out.println();
+			out.println("import org.cg.rooster.core.SelectableRowColumnMapper;");
+			out.println();
+			out.println("/**");
+			out.println(" * Generated by " + RowColumnMapperProcessor.class.getSimpleName() + " from {@link " + entityName + "}, do not edit");
+			out.println(" */");
+			out.println("public final class " + mapperName + " extends SelectableRowColumnMapper<" + entityName + "> {");
+			out.println();
+			out.print("\tpublic static final List<String> COLUMNS = Collections.unmodifiableList(Arrays.asList(");
+			for (int i = 0; i < mappings.size(); i++) {
+				if (i > 0) out.print(", ");
+				out.print(quote(mappings.get(i).column));
+			}
+			out.println("));");
+			out.println();
+			out.println("\tpublic static final " + mapperName + " INSTANCE = new " + mapperName + "();");
+			out.println();
+
+			out.println("\t@Override");
+			out.println("\tpublic List<String> getColumnSelection() {");
+			out.println("\t\treturn COLUMNS;");
+			out.println("\t}");
+			out.println();
+
+			out.println("\t@Override");
+			out.println("\tpublic " + entityName + " mapRow(ResultSet rs, int rowNum) throws SQLException {");
+			out.println("\t\tfinal " + entityName + " entity = new " + entityName + "();");
+			for (int i = 0; i < mappings.size(); i++) {
+				out.println("\t\t" + readStatement(mappings.get(i), i + 1));
+			}
+			out.println("\t\treturn entity;");
+			out.println("\t}");
+			out.println();
+
+			out.println("\t@Override");
+			out.println("\tpublic int bindColumns(PreparedStatement ps, " + entityName + " entity, int startIndex) throws SQLException {");
+			for (int i = 0; i < mappings.size(); i++) {
+				out.println("\t\t" + bindStatement(mappings.get(i), "startIndex" + (i == 0 ? "" : " + " + i)));
+			}
+			out.println("\t\treturn startIndex + " + mappings.size() + ";");
+			out.println("\t}");
+			out.println();
+
+			out.println("\t@Override");
+			out.println("\tpublic LinkedHashMap<String, Object> mapColumns(" + entityName + " entity) {");
+			out.println("\t\tfinal LinkedHashMap<String, Object> columns = new LinkedHashMap<String, Object>(" + (mappings.size() * 2) + ");");
+			for (Mapping mapping : mappings) {
+				out.println("\t\tcolumns.put(" + quote(mapping.column) + ", " + columnValue(mapping) + ");");
+			}
+			out.println("\t\treturn columns;");
+			out.println("\t}");
+			out.println("}");
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String readStatement(Mapping mapping, int index) {
+		final String assign = mapping.setter != null ? "entity." + mapping.setter + "(%s);" : "entity." + mapping.getter + " = %s;";
+		if (UTIL_DATE.equals(mapping.type)) {
+			if (mapping.epochMillis) {
+				return "{ final long v = rs.getLong(" + index + "); "
+						+ String.format(assign, "rs.wasNull() ? null : new java.util.Date(v)") + " }";
+			}
+			return "{ final java.sql.Timestamp v = rs.getTimestamp(" + index + "); "
+					+ String.format(assign, "v == null ? null : new java.util.Date(v.getTime())") + " }";
+		}
+		final JdbcType type = TYPES.get(mapping.type);
+		if (type.boxed != null) {
+			return "{ final " + type.boxed + " v = rs.get" + type.accessor + "(" + index + "); "
+					+ String.format(assign, "rs.wasNull() ? null : " + mapping.type + ".valueOf(v)") + " }";
+		}
+		return String.format(assign, "rs.get" + type.accessor + "(" + index + ")");
+	}
+
+	private static String bindStatement(Mapping mapping, String index) {
+		final String value = "entity." + mapping.getter;
+		if (UTIL_DATE.equals(mapping.type)) {
+			if (mapping.epochMillis) {
+				return "{ final java.util.Date v = " + value + "; if (v == null) ps.setNull(" + index + ", Types.BIGINT); else ps.setLong(" + index + ", v.getTime()); }";
+			}
+			return "{ final java.util.Date v = " + value + "; if (v == null) ps.setNull(" + index + ", Types.TIMESTAMP); else ps.setTimestamp(" + index + ", new java.sql.Timestamp(v.getTime())); }";
+		}
+		final JdbcType type = TYPES.get(mapping.type);
+		if (isPrimitive(mapping.type)) {
+			return "ps.set" + type.accessor + "(" + index + ", " + value + ");";
+		}
+		return "{ final " + mapping.type + " v = " + value + "; if (v == null) ps.setNull(" + index + ", Types." + type.sqlType + "); else ps.set" + type.accessor + "(" + index + ", v); }";
+	}
+
+	private static String columnValue(Mapping mapping) {
+		final String value = "entity." + mapping.getter;
+		if (UTIL_DATE.equals(mapping.type)) {
+			if (mapping.epochMillis) {
+				return value + " == null ? null : (Object) " + value + ".getTime()";
+			}
+			return value + " == null ? null : new java.sql.Timestamp(" + value + ".getTime())";
+		}
+		return value;
+	}
+
+	private String mapperName(TypeElement entity) {
+		final String configured = entity.getAnnotation(MappedEntity.class).mapperName();
+		if (!configured.isEmpty()) return configured;
+		//nested classes are named after their enclosing classes, e.g. Outer_InnerRowColumnMapper
+		final List<String> names = new ArrayList<String>();
+		for (Element e = entity; e instanceof TypeElement; e = e.getEnclosingElement()) {
+			names.add(e.getSimpleName().toString());
+		}
+		Collections.reverse(names);
+		final StringBuilder sb = new StringBuilder();
+		for (String name : names) {
+			if (sb.length() > 0) sb.append('_');
+			sb.append(name);
+		}
+		return sb.append(MAPPER_SUFFIX).toString();
+	}
+
+	private List<ExecutableElement> methodsOf(TypeElement entity) {
+		return ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(entity));
+	}
+
+	private String findMethod(List<ExecutableElement> methods, TypeMirror type, String... names) {
+		for (ExecutableElement method : methods) {
+			if (!method.getModifiers().contains(Modifier.PUBLIC) || !method.getParameters().isEmpty()) continue;
+			if (!processingEnv.getTypeUtils().isSameType(method.getReturnType(), type)) continue;
+			for (String name : names) {
+				if (name != null && method.getSimpleName().contentEquals(name)) return name;
+			}
+		}
+		return null;
+	}
+
+	private String findSetter(List<ExecutableElement> methods, TypeMirror type, String name) {
+		for (ExecutableElement method : methods) {
+			if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getParameters().size() != 1) continue;
+			if (!method.getSimpleName().contentEquals(name)) continue;
+			if (processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), type)) return name;
+		}
+		return null;
+	}
+
+	private static boolean hasPublicNoArgConstructor(TypeElement entity) {
+		final List<ExecutableElement> constructors = ElementFilter.constructorsIn(entity.getEnclosedElements());
+		for (ExecutableElement constructor : constructors) {
+			if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) return true;
+		}
+		return false;
+	}
+
+	private static TypeElement superclass(TypeElement type) {
+		final TypeMirror superclass = type.getSuperclass();
+		if (superclass.getKind() != TypeKind.DECLARED) return null;
+		final TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+		return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+	}
+
+	private static boolean isPrimitive(String type) {
+		return TYPES.containsKey(type) && !type.contains(".") && !type.endsWith("[]");
+	}
+
+	private static String quote(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+}
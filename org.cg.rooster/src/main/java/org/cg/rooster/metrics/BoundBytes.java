@@ -0,0 +1,67 @@
+package org.cg.rooster.metrics;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+
+import org.cg.rooster.core.ArrayValue;
+
+/**
+ * Estimates the size of statement parameters from their types, without serializing them.
+ * Strings are counted as one byte per character.
+ *
+ * @author WZ
+ *
+ */
+public final class BoundBytes {
+
+	private BoundBytes() {
+
+	}
+
+	/**
+	 * @param params the parameters, may contain nulls
+	 * @return the estimated size in bytes
+	 */
+	public static long of(Object[] params) {
+		if (params == null) return 0;
+		long bytes = 0;
+		for (Object param : params) {
+			bytes += of(param);
+		}
+		return bytes;
+	}
+
+	/**
+	 * @param params the parameters, may contain nulls
+	 * @return the estimated size in bytes
+	 */
+	public static long of(Iterable<?> params) {
+		if (params == null) return 0;
+		long bytes = 0;
+		for (Object param : params) {
+			bytes += of(param);
+		}
+		return bytes;
+	}
+
+	/**
+	 * @param param a parameter, or null
+
+	 * @return the estimated size in bytes
+	 */
+	public static long of(Object param) {
+		if (param == null) return 0;
+		if (param instanceof CharSequence) return ((CharSequence) param).length();
+		if (param instanceof byte[]) return ((byte[]) param).length;
+		if (param instanceof Long || param instanceof Double || param instanceof Date) return 8;
+		if (param instanceof Integer || param instanceof Float) return 4;
+		if (param instanceof Short || param instanceof Character) return 2;
+		if (param instanceof Byte || param instanceof Boolean) return 1;
+		if (param instanceof BigDecimal) return ((BigDecimal) param).unscaledValue().bitLength() / 8 + 1;
+		if (param instanceof BigInteger) return ((BigInteger) param).bitLength() / 8 + 1;
+		if (param instanceof Object[]) return of((Object[]) param);
+		if (param instanceof ArrayValue) return of(((ArrayValue) param).getValues());
+		return 8;
+	}
+}
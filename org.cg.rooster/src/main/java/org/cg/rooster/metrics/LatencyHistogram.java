@@ -0,0 +1,97 @@
+package org.cg.rooster.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A lock-free histogram of non-negative values with logarithmic buckets.
+ * Every power of two is split into {@link #SUB_BUCKETS} buckets, so a percentile is accurate to about 19%.
+ *
+ * @author WZ
+ *
+ */
+public class LatencyHistogram {
+
+	public final static int SUB_BUCKETS = 4;
+	private final static int SUB_BUCKET_BITS = 2;
+	private final static int BUCKETS = 64 * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Record a value, negative values are recorded as 0
+	 *
+	 * @param value the value
+	 */
+	public void record(long value) {
+		final long v = Math.max(0, value);
+		counts.incrementAndGet(bucketOf(v));
+		count.incrementAndGet();
+		sum.addAndGet(v);
+		long current;
+		while (v > (current = max.get()) && !max.compareAndSet(current, v)) {
+			//retry
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		final long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * @param percentile the percentile between 0 and 100
+	 * @return the upper bound of the bucket holding the percentile, at most the maximum, or 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		Preconditions.checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+		long total = 0;
+		final long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) return 0;
+		final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		final long sub = bucket % SUB_BUCKETS;
+		final long lower = (1L << exponent) + (sub << (exponent - SUB_BUCKET_BITS));
+		return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
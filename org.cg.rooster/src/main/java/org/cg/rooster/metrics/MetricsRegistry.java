@@ -0,0 +1,157 @@
+package org.cg.rooster.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+/**
+ * An in-process {@link RepositoryMetrics} that keeps an {@link OperationStats} per table and operation.
+ * The batches of batch saves are kept under the operation {@link #BATCH}.
+ *
+ * Once {@link #registerMBeans()} is called, every stats is also exposed as an MBean named
+ * org.cg.rooster:type=RepositoryMetrics,table=&lt;table&gt;,operation=&lt;operation&gt;
+ *
+ * @author WZ
+ *
+ */
+public class MetricsRegistry implements RepositoryMetrics {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MetricsRegistry.class);
+
+	public final static String BATCH = "batch";
+	public final static String JMX_DOMAIN = "org.cg.rooster";
+
+	private final ConcurrentMap<String, ConcurrentMap<String, OperationStats>> stats =
+			new ConcurrentHashMap<String, ConcurrentMap<String, OperationStats>>();
+	private volatile MBeanServer mBeanServer;
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public void recordOperation(String table, String operation, long elapsedNanos, long rows, long boundBytes, boolean failed) {
+		getStats(table, operation).record(elapsedNanos, rows, boundBytes, failed);
+	}
+
+	@Override
+	public void recordBatch(String table, int batchSize, long elapsedNanos, boolean failed) {
+		getStats(table, BATCH).record(elapsedNanos, batchSize, 0, failed);
+	}
+
+	/**
+	 * Get the stats of an operation on a table, creating them if needed
+	 *
+	 * @param table the table name
+	 * @param operation the operation
+	 * @return the stats
+	 */
+	public OperationStats getStats(String table, String operation) {
+		Preconditions.checkNotNull(table, "table must be provided");
+		Preconditions.checkNotNull(operation, "operation must be provided");
+		ConcurrentMap<String, OperationStats> byOperation = stats.get(table);
+		if (byOperation == null) {
+			final ConcurrentMap<String, OperationStats> created = new ConcurrentHashMap<String, OperationStats>();
+			byOperation = stats.putIfAbsent(table, created);
+			if (byOperation == null) byOperation = created;
+		}
+		OperationStats operationStats = byOperation.get(operation);
+		if (operationStats == null) {
+			final OperationStats created = new OperationStats(table, operation);
+			operationStats = byOperation.putIfAbsent(operation, created);
+			if (operationStats == null) {
+				operationStats = created;
+				final MBeanServer server = mBeanServer;
+				if (server != null) register(server, created);
+			}
+		}
+		return operationStats;
+	}
+
+	/**
+	 * @return the stats of all operations on all tables
+	 */
+	public List<OperationStats> getAllStats() {
+		final List<OperationStats> result = new ArrayList<OperationStats>();
+		for (ConcurrentMap<String, OperationStats> byOperation : stats.values()) {
+			result.addAll(byOperation.values());
+		}
+		return result;
+	}
+
+	/**
+	 * Expose the stats on the platform MBean server
+	 */
+	public void registerMBeans() {
+		registerMBeans(ManagementFactory.getPlatformMBeanServer());
+	}
+
+	/**
+	 * Expose the stats, including those created later, on the MBean server
+	 *
+	 * @param server the MBean server
+	 */
+	public synchronized void registerMBeans(MBeanServer server) {
+		Preconditions.checkNotNull(server, "server must be provided");
+		Preconditions.checkState(mBeanServer == null, "MBeans are already registered");
+		mBeanServer = server;
+		for (OperationStats operationStats : getAllStats()) {
+			register(server, operationStats);
+		}
+	}
+
+	/**
+	 * Remove the MBeans of the stats
+	 */
+	public synchronized void unregisterMBeans() {
+		final MBeanServer server = mBeanServer;
+		if (server == null) return;
+		mBeanServer = null;
+		for (OperationStats operationStats : getAllStats()) {
+			try {
+				final ObjectName name = objectNameOf(operationStats);
+				if (server.isRegistered(name)) server.unregisterMBean(name);
+			} catch (JMException e) {
+				LOG.warn(String.format("[metrics]cannot unregister MBean of %s", operationStats));
+			}
+		}
+	}
+
+	/**
+	 * Clear all stats
+	 */
+	public synchronized void reset() {
+		final MBeanServer server = mBeanServer;
+		unregisterMBeans();
+		stats.clear();
+		if (server != null) registerMBeans(server);
+	}
+
+	private static void register(MBeanServer server, OperationStats operationStats) {
+		try {
+			final ObjectName name = objectNameOf(operationStats);
+			if (!server.isRegistered(name)) server.registerMBean(operationStats, name);
+		} catch (JMException e) {
+			LOG.warn(String.format("[metrics]cannot register MBean of %s", operationStats));
+			LOG.warn(Throwables.getStackTraceAsString(e));
+		}
+	}
+
+	static ObjectName objectNameOf(OperationStats operationStats) throws JMException {
+		return new ObjectName(JMX_DOMAIN + ":type=RepositoryMetrics,table=" + ObjectName.quote(operationStats.getTable())
+				+ ",operation=" + ObjectName.quote(operationStats.getOperation()));
+	}
+}
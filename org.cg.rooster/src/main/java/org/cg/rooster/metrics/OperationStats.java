@@ -0,0 +1,128 @@
+package org.cg.rooster.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The measurements of an operation on a table: a latency histogram, the number of calls, errors, rows and bound bytes.
+ * For the batches of a batch save the rows of a call are the batch size.
+ *
+ * @author WZ
+ *
+ */
+public class OperationStats implements OperationStatsMBean {
+
+	private final static double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final String table;
+	private final String operation;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final AtomicLong errorCount = new AtomicLong();
+	private final AtomicLong rowCount = new AtomicLong();
+	private final AtomicLong maxRows = new AtomicLong();
+	private final AtomicLong boundBytes = new AtomicLong();
+
+	public OperationStats(String table, String operation) {
+		this.table = table;
+		this.operation = operation;
+	}
+
+	/**
+	 * Record a call
+	 *
+	 * @param elapsedNanos the time taken
+	 * @param rows the number of rows read or written
+	 * @param bytes the estimated size of the bound parameters
+	 * @param failed true if the call failed
+	 */
+	public void record(long elapsedNanos, long rows, long bytes, boolean failed) {
+		latency.record(elapsedNanos);
+		if (failed) errorCount.incrementAndGet();
+		if (rows > 0) {
+			rowCount.addAndGet(rows);
+			long current;
+			while (rows > (current = maxRows.get()) && !maxRows.compareAndSet(current, rows)) {
+				//retry
+			}
+		}
+		if (bytes > 0) boundBytes.addAndGet(bytes);
+	}
+
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	@Override
+	public String getTable() {
+		return table;
+	}
+
+	@Override
+	public String getOperation() {
+		return operation;
+	}
+
+	@Override
+	public long getCount() {
+		return latency.getCount();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	@Override
+	public long getRowCount() {
+		return rowCount.get();
+	}
+
+	@Override
+	public long getMaxRows() {
+		return maxRows.get();
+	}
+
+	@Override
+	public long getBoundBytes() {
+		return boundBytes.get();
+	}
+
+	@Override
+	public double getMeanMillis() {
+		return latency.getMean() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP50Millis() {
+		return latency.getPercentile(50) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP95Millis() {
+		return latency.getPercentile(95) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP99Millis() {
+		return latency.getPercentile(99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP999Millis() {
+		return latency.getPercentile(99.9) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return latency.getMax() / NANOS_PER_MILLI;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("OperationStats [table=%s, operation=%s, count=%s, errors=%s, rows=%s, p50=%.3fms, p99=%.3fms, max=%.3fms]",
+				table, operation, getCount(), getErrorCount(), getRowCount(), getP50Millis(), getP99Millis(), getMaxMillis());
+	}
+}
@@ -0,0 +1,36 @@
+package org.cg.rooster.metrics;
+
+/**
+ * JMX view of the {@link OperationStats} of an operation on a table, latencies are in milliseconds
+ *
+ * @author WZ
+ *
+ */
+public interface OperationStatsMBean {
+
+	String getTable();
+
+	String getOperation();
+
+	long getCount();
+
+	long getErrorCount();
+
+	long getRowCount();
+
+	long getMaxRows();
+
+	long getBoundBytes();
+
+	double getMeanMillis();
+
+	double getP50Millis();
+
+	double getP95Millis();
+
+	double getP99Millis();
+
+	double getP999Millis();
+
+	double getMaxMillis();
+}
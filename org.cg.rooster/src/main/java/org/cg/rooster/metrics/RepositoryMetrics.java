@@ -0,0 +1,54 @@
+package org.cg.rooster.metrics;
+
+/**
+ * Receives the measurements of repository operations. Implementations are called on the hot path
+ * of every operation, from many threads, so they must be thread safe and must not block.
+ *
+ * @author WZ
+ *
+ */
+public interface RepositoryMetrics {
+
+	/**
+	 * Discards all measurements
+	 */
+	public final static RepositoryMetrics NONE = new RepositoryMetrics() {
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+		@Override
+		public void recordOperation(String table, String operation, long elapsedNanos, long rows, long boundBytes, boolean failed) {
+		}
+		@Override
+		public void recordBatch(String table, int batchSize, long elapsedNanos, boolean failed) {
+		}
+	};
+
+	/**
+	 * @return false if the measurements are discarded, so the caller can skip estimating them
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Record a completed repository operation
+	 *
+	 * @param table the table name
+	 * @param operation the operation, e.g. get, find or save
+	 * @param elapsedNanos the time taken by the operation
+	 * @param rows the number of rows read or written
+	 * @param boundBytes the estimated size of the parameters bound to the statements, or 0 if unknown
+	 * @param failed true if the operation threw or reported a failure
+	 */
+	void recordOperation(String table, String operation, long elapsedNanos, long rows, long boundBytes, boolean failed);
+
+	/**
+	 * Record a JDBC batch executed by a batch save
+	 *
+	 * @param table the table name
+	 * @param batchSize the number of rows in the batch
+	 * @param elapsedNanos the time taken to execute and commit the batch
+	 * @param failed true if the batch failed
+	 */
+	void recordBatch(String table, int batchSize, long elapsedNanos, boolean failed);
+}
@@ -1,13 +1,14 @@
 package org.cg.rooster.phoenix;
 
 import org.cg.rooster.core.ConditionOperator;
+import org.cg.rooster.core.MultiValuedConditionOperator;
 
 /**
  * A Enum implements {@link ConditionOperator} that is supported by Apache Phoenix
  * @author WZ
  *
  */
-public enum PhoenixConditionOperator implements ConditionOperator {
+public enum PhoenixConditionOperator implements MultiValuedConditionOperator {
 	
 	EQUAL ("="),
     LESS ("<"),
@@ -20,13 +21,23 @@ public enum PhoenixConditionOperator implements ConditionOperator {
     IS_NOT_NULL ("IS NOT NULL"),
     IS_NULL ("IS NULL"),
     AND("AND"),
-    OR("OR");
-    // BETWEEN_AND ("BETWEEN;AND"); not supported for now can be constructed using above operators
+    OR("OR"),
+    IN ("IN", Operand.LIST),
+    NOT_IN ("NOT IN", Operand.LIST),
+    BETWEEN ("BETWEEN", Operand.RANGE),
+    NOT_BETWEEN ("NOT BETWEEN", Operand.RANGE),
+    EQUAL_ANY ("= ANY", Operand.ARRAY);
 	
     private final String operator;       
+    private final Operand operand;
 
     private PhoenixConditionOperator(String s) {
-    	operator = s;
+    	this(s, Operand.SINGLE);
+    }
+
+    private PhoenixConditionOperator(String s, Operand operand) {
+    	this.operator = s;
+    	this.operand = operand;
     }
 
     public boolean equals(String operator){
@@ -41,4 +52,9 @@ public enum PhoenixConditionOperator implements ConditionOperator {
 	public String getOperatorSQLStr() {
 		return operator;
 	}
+
+	@Override
+	public Operand getOperand() {
+		return operand;
+	}
 }
@@ -5,6 +5,7 @@ import java.io.Serializable;
 import javax.sql.DataSource;
 
 import org.cg.rooster.JdbcDataRepository;
+import org.cg.rooster.core.AdaptiveBatchSizer;
 import org.cg.rooster.core.RowColumnMapper;
 import org.cg.rooster.core.TableDefinition;
 import org.springframework.data.domain.Persistable;
@@ -29,6 +30,7 @@ public class PhoenixJdbcDataRepository <T extends Persistable<ID>, ID extends Se
 			  rowColumnMapper, 
 			  dataSource,
 			  PhoenixSqlGrammar.getInstance());
+		boundBatchSize(dataSource);
 	}
 	
 	/**
@@ -43,5 +45,18 @@ public class PhoenixJdbcDataRepository <T extends Persistable<ID>, ID extends Se
 			  dataSource,
 			  PhoenixSqlGrammar.getInstance(),
 			  lazyinit);
+		boundBatchSize(dataSource);
+	}
+	
+	/**
+	 * Keep batch saves within the upsert batch size of the data source
+	 */
+	private void boundBatchSize(DataSource dataSource) {
+		if (dataSource instanceof PhoenixDataSource) {
+			Integer upsertBatchSize = ((PhoenixDataSource) dataSource).getUpsertBatchSize();
+			if (upsertBatchSize != null) {
+				setBatchSizer(new AdaptiveBatchSizer(upsertBatchSize));
+			}
+		}
 	}
 }
@@ -1,21 +1,28 @@
 package org.cg.rooster.phoenix;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.cg.rooster.core.Aggregate;
 import org.cg.rooster.core.Condition;
+import org.cg.rooster.core.Hint;
 import org.cg.rooster.core.Query;
 import org.cg.rooster.core.SqlGrammar;
+import org.cg.rooster.core.SqlShape;
+import org.cg.rooster.core.SqlShapeCache;
 import org.cg.rooster.core.TableDefinition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.domain.Sort.Order;
 
 import com.google.common.base.Preconditions;
 
 /**
- * A {@link SqlGrammar} implementation to support Apache Phoenix specific SQL 
+ * A {@link SqlGrammar} implementation to support Apache Phoenix specific SQL, rendering optimizer hints
  * @author WZ
  *
  */
@@ -28,6 +35,7 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 	public final static String WHERE = " WHERE ";
 	public final static String AND = " AND ";
 	public final static String OR = " OR ";
+	public final static String IN = " IN ";
 	public final static String DELETE = "DELETE ";
 	public final static String VALUES = " VALUES ";
 	public final static String UPSERT = "UPSERT INTO ";
@@ -36,9 +44,19 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 	public final static String PLACEHOLDER = "?";
 	public final static String PLACEHOLDER_COMMA = "?, ";
 	public final static String EQUAL_PLACEHOLDER = " = ?";
+	public final static String GREATER = " > ";
+	public final static String LESS = " < ";
 	public final static String IS_NULL = " IS NULL";
 	public final static String ORDER_BY = " ORDER BY ";
 	public final static String LIMIT = " LIMIT ";
+	public final static String GROUP_BY = " GROUP BY ";
+	public final static String HAVING = " HAVING ";
+	public final static String AS = " AS ";
+	
+	public final static String SYSTEM_STATS = "SYSTEM.STATS";
+	public final static String PHYSICAL_NAME = "PHYSICAL_NAME";
+	public final static String COLUMN_FAMILY = "COLUMN_FAMILY";
+	public final static String GUIDE_POSTS_ROW_COUNT = "GUIDE_POSTS_ROW_COUNT";
 	
 	public final static String INTEGER = "INTEGER";
 	public final static String BIGINT = "BIGINT";
@@ -59,7 +77,9 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 	
 	private static PhoenixSqlGrammar singleton = new PhoenixSqlGrammar( );
 
-	private PhoenixSqlGrammar() { 
+	private final SqlShapeCache shapeCache = new SqlShapeCache();
+
+	protected PhoenixSqlGrammar() { 
 
 	}
 
@@ -71,6 +91,14 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 		return singleton;
 	}
 	
+	/**
+	 * Get the cache of generated statements, e.g. to read its hit/miss counters
+	 * @return the statement cache
+	 */
+	public SqlShapeCache getShapeCache() {
+		return shapeCache;
+	}
+	
 	@Override
 	public String getParamDataType (Object arg) {
 		if (arg instanceof Integer) {
@@ -114,8 +142,76 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 	@Override
 	public String count(TableDefinition table) {
 		Preconditions.checkNotNull(table, "table must be provided");
+		return countHead(table, null, null);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String countByCondition(TableDefinition table, final List<Condition> conditions, 
+			final Map<String, String> dynamicColumnsType) {
+		return countByCondition(table, conditions, dynamicColumnsType, null);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String countByCondition(TableDefinition table, final List<Condition> conditions, 
+			final Map<String, String> dynamicColumnsType, final List<Hint> hints) {
+		Preconditions.checkNotNull(table, "table must be provided");
+		Preconditions.checkNotNull(conditions, "conditions must be provided");
+		
+		final String head = countHead(table, dynamicColumnsType, hints);
+		if (conditions.isEmpty()) {
+			return head;
+		}
+		return head + whereByConditionClause(table, conditions);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Sums the row counts of the guideposts in SYSTEM.STATS, which are collected by UPDATE STATISTICS or major compaction.
+	 */
+	@Override
+	public String approximateCount(TableDefinition table) {
+		Preconditions.checkNotNull(table, "table must be provided");
 		
-		return SELECT + COUNT + FROM + table.getTableName();
+		final SqlShape shape = SqlShape.probe(SqlShape.Kind.APPROXIMATE_COUNT, table);
+		final String cached = shapeCache.get(shape);
+		if (cached != null) return cached;
+		return shapeCache.put(shape, SELECT + "SUM(" + GUIDE_POSTS_ROW_COUNT + ") " + FROM + SYSTEM_STATS 
+				+ WHERE + PHYSICAL_NAME + " = '" + physicalName(table.getTableName()) + "'" + GROUP_BY + COLUMN_FAMILY);
+	}
+	
+	private String countHead (TableDefinition table, final Map<String, String> dynamicColumnsType, final List<Hint> hints) {
+		final SqlShape shape = SqlShape.probe(SqlShape.Kind.COUNT, table).dynamicColumnTypes(dynamicColumnsType).hints(hints);
+		final String cached = shapeCache.get(shape);
+		if (cached != null) return cached;
+		
+		String query = SELECT + hintComment(hints) + COUNT + FROM + table.getTableName();
+		if (dynamicColumnsType!=null && !dynamicColumnsType.isEmpty()) {
+			query = query + dynamicColumnsList(dynamicColumnsType);
+		}
+		return shapeCache.put(shape, query);
+	}
+	
+	/**
+	 * The name Phoenix stores a table under: unquoted identifiers are upper case, quoted ones keep their case
+	 */
+	protected static String physicalName (String tableName) {
+		final StringBuilder sb = new StringBuilder();
+		for (String part : tableName.split("\\.")) {
+			if (sb.length() > 0) sb.append('.');
+			if (part.length() > 1 && part.startsWith("\"") && part.endsWith("\"")) {
+				sb.append(part.substring(1, part.length() - 1));
+			} else {
+				sb.append(part.toUpperCase());
+			}
+		}
+		return sb.toString().replace("'", "''");
 	}
 
 	/**
@@ -123,10 +219,43 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 	 */
 	@Override
 	public String delete (TableDefinition table, int idSize, Object[] flatIds) {
+		return delete(table, idSize, flatIds, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String delete (TableDefinition table, int idSize, Object[] flatIds, final List<Hint> hints) {
 		Preconditions.checkNotNull(table, "table must be provided");
+		checkIds(table, idSize, flatIds);
+		
+		final SqlShape shape = SqlShape.probe(SqlShape.Kind.DELETE, table).ids(idSize, flatIds).hints(hints);
+		final String cached = shapeCache.get(shape);
+		if (cached != null) return cached;
 		
-		String query = DELETE + FROM + table.getTableName();
-		return query + whereByIdsClause(table, idSize, flatIds);
+		String query = DELETE + hintComment(hints) + FROM + table.getTableName();
+		return shapeCache.put(shape, query + whereByIdsClause(table, idSize, flatIds));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String deleteByCondition (TableDefinition table, final List<Condition> conditions) {
+		return deleteByCondition(table, conditions, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String deleteByCondition (TableDefinition table, final List<Condition> conditions, final List<Hint> hints) {
+		Preconditions.checkNotNull(table, "table must be provided");
+		Preconditions.checkArgument(conditions != null && !conditions.isEmpty(), "conditions must be provided");
+		
+		return new StringBuilder(DELETE).append(hintComment(hints)).append(FROM).append(table.getTableName())
+				.append(whereByConditionClause(table, conditions)).toString();
 	}
 
 	/**
@@ -136,16 +265,49 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 	public String selectById (TableDefinition table, Sort sort, long limit, int idSize, Object[] flatIds,
 			final Map<String, String> dynamicColumnsType, 
 			final List<String> columnSelectionList) {
+		return selectById(table, sort, limit, idSize, flatIds, dynamicColumnsType, columnSelectionList, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String selectById (TableDefinition table, Sort sort, long limit, int idSize, Object[] flatIds,
+			final Map<String, String> dynamicColumnsType, 
+			final List<String> columnSelectionList, 
+			final List<Hint> hints) {
 		Preconditions.checkNotNull(table, "table must be provided");
+		checkIds(table, idSize, flatIds);
+		
+		final SqlShape shape = SqlShape.probe(SqlShape.Kind.SELECT_BY_ID, table)
+				.sort(sort)
+				.limit(limit)
+				.ids(idSize, flatIds)
+				.dynamicColumnTypes(dynamicColumnsType)
+				.selection(columnSelectionList)
+				.hints(hints);
+		final String cached = shapeCache.get(shape);
+		if (cached != null) return cached;
 		
-		String query = SELECT + getColumnSelection(columnSelectionList) + FROM + table.getTableName();
+		String query = SELECT + hintComment(hints) + getColumnSelection(columnSelectionList) + FROM + table.getTableName();
 		if (dynamicColumnsType!=null && !dynamicColumnsType.isEmpty()) {
 			query = query + dynamicColumnsList(dynamicColumnsType);
 		}
 		if (idSize > 0) {
 			query = query + whereByIdsClause(table, idSize, flatIds);
 		}
-		return query + orderByClause(sort) + limitClause(limit);
+		return shapeCache.put(shape, query + orderByClause(sort) + limitClause(limit));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String selectByCondition (TableDefinition table, Sort sort, long limit, 
+			final List<Condition> conditions,  
+			final Map<String, String> dynamicColumnsType, 
+			final List<String> columnSelectionList) {
+		return selectByCondition(table, sort, limit, conditions, dynamicColumnsType, columnSelectionList, null);
 	}
 	
 	/**
@@ -153,20 +315,111 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 	 */
 	@Override
 	public String selectByCondition (TableDefinition table, Sort sort, long limit, 
+			final List<Condition> conditions,  
+			final Map<String, String> dynamicColumnsType, 
+			final List<String> columnSelectionList, 
+			final List<Hint> hints) {
+		Preconditions.checkNotNull(table, "table must be provided");
+		Preconditions.checkNotNull(conditions, "conditions must be provided");
+		
+		//only the where clause depends on the condition values, the rest of the statement is cached
+		final String head = selectHead(table, dynamicColumnsType, columnSelectionList, hints);
+		final String tail = selectTail(table, sort, limit);
+		if (conditions.isEmpty()) {
+			return head + tail;
+		}
+		return new StringBuilder(head).append(whereByConditionClause(table, conditions)).append(tail).toString();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String selectByKeyset (TableDefinition table, Sort sort, long limit, boolean afterKey, 
 			final List<Condition> conditions,  
 			final Map<String, String> dynamicColumnsType, 
 			final List<String> columnSelectionList) {
+		return selectByKeyset(table, sort, limit, afterKey, conditions, dynamicColumnsType, columnSelectionList, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String selectByKeyset (TableDefinition table, Sort sort, long limit, boolean afterKey, 
+			final List<Condition> conditions,  
+			final Map<String, String> dynamicColumnsType, 
+			final List<String> columnSelectionList, 
+			final List<Hint> hints) {
 		Preconditions.checkNotNull(table, "table must be provided");
+		Preconditions.checkNotNull(sort, "sort must be provided");
 		Preconditions.checkNotNull(conditions, "conditions must be provided");
 		
-		String query = SELECT + getColumnSelection(columnSelectionList) + FROM + table.getTableName();
+		final StringBuilder sb = new StringBuilder(selectHead(table, dynamicColumnsType, columnSelectionList, hints));
+		if (!conditions.isEmpty()) {
+			sb.append(whereByConditionClause(table, conditions));
+		}
+		if (afterKey) {
+			sb.append(conditions.isEmpty() ? WHERE : AND).append(keysetPredicate(table, sort));
+		}
+		return sb.append(selectTail(table, sort, limit)).toString();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String selectByAggregate (TableDefinition table, final List<Aggregate> aggregates, final List<String> groupBy, 
+			final List<Condition> conditions, final List<Condition> having, Sort sort, long limit, 
+			final Map<String, String> dynamicColumnsType) {
+		return selectByAggregate(table, aggregates, groupBy, conditions, having, sort, limit, dynamicColumnsType, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String selectByAggregate (TableDefinition table, final List<Aggregate> aggregates, final List<String> groupBy, 
+			final List<Condition> conditions, final List<Condition> having, Sort sort, long limit, 
+			final Map<String, String> dynamicColumnsType, final List<Hint> hints) {
+		Preconditions.checkNotNull(table, "table must be provided");
+		Preconditions.checkArgument(aggregates != null && !aggregates.isEmpty(), "aggregates must be provided");
+		
+		//aggregate labels are resolved to their expressions in having and order by
+		final Map<String, String> expressions = new HashMap<String, String>();
+		final StringBuilder sb = new StringBuilder(SELECT).append(hintComment(hints));
+		if (groupBy != null) {
+			for (String column : groupBy) {
+				sb.append(column).append(COMMA);
+			}
+		}
+		for (int i = 0; i < aggregates.size(); i++) {
+			final Aggregate aggregate = aggregates.get(i);
+			if (i > 0) sb.append(COMMA);
+			sb.append(aggregate.getExpression());
+			if (aggregate.getAlias() != null) {
+				sb.append(AS).append(aggregate.getAlias());
+				expressions.put(aggregate.getAlias(), aggregate.getExpression());
+			}
+		}
+		sb.append(SPACE).append(FROM).append(table.getTableName());
 		if (dynamicColumnsType!=null && !dynamicColumnsType.isEmpty()) {
-			query = query + dynamicColumnsList(dynamicColumnsType);
+			sb.append(dynamicColumnsList(dynamicColumnsType));
+		}
+		if (conditions != null && !conditions.isEmpty()) {
+			sb.append(whereByConditionClause(table, conditions));
+		}
+		if (groupBy != null && !groupBy.isEmpty()) {
+			sb.append(GROUP_BY);
+			for (int i = 0; i < groupBy.size(); i++) {
+				if (i > 0) sb.append(COMMA);
+				sb.append(groupBy.get(i));
+			}
 		}
-		if (conditions.size() > 0) {
-			query = query + whereByConditionClause(table, conditions);
+		if (having != null && !having.isEmpty()) {
+			sb.append(conditionClause(HAVING, resolveLabels(having, expressions)));
 		}
-		return query + orderByClause(sort) + limitClause(limit);
+		return sb.append(orderByClause(resolveLabels(sort, expressions))).append(limitClause(limit)).toString();
 	}
 
 	/**
@@ -178,7 +431,13 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 		Preconditions.checkNotNull(columnMapper, "columnMapper must be provided");
 		Preconditions.checkNotNull(dynamicColumnMapper, "dynamicColumnMapper must be provided");
 		
-		final StringBuilder sb = new StringBuilder(UPSERT + table.getTableName() + " (");
+		final SqlShape shape = SqlShape.probe(SqlShape.Kind.SAVE, table)
+				.columns(columnMapper.keySet())
+				.dynamicColumnValues(dynamicColumnMapper, this);
+		final String cached = shapeCache.get(shape);
+		if (cached != null) return cached;
+		
+		final StringBuilder sb = new StringBuilder(upsertInto() + table.getTableName() + " (");
 		
 		Iterator<Entry<String, Object>> iter = columnMapper.entrySet().iterator();
 		Entry<String, Object> e;
@@ -210,7 +469,77 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 				sb.append(COMMA);
 			}
 		}
-		return sb.append(")").toString();
+		return shapeCache.put(shape, sb.append(")").toString());
+	}
+	
+	/**
+	 * The comment carrying the optimizer hints, placed after the leading keyword of a statement
+	 * @param hints the hints, may be null
+	 * @return the comment followed by a space, or an empty string
+	 */
+	protected String hintComment (final List<Hint> hints) {
+		return Hint.comment(hints);
+	}
+	
+	/**
+	 * The statement keyword that inserts a row or replaces the row with the same primary key
+	 * @return UPSERT INTO
+	 */
+	protected String upsertInto () {
+		return UPSERT;
+	}
+	
+	private String selectHead (TableDefinition table, final Map<String, String> dynamicColumnsType, final List<String> columnSelectionList, 
+			final List<Hint> hints) {
+		final SqlShape shape = SqlShape.probe(SqlShape.Kind.SELECT_HEAD, table)
+				.dynamicColumnTypes(dynamicColumnsType)
+				.selection(columnSelectionList)
+				.hints(hints);
+		final String cached = shapeCache.get(shape);
+		if (cached != null) return cached;
+		
+		String query = SELECT + hintComment(hints) + getColumnSelection(columnSelectionList) + FROM + table.getTableName();
+		if (dynamicColumnsType!=null && !dynamicColumnsType.isEmpty()) {
+			query = query + dynamicColumnsList(dynamicColumnsType);
+		}
+		return shapeCache.put(shape, query);
+	}
+	
+	private String selectTail (TableDefinition table, Sort sort, long limit) {
+		final SqlShape shape = SqlShape.probe(SqlShape.Kind.SELECT_TAIL, table)
+				.sort(sort)
+				.limit(limit);
+		final String cached = shapeCache.get(shape);
+		if (cached != null) return cached;
+		return shapeCache.put(shape, orderByClause(sort) + limitClause(limit));
+	}
+	
+	/**
+	 * Row value constructor comparison against the primary key, e.g. (a, b) > (?, ?)
+	 */
+	private String keysetPredicate (TableDefinition table, Sort sort) {
+		final SqlShape shape = SqlShape.probe(SqlShape.Kind.KEYSET, table).sort(sort);
+		final String cached = shapeCache.get(shape);
+		if (cached != null) return cached;
+		
+		final List<String> idComponents = table.getPrimaryId();
+		final StringBuilder sb = new StringBuilder("(");
+		for (int i = 0; i < idComponents.size(); i++) {
+			if (i > 0) sb.append(COMMA);
+			sb.append(idComponents.get(i));
+		}
+		sb.append(")");
+		sb.append(sort.iterator().next().getDirection() == Direction.DESC ? LESS : GREATER);
+		sb.append("(");
+		for (int i = 0; i < idComponents.size(); i++) {
+			if (i > 0) sb.append(COMMA);
+			sb.append(PLACEHOLDER);
+		}
+		return shapeCache.put(shape, sb.append(")").toString());
+	}
+	
+	private static void checkIds (TableDefinition table, int idSize, Object[] flatIds) {
+		if (idSize>0) Preconditions.checkArgument(flatIds!=null && table.getPrimaryId().size()==flatIds.length/idSize);
 	}
 	
 	private static String getColumnSelection (List<String> columnSelectionList) {
@@ -233,6 +562,8 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 	}
 	
 	private static String limitClause(long limit) {
+		if (limit==Query.NO_LIMIT) return "";
+		//other negative limits stand for the default
 		if (limit<0) return (LIMIT + Query.DEFAULT_QUERY_LIMIT);
 		return LIMIT + limit;
 	}
@@ -255,7 +586,10 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 	
 	private static String whereByIdsClause(TableDefinition table, int idSize, Object[] flatIds) {
 		final List<String> idComponents = table.getPrimaryId();
-		if (idSize>0) Preconditions.checkArgument(flatIds!=null && idComponents.size()==flatIds.length/idSize);
+		checkIds(table, idSize, flatIds);
+		if (idSize > 1 && !hasNull(flatIds)) {
+			return whereByIdListClause(table, idSize);
+		}
 		final StringBuilder sb = new StringBuilder(WHERE);
 
 		for (int i = 0, j = 0; i < idSize; i++) {
@@ -280,8 +614,53 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 		return sb.toString();
 	}
 	
+	/**
+	 * Row value constructor IN list, e.g. (a, b) IN ((?, ?), (?, ?)), which Apache Phoenix can turn into a skip scan
+	 */
+	private static String whereByIdListClause(TableDefinition table, int idSize) {
+		final List<String> idComponents = table.getPrimaryId();
+		final int idComponentSize = idComponents.size();
+		final StringBuilder sb = new StringBuilder(WHERE.length() + idSize * (idComponentSize * 3 + 4));
+		sb.append(WHERE);
+		if (idComponentSize == 1) {
+			sb.append(idComponents.get(0)).append(IN).append("(");
+			for (int i = 0; i < idSize; i++) {
+				if (i > 0) sb.append(COMMA);
+				sb.append(PLACEHOLDER);
+			}
+			return sb.append(")").toString();
+		}
+		sb.append("(");
+		for (int i = 0; i < idComponentSize; i++) {
+			if (i > 0) sb.append(COMMA);
+			sb.append(idComponents.get(i));
+		}
+		sb.append(")").append(IN).append("(");
+		for (int i = 0; i < idSize; i++) {
+			if (i > 0) sb.append(COMMA);
+			sb.append("(");
+			for (int j = 0; j < idComponentSize; j++) {
+				if (j > 0) sb.append(COMMA);
+				sb.append(PLACEHOLDER);
+			}
+			sb.append(")");
+		}
+		return sb.append(")").toString();
+	}
+	
+	private static boolean hasNull(Object[] values) {
+		for (Object value : values) {
+			if (value == null) return true;
+		}
+		return false;
+	}
+	
 	private static String whereByConditionClause(TableDefinition table, final List<Condition> conditions) {
-		final StringBuilder sb = new StringBuilder(WHERE);
+		return conditionClause(WHERE, conditions);
+	}
+	
+	private static String conditionClause(String keyword, final List<Condition> conditions) {
+		final StringBuilder sb = new StringBuilder(keyword);
 
 		for (int i = 0; i < conditions.size(); i++) {
 			if (i > 0) sb.append(AND);
@@ -292,6 +671,35 @@ public class PhoenixSqlGrammar implements SqlGrammar {
 		return sb.toString();
 	}
 	
+	private static List<Condition> resolveLabels(final List<Condition> conditions, final Map<String, String> expressions) {
+		if (expressions.isEmpty()) return conditions;
+		final List<Condition> resolved = new ArrayList<Condition>(conditions.size());
+		for (Condition condition : conditions) {
+			resolved.add(resolveLabels(condition, expressions));
+		}
+		return resolved;
+	}
+	
+	private static Condition resolveLabels(final Condition condition, final Map<String, String> expressions) {
+		final Object lhs = condition.getLhsOperand();
+		if (lhs instanceof Condition) {
+			return new Condition(resolveLabels((Condition) lhs, expressions), condition.getOperator(), 
+					resolveLabels((Condition) condition.getRhsOperand(), expressions));
+		}
+		final String expression = expressions.get(lhs);
+		return expression == null ? condition : new Condition(expression, condition.getOperator(), condition.getRhsOperand());
+	}
+	
+	private static Sort resolveLabels(final Sort sort, final Map<String, String> expressions) {
+		if (sort == null || expressions.isEmpty()) return sort;
+		final List<Order> orders = new ArrayList<Order>();
+		for (Order order : sort) {
+			final String expression = expressions.get(order.getProperty());
+			orders.add(expression == null ? order : new Order(order.getDirection(), expression));
+		}
+		return new Sort(orders);
+	}
+	
 	private static String dynamicColumnsList(final Map<String, String> dynamicColumnsType) {
 		final StringBuilder sb  = new StringBuilder("(");
 		
@@ -0,0 +1,240 @@
+package org.cg.rooster.phoenix;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.cg.rooster.core.PooledDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+/**
+ * A {@link PhoenixDataSource} that keeps a pool of physical connections instead of opening a new one
+ * through the DriverManager for every call. The Phoenix connection properties (AutoCommit, UpsertBatchSize, TenantId)
+ * are applied when a physical connection is opened, the same way as {@link PhoenixDataSource} does.
+ * The connections are pooled by a {@link PooledDataSource}, which pools the connections of other drivers as well.
+ *
+ * Closing a borrowed connection returns it to the pool. Uncommitted mutations are rolled back on return,
+ * matching what closing a Phoenix connection does.
+ *
+ * @author WZ
+ *
+ */
+public class PooledPhoenixDataSource extends PhoenixDataSource implements DisposableBean {
+
+	public static final int DEFAULT_MIN_SIZE = PooledDataSource.DEFAULT_MIN_SIZE;
+	public static final int DEFAULT_MAX_SIZE = PooledDataSource.DEFAULT_MAX_SIZE;
+	public static final long DEFAULT_MAX_IDLE_MILLIS = PooledDataSource.DEFAULT_MAX_IDLE_MILLIS;
+	public static final long DEFAULT_EVICTION_INTERVAL_MILLIS = PooledDataSource.DEFAULT_EVICTION_INTERVAL_MILLIS;
+	public static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = PooledDataSource.DEFAULT_ACQUIRE_TIMEOUT_MILLIS;
+	public static final int DEFAULT_VALIDATION_TIMEOUT_SECONDS = PooledDataSource.DEFAULT_VALIDATION_TIMEOUT_SECONDS;
+
+	//opens the physical connections through the DriverManager with the Phoenix connection properties
+	private final PooledDataSource pool = new PooledDataSource(new AbstractDataSource() {
+		@Override
+		public Connection getConnection() throws SQLException {
+			return PooledPhoenixDataSource.super.getConnection();
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			return PooledPhoenixDataSource.super.getConnection(username, password);
+		}
+	});
+
+	public PooledPhoenixDataSource() {
+
+	}
+
+	/**
+	 *
+	 * @param phoenixDriverClassName The JDBC driver class name
+	 * @param phoenixConnectionUrl The connection url
+	 * @param autocommit auto commit or not
+	 */
+	public PooledPhoenixDataSource(
+			String phoenixDriverClassName,
+			String phoenixConnectionUrl,
+			Boolean autocommit) {
+		super(phoenixDriverClassName, phoenixConnectionUrl, autocommit);
+	}
+
+	/**
+	 *
+	 * @param phoenixDriverClassName The JDBC driver class name
+	 * @param phoenixConnectionUrl The connection url
+	 * @param autocommit Disable auto commit if you want batch update
+	 * @param upsertBatchSize Only used when autoCommit is true
+	 * @param tenantId The tenant Id Note: DDL property has to be enabled: http://phoenix.apache.org/multi-tenancy.html
+	 * @param minSize The number of connections kept open when idle
+	 * @param maxSize The maximum number of connections open at the same time
+	 */
+	public PooledPhoenixDataSource(
+			String phoenixDriverClassName,
+			String phoenixConnectionUrl,
+			Boolean autocommit,
+			Integer upsertBatchSize,
+			String tenantId,
+			int minSize,
+			int maxSize) {
+		super(phoenixDriverClassName, phoenixConnectionUrl, autocommit, upsertBatchSize, tenantId);
+		setMaxSize(maxSize);
+		setMinSize(minSize);
+	}
+
+	/**
+	 * Borrow a connection from the pool, opening a new one if none is idle and the pool is not full
+	 */
+	@Override
+	public Connection getConnection() throws SQLException {
+		return pool.getConnection();
+	}
+
+	/**
+	 * Open the minimum number of connections up front and start the idle eviction
+	 *
+	 * @throws SQLException if a connection cannot be opened
+	 */
+	public void init() throws SQLException {
+		pool.init();
+	}
+
+	/**
+	 * Close all idle connections and stop the eviction. Connections still borrowed are closed when returned.
+	 */
+	public void close() {
+		pool.close();
+	}
+
+	@Override
+	public void destroy() {
+		close();
+	}
+
+	public int getMinSize() {
+		return pool.getMinSize();
+	}
+
+	public void setMinSize(int minSize) {
+		pool.setMinSize(minSize);
+	}
+
+	public int getMaxSize() {
+		return pool.getMaxSize();
+	}
+
+	public void setMaxSize(int maxSize) {
+		pool.setMaxSize(maxSize);
+	}
+
+	public long getMaxIdleMillis() {
+		return pool.getMaxIdleMillis();
+	}
+
+	public void setMaxIdleMillis(long maxIdleMillis) {
+		pool.setMaxIdleMillis(maxIdleMillis);
+	}
+
+	public long getEvictionIntervalMillis() {
+		return pool.getEvictionIntervalMillis();
+	}
+
+	public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+		pool.setEvictionIntervalMillis(evictionIntervalMillis);
+	}
+
+	public long getAcquireTimeoutMillis() {
+		return pool.getAcquireTimeoutMillis();
+	}
+
+	public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+		pool.setAcquireTimeoutMillis(acquireTimeoutMillis);
+	}
+
+	public int getValidationTimeoutSeconds() {
+		return pool.getValidationTimeoutSeconds();
+	}
+
+	public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+		pool.setValidationTimeoutSeconds(validationTimeoutSeconds);
+	}
+
+	public boolean isValidateOnBorrow() {
+		return pool.isValidateOnBorrow();
+	}
+
+	public void setValidateOnBorrow(boolean validateOnBorrow) {
+		pool.setValidateOnBorrow(validateOnBorrow);
+	}
+
+	/**
+	 * @return the number of open physical connections, idle or borrowed
+	 */
+	public int getTotalCount() {
+		return pool.getTotalCount();
+	}
+
+	/**
+	 * @return the number of idle connections
+	 */
+	public int getIdleCount() {
+		return pool.getIdleCount();
+	}
+
+	/**
+	 * @return the number of borrowed connections
+	 */
+	public int getActiveCount() {
+		return pool.getActiveCount();
+	}
+
+	/**
+	 * @return the number of successful acquisitions
+	 */
+	public long getAcquisitionCount() {
+		return pool.getAcquisitionCount();
+	}
+
+	/**
+	 * @return the total time spent acquiring connections, in nanoseconds
+	 */
+	public long getAcquisitionTimeNanos() {
+		return pool.getAcquisitionTimeNanos();
+	}
+
+	/**
+	 * @return the longest time spent acquiring a connection, in nanoseconds
+	 */
+	public long getMaxAcquisitionTimeNanos() {
+		return pool.getMaxAcquisitionTimeNanos();
+	}
+
+	/**
+	 * @return the mean time spent acquiring a connection, in milliseconds
+	 */
+	public double getMeanAcquisitionTimeMillis() {
+		return pool.getMeanAcquisitionTimeMillis();
+	}
+
+	public long getAcquisitionTimeoutCount() {
+		return pool.getAcquisitionTimeoutCount();
+	}
+
+	public long getValidationFailureCount() {
+		return pool.getValidationFailureCount();
+	}
+
+	public long getCreatedCount() {
+		return pool.getCreatedCount();
+	}
+
+	public long getEvictedCount() {
+		return pool.getEvictedCount();
+	}
+
+	@Override
+	public String toString() {
+		return "PooledPhoenixDataSource [url=" + phoenixConnectionUrl + ", total=" + getTotalCount()
+				+ ", idle=" + getIdleCount() + ", acquisitions=" + getAcquisitionCount()
+				+ ", meanAcquisitionMs=" + getMeanAcquisitionTimeMillis() + "]";
+	}
+}
@@ -0,0 +1,378 @@
+package org.cg.rooster.h2;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.cg.rooster.AsyncJdbcDataRepository;
+import org.cg.rooster.core.AdaptiveBatchSizer;
+import org.cg.rooster.core.BatchSaveReport;
+import org.cg.rooster.core.KeyRange;
+import org.cg.rooster.core.KeysetPageable;
+import org.cg.rooster.core.LocalEntityCache;
+import org.cg.rooster.core.PooledDataSource;
+import org.cg.rooster.core.Query;
+import org.cg.rooster.core.QueryBuilder;
+import org.cg.rooster.core.RowColumnMapper;
+import org.cg.rooster.core.TableDefinition;
+import org.cg.rooster.phoenix.Event;
+import org.cg.rooster.phoenix.EventRowColumnMapper;
+import org.cg.rooster.phoenix.Events;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Behavior of {@link H2JdbcDataRepository} against an in-memory H2 database, runs without a cluster
+ * @author WZ
+ *
+ */
+public class TestH2JdbcDataRepository {
+
+	private final static long BASE_TIME = 1450000000000L;
+	private final static TableDefinition tableDef = Events.TABLE;
+	private final static RowColumnMapper<Event> BY_NAME_MAPPER = Events.BY_NAME_MAPPER;
+
+	private static PooledDataSource dataSource;
+	private static H2JdbcDataRepository<Event, Object[]> dataRepository;
+	private static H2JdbcDataRepository<Event, Object[]> byNameRepository;
+
+	@BeforeClass
+	public static void setUpClass() {
+		dataSource = new PooledDataSource("org.h2.Driver", "jdbc:h2:mem:repository;DB_CLOSE_DELAY=-1", 1, 8);
+		dataRepository = new H2JdbcDataRepository<Event, Object[]>(dataSource, tableDef, EventRowColumnMapper.INSTANCE);
+		byNameRepository = new H2JdbcDataRepository<Event, Object[]>(dataSource, tableDef, BY_NAME_MAPPER);
+		dataRepository.getJdbcTemplate().execute(Events.CREATE_TABLE);
+		dataRepository.setCallLogging(false);
+		byNameRepository.setCallLogging(false);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (dataRepository != null) dataRepository.getJdbcTemplate().execute("DROP TABLE IF EXISTS Event");
+		if (dataSource != null) dataSource.close();
+	}
+
+	@Before
+	public void setUp() {
+		dataRepository.getJdbcTemplate().execute("DELETE FROM Event");
+	}
+
+	@Test
+	public void testFindByPageSelectsKey() {
+		dataRepository.save(genEvents(0, 25));
+		Query query = QueryBuilder.newBuilder().columnSelection("name").build();
+		Set<String> seen = new HashSet<String>();
+		Pageable pageable = new KeysetPageable(10);
+		int slices = 0;
+		while (pageable != null) {
+			Slice<Event> slice = byNameRepository.find(query, pageable);
+			for (Event e : slice) {
+				Assert.assertNotNull(e.getName());
+				Assert.assertNull(e.getMessage());
+				Assert.assertTrue(seen.add(Arrays.toString(e.getId())));
+			}
+			pageable = slice.nextPageable();
+			slices++;
+		}
+		Assert.assertEquals(25, seen.size());
+		Assert.assertEquals(3, slices);
+	}
+
+	@Test
+	public void testFindNarrowSelectionByName() {
+		dataRepository.save(genEvents(0, 5));
+		//the mapper reads the key columns by name, which the selection leaves out
+		Query query = QueryBuilder.newBuilder().columnSelection("name").sort(new Sort(Direction.ASC, "name")).build();
+		List<Event> events = Lists.newArrayList(byNameRepository.find(query));
+		Assert.assertEquals(5, events.size());
+		Assert.assertEquals("event0", events.get(0).getName());
+		Assert.assertNull(events.get(0).getUserId());
+		Assert.assertEquals(0, events.get(0).getTenantId());
+	}
+
+	@Test
+	public void testGetAllWidensIds() {
+		dataRepository.save(genEvents(0, 10));
+		List<Object[]> ids = new ArrayList<Object[]>();
+		for (int row = 0; row < 10; row++) {
+			Event e = genEvent(row);
+			//a Long tenant id, the entity reads it back as an int
+			ids.add(new Object[] {(long) e.getTenantId(), e.getUserId(), e.getEventTime().getTime(), e.getReceiptTime().getTime()});
+		}
+		Map<Object[], Event> found = dataRepository.getAll(ids);
+		Assert.assertEquals(10, found.size());
+		Assert.assertEquals("event3", found.get(ids.get(3)).getName());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStreamRejectsUnorderedKeyRanges() {
+		Query query = QueryBuilder.newBuilder().sort(new Sort(Direction.DESC, "tid")).build();
+		dataRepository.stream(query, Arrays.asList(KeyRange.of("tid", 2), KeyRange.of("tid", 1)));
+	}
+
+	@Test
+	public void testFindByIdChunksMerged() {
+		H2JdbcDataRepository<Event, Object[]> chunked = new H2JdbcDataRepository<Event, Object[]>(dataSource, tableDef, BY_NAME_MAPPER);
+		chunked.setCallLogging(false);
+		chunked.setMultiGetChunkSize(4);
+		chunked.save(genEvents(0, 30));
+		List<Object[]> ids = new ArrayList<Object[]>();
+		for (int row = 29; row >= 0; row--) {
+			ids.add(genEvent(row).getId());
+		}
+		//sorted by a column the selection leaves out
+		Query query = QueryBuilder.newBuilder()
+				.columnSelection("tid", "uid", "event_time", "receipt_time", "name")
+				.sort(new Sort(Direction.DESC, "version").and(new Sort(Direction.ASC, "uid")))
+				.build();
+		List<Event> events = Lists.newArrayList(chunked.find(ids, query));
+		Assert.assertEquals(30, events.size());
+		for (int i = 1; i < events.size(); i++) {
+			Event previous = events.get(i - 1);
+			Event current = events.get(i);
+			Assert.assertTrue(previous.getVersion() > current.getVersion() || (previous.getVersion() == current.getVersion()
+					&& previous.getUserId().compareTo(current.getUserId()) < 0));
+			Assert.assertNull(current.getMessage());
+		}
+	}
+
+	@Test
+	public void testDeleteCountsChunks() {
+		dataRepository.save(genEvents(0, 8));
+		H2JdbcDataRepository<Event, Object[]> chunked = new H2JdbcDataRepository<Event, Object[]>(dataSource, tableDef, EventRowColumnMapper.INSTANCE);
+		chunked.setCallLogging(false);
+		chunked.setDeleteChunkSize(2);
+		List<Object[]> ids = new ArrayList<Object[]>();
+		for (Event event : genEvents(3, 10)) {
+			ids.add(event.getId());
+		}
+		Assert.assertEquals(5, chunked.delete(ids));
+		Assert.assertEquals(3, dataRepository.count());
+	}
+
+	@Test
+	public void testSaveReturnsSavedChunks() {
+		H2JdbcDataRepository<Event, Object[]> chunked = new H2JdbcDataRepository<Event, Object[]>(dataSource, tableDef, EventRowColumnMapper.INSTANCE);
+		chunked.setCallLogging(false);
+		chunked.setBatchSizer(new AdaptiveBatchSizer(5, 5, AdaptiveBatchSizer.DEFAULT_TARGET_LATENCY_MILLIS));
+		List<Event> events = genEvents(0, 20);
+		//the third chunk fails on a null key
+		events.get(12).setUserId(null);
+		List<Event> saved = Lists.newArrayList(chunked.save(events));
+		Assert.assertEquals(events.subList(0, 10), saved);
+		Assert.assertTrue(chunked.count() >= 10);
+	}
+
+	@Test
+	public void testSaveMoreShapesThanConnections() {
+		//null columns are left out of the statement, so the events map to four statement shapes
+		RowColumnMapper<Event> nonNullMapper = new RowColumnMapper<Event>() {
+			@Override
+			public Event mapRow(ResultSet rs, int rowNum) throws SQLException {
+				return BY_NAME_MAPPER.mapRow(rs, rowNum);
+			}
+
+			@Override
+			public LinkedHashMap<String, Object> mapColumns(Event t) {
+				LinkedHashMap<String, Object> columns = BY_NAME_MAPPER.mapColumns(t);
+				if (t.getName() == null) columns.remove("name");
+				if (t.getMessage() == null) columns.remove("message");
+				return columns;
+			}
+		};
+		PooledDataSource smallPool = new PooledDataSource("org.h2.Driver", "jdbc:h2:mem:repository;DB_CLOSE_DELAY=-1;AUTOCOMMIT=OFF", 0, 2);
+		smallPool.setAcquireTimeoutMillis(2000);
+		try {
+			H2JdbcDataRepository<Event, Object[]> shapes = new H2JdbcDataRepository<Event, Object[]>(smallPool, tableDef, nonNullMapper);
+			shapes.setCallLogging(false);
+			shapes.setBatchSizer(new AdaptiveBatchSizer(10, 10, AdaptiveBatchSizer.DEFAULT_TARGET_LATENCY_MILLIS));
+			List<Event> events = genEvents(0, 200);
+			for (int row = 0; row < events.size(); row++) {
+				if (row % 2 == 0) events.get(row).setName(null);
+				if (row % 4 < 2) events.get(row).setMessage(null);
+			}
+			BatchSaveReport report = shapes.saveBatch(events);
+			Assert.assertTrue(report.isSucceed());
+			Assert.assertEquals(4, report.getShapes().size());
+			Assert.assertEquals(200, report.getSavedCount());
+			Assert.assertEquals(0, smallPool.getActiveCount());
+			Assert.assertEquals(200, dataRepository.count());
+		} finally {
+			smallPool.close();
+		}
+	}
+
+	@Test
+	public void testAsyncCancelLeavesQueue() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		final CountDownLatch release = new CountDownLatch(1);
+		try {
+			AsyncJdbcDataRepository<Event, Object[]> async = new AsyncJdbcDataRepository<Event, Object[]>(dataRepository, executor);
+			//occupy the only thread
+			executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws InterruptedException {
+					return release.await(10, TimeUnit.SECONDS);
+				}
+			});
+			ListenableFuture<Long> cancelled = async.count(QueryBuilder.newBuilder().build());
+			ListenableFuture<Set<Object[]>> existing = async.existsAll(Collections.singletonList(genEvent(0).getId()));
+			Assert.assertEquals(2, async.getQueueDepth());
+			Assert.assertTrue(cancelled.cancel(false));
+			Assert.assertEquals(1, async.getQueueDepth());
+			release.countDown();
+			Assert.assertTrue(existing.get(10, TimeUnit.SECONDS).isEmpty());
+			Assert.assertEquals(0, async.getQueueDepth());
+			Assert.assertEquals(1, async.getCompletedCount());
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testWriteBehindFlushOutsideTransaction() {
+		final H2JdbcDataRepository<Event, Object[]> buffered = new H2JdbcDataRepository<Event, Object[]>(dataSource, tableDef, EventRowColumnMapper.INSTANCE);
+		buffered.setCallLogging(false);
+		buffered.enableWriteBehind(100, 100, TimeUnit.MINUTES.toMillis(1));
+		try {
+			buffered.save(genEvent(0));
+			Assert.assertEquals(1, buffered.getPendingWriteCount());
+			new TransactionTemplate(new DataSourceTransactionManager(dataSource)).execute(new TransactionCallbackWithoutResult() {
+				@Override
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					//flushes the pending write before writing directly in the transaction
+					buffered.save(genEvent(1));
+					status.setRollbackOnly();
+				}
+			});
+			Assert.assertEquals(0, buffered.getPendingWriteCount());
+			Assert.assertNotNull(dataRepository.get(genEvent(0).getId()));
+			Assert.assertNull(dataRepository.get(genEvent(1).getId()));
+		} finally {
+			buffered.disableWriteBehind();
+		}
+	}
+
+	@Test
+	public void testWriteBehindRetriesFailedWrites() {
+		TableDefinition retryTable = new TableDefinition("EventRetry", true, "tid", "uid", "event_time", "receipt_time");
+		H2JdbcDataRepository<Event, Object[]> buffered = new H2JdbcDataRepository<Event, Object[]>(dataSource, retryTable, BY_NAME_MAPPER);
+		buffered.setCallLogging(false);
+		buffered.enableWriteBehind(100, 100, TimeUnit.MINUTES.toMillis(1));
+		try {
+			buffered.save(genEvents(0, 3));
+			//the table does not exist yet
+			Assert.assertFalse(buffered.flush());
+			Assert.assertEquals(3, buffered.getPendingWriteCount());
+			buffered.getJdbcTemplate().execute("CREATE TABLE EventRetry (tid INTEGER NOT NULL, uid VARCHAR NOT NULL, "
+					+ "event_time BIGINT NOT NULL, receipt_time BIGINT NOT NULL, name VARCHAR, message VARCHAR, version INTEGER, "
+					+ "CONSTRAINT EventRetry_PK PRIMARY KEY (tid, uid, event_time, receipt_time))");
+
+			Assert.assertTrue(buffered.flush());
+			Assert.assertEquals(0, buffered.getPendingWriteCount());
+			Assert.assertEquals(0, buffered.getFailedWriteCount());
+			Assert.assertEquals(3, buffered.count());
+		} finally {
+			buffered.disableWriteBehind();
+			buffered.getJdbcTemplate().execute("DROP TABLE IF EXISTS EventRetry");
+		}
+	}
+
+	@Test
+	public void testCacheSkipsLookupRacingInvalidation() {
+		LocalEntityCache<Event, Object[]> cache = new LocalEntityCache<Event, Object[]>(tableDef, 100, TimeUnit.MINUTES.toMillis(1), true);
+		Object[] id = genEvent(0).getId();
+		long stamp = cache.stamp(id);
+		//a save invalidates the id while the lookup reads the old row
+		cache.invalidate(id);
+		cache.put(id, genEvent(0), stamp);
+		Assert.assertNull(cache.getIfPresent(id));
+
+		H2JdbcDataRepository<Event, Object[]> cached = new H2JdbcDataRepository<Event, Object[]>(dataSource, tableDef, EventRowColumnMapper.INSTANCE);
+		cached.setCallLogging(false);
+		cached.setEntityCache(cache);
+		Assert.assertNull(cached.get(id));
+		Assert.assertFalse(cache.getIfPresent(id).isPresent());
+		Event event = genEvent(0);
+		cached.save(event);
+		Assert.assertNull(cache.getIfPresent(id));
+		Assert.assertEquals("event0", cached.get(id).getName());
+		Assert.assertTrue(cache.getIfPresent(id).isPresent());
+	}
+
+	@Test
+	public void testCacheInTransaction() {
+		final LocalEntityCache<Event, Object[]> cache = new LocalEntityCache<Event, Object[]>(tableDef, 100, TimeUnit.MINUTES.toMillis(1), true);
+		final H2JdbcDataRepository<Event, Object[]> cached = new H2JdbcDataRepository<Event, Object[]>(dataSource, tableDef, EventRowColumnMapper.INSTANCE);
+		cached.setCallLogging(false);
+		cached.setEntityCache(cache);
+		final Object[] id = genEvent(0).getId();
+		cached.save(genEvent(0));
+		Assert.assertEquals("event0", cached.get(id).getName());
+		new TransactionTemplate(new DataSourceTransactionManager(dataSource)).execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				Event changed = genEvent(0);
+				changed.setName("changed");
+				cached.save(Arrays.asList(changed, genEvent(1)));
+				//the uncommitted row is read from the database and not cached
+				Assert.assertEquals("changed", cached.get(id).getName());
+				Assert.assertNull(cache.getIfPresent(id));
+				//a lookup outside the transaction caches the row committed before it
+				cache.put(id, genEvent(0), cache.stamp(id));
+				status.setRollbackOnly();
+			}
+		});
+		Assert.assertNull(cache.getIfPresent(id));
+		Assert.assertEquals("event0", cached.get(id).getName());
+		Assert.assertNull(cached.get(genEvent(1).getId()));
+	}
+
+	static Event genEvent(int row) {
+		Event event = new Event();
+		event.setTenantId(1 + row % 3);
+		event.setUserId("user" + row);
+		event.setEventTime(new Date(BASE_TIME + row));
+		event.setReceiptTime(new Date(BASE_TIME + row));
+		event.setName("event" + row);
+		event.setMessage("message of event " + row);
+		event.setVersion(row % 7);
+		return event;
+	}
+
+	static List<Event> genEvents(int from, int to) {
+		List<Event> events = new ArrayList<Event>(to - from);
+		for (int row = from; row < to; row++) {
+			events.add(genEvent(row));
+		}
+		return events;
+	}
+}
@@ -0,0 +1,207 @@
+package org.cg.rooster.h2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cg.rooster.core.Condition;
+import org.cg.rooster.core.PooledDataSource;
+import org.cg.rooster.core.QueryBuilder;
+import org.cg.rooster.core.TableDefinition;
+import org.cg.rooster.metrics.MetricsRegistry;
+import org.cg.rooster.metrics.OperationStats;
+import org.cg.rooster.phoenix.Event;
+import org.cg.rooster.phoenix.EventRowColumnMapper;
+import org.cg.rooster.phoenix.Events;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Throughput and latency of {@link H2JdbcDataRepository} end to end against an in-memory H2 database.
+ * Rows are saved in batches, then read with get, getAll and find from concurrent threads.
+ * The latencies are taken from a {@link MetricsRegistry}.
+ *
+ * Configured by the system properties rooster.load.threads, rooster.load.rows, rooster.load.batchSize,
+ * rooster.load.reads and rooster.load.multiGetSize, e.g.
+ * mvn test -Dtest=TestH2JdbcDataRepositoryLoad -Drooster.load.threads=16 -Drooster.load.rows=1000000
+ *
+ * @author WZ
+ *
+ */
+public class TestH2JdbcDataRepositoryLoad {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TestH2JdbcDataRepositoryLoad.class);
+
+	private final static int THREADS = Integer.getInteger("rooster.load.threads", 4);
+	private final static int ROWS = Integer.getInteger("rooster.load.rows", 20000);
+	private final static int BATCH_SIZE = Integer.getInteger("rooster.load.batchSize", 500);
+	private final static int READS = Integer.getInteger("rooster.load.reads", 10000);
+	private final static int MULTI_GET_SIZE = Integer.getInteger("rooster.load.multiGetSize", 100);
+	private final static int USERS = 1000;
+	private final static long BASE_TIME = 1450000000000L;
+
+	private final static TableDefinition tableDef = Events.TABLE;
+
+	private static PooledDataSource dataSource;
+	private static H2JdbcDataRepository<Event, Object[]> dataRepository;
+	private static MetricsRegistry metrics;
+
+	/**
+	 * An operation of a phase
+	 */
+	private interface Operation {
+		void run(int i);
+	}
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		dataSource = new PooledDataSource("org.h2.Driver", "jdbc:h2:mem:load;DB_CLOSE_DELAY=-1", 1, THREADS * 2);
+		dataRepository = new H2JdbcDataRepository<Event, Object[]>(dataSource, tableDef, EventRowColumnMapper.INSTANCE);
+		dataRepository.getJdbcTemplate().execute(Events.CREATE_TABLE);
+		dataRepository.setCallLogging(false);
+		metrics = new MetricsRegistry();
+		dataRepository.setMetrics(metrics);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		if (dataRepository != null) dataRepository.getJdbcTemplate().execute("DROP TABLE IF EXISTS Event");
+		if (dataSource != null) dataSource.close();
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+		final int batches = (ROWS + BATCH_SIZE - 1) / BATCH_SIZE;
+		runPhase("saveBatch", batches, new Operation() {
+			@Override
+			public void run(int i) {
+				final int from = i * BATCH_SIZE;
+				final List<Event> events = new ArrayList<Event>(BATCH_SIZE);
+				for (int row = from; row < Math.min(from + BATCH_SIZE, ROWS); row++) {
+					events.add(genEvent(row));
+				}
+				Assert.assertTrue(dataRepository.saveBatch(events).isSucceed());
+			}
+		});
+		Assert.assertEquals(ROWS, dataRepository.count());
+
+		runPhase("get", READS, new Operation() {
+			@Override
+			public void run(int i) {
+				Assert.assertNotNull(dataRepository.get(randomId()));
+			}
+		});
+
+		runPhase("getAll", Math.max(1, READS / MULTI_GET_SIZE), new Operation() {
+			@Override
+			public void run(int i) {
+				final List<Object[]> ids = new ArrayList<Object[]>(MULTI_GET_SIZE);
+				for (int j = 0; j < MULTI_GET_SIZE; j++) {
+					ids.add(randomId());
+				}
+				Assert.assertFalse(dataRepository.getAll(ids).isEmpty());
+			}
+		});
+
+		runPhase("find", Math.max(1, READS / 10), new Operation() {
+			@Override
+			public void run(int i) {
+				final String user = "user" + ThreadLocalRandom.current().nextInt(Math.min(USERS, ROWS));
+				dataRepository.find(QueryBuilder.newBuilder()
+						.conditions(Collections.singletonList(new Condition("uid", H2ConditionOperator.EQUAL, user)))
+						.limit(100)
+						.build());
+			}
+		});
+
+		//the first half of the rows by id, the rest by user
+		runPhase("delete", batches / 2, new Operation() {
+			@Override
+			public void run(int i) {
+				final int from = i * BATCH_SIZE;
+				final List<Object[]> ids = new ArrayList<Object[]>(BATCH_SIZE);
+				for (int row = from; row < from + BATCH_SIZE; row++) {
+					ids.add(genEvent(row).getId());
+				}
+				Assert.assertEquals(BATCH_SIZE, dataRepository.delete(ids));
+			}
+		});
+
+		runPhase("deleteWhere", Math.min(USERS, ROWS), new Operation() {
+			@Override
+			public void run(int i) {
+				Assert.assertTrue(dataRepository.delete(QueryBuilder.newBuilder()
+						.conditions(Collections.singletonList(new Condition("uid", H2ConditionOperator.EQUAL, "user" + i)))
+						.build()) >= 0);
+			}
+		});
+		Assert.assertEquals(0, dataRepository.count());
+
+		for (OperationStats stats : metrics.getAllStats()) {
+			LOG.info(stats.toString());
+			Assert.assertEquals(stats.toString(), 0, stats.getErrorCount());
+		}
+	}
+
+	/**
+	 * Run the operations of a phase from all threads and log the throughput and latency
+	 */
+	private static void runPhase(String phase, final int operations, final Operation operation) throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		final AtomicInteger next = new AtomicInteger();
+		final List<Future<Void>> futures = new ArrayList<Future<Void>>(THREADS);
+		final long start = System.nanoTime();
+		try {
+			for (int t = 0; t < THREADS; t++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						int i;
+						while ((i = next.getAndIncrement()) < operations) {
+							operation.run(i);
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		final long elapsedNanos = System.nanoTime() - start;
+		LOG.info(String.format("[load]%s: %s operations on %s threads in %sms, %.1f ops/s; %s", phase, operations, THREADS,
+				TimeUnit.NANOSECONDS.toMillis(elapsedNanos), operations * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos,
+				metrics.getStats(tableDef.getTableName(), phase)));
+	}
+
+	private static Event genEvent(int row) {
+		Event event = new Event();
+		event.setTenantId(1);
+		event.setUserId("user" + (row % USERS));
+		event.setEventTime(new Date(BASE_TIME + row));
+		event.setReceiptTime(new Date(BASE_TIME + row));
+		event.setName("event" + (row % 10));
+		event.setMessage("message of event " + row);
+		event.setVersion(row % 7);
+		return event;
+	}
+
+	private static Object[] randomId() {
+		return genEvent(ThreadLocalRandom.current().nextInt(ROWS)).getId();
+	}
+
+}
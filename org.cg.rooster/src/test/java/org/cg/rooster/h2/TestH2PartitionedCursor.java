@@ -0,0 +1,117 @@
+package org.cg.rooster.h2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.cg.rooster.core.Cursor;
+import org.cg.rooster.core.PartitionedCursor;
+import org.cg.rooster.core.PooledDataSource;
+import org.cg.rooster.core.Query;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+
+/**
+ * Merging, limiting and releasing of {@link PartitionedCursor} against an in-memory H2 database
+ * @author WZ
+ *
+ */
+public class TestH2PartitionedCursor {
+
+	private final static int ROWS = 2500;
+	private final static String RANGE_SQL = "SELECT id FROM Counter WHERE id >= ? AND id < ? ORDER BY id";
+
+	private static PooledDataSource dataSource;
+	private static JdbcTemplate jdbcTemplate;
+	private static ForkJoinPool executor;
+
+	@BeforeClass
+	public static void setUp() {
+		dataSource = new PooledDataSource("org.h2.Driver", "jdbc:h2:mem:partitioned;DB_CLOSE_DELAY=-1", 0, 4);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.setFetchSize(100);
+		jdbcTemplate.execute("CREATE TABLE Counter (id INTEGER PRIMARY KEY)");
+		jdbcTemplate.execute("INSERT INTO Counter SELECT X FROM SYSTEM_RANGE(1, " + ROWS + ")");
+		executor = new ForkJoinPool(2);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		if (executor != null) executor.shutdownNow();
+		if (jdbcTemplate != null) jdbcTemplate.execute("DROP TABLE IF EXISTS Counter");
+		if (dataSource != null) dataSource.close();
+	}
+
+	@Test
+	public void testOrderedMerge() {
+		List<Integer> ids = drain(newRangeCursor(true, Query.NO_LIMIT, 1, 1000, 2000, ROWS + 1));
+		Assert.assertEquals(ROWS, ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			Assert.assertEquals(Integer.valueOf(i + 1), ids.get(i));
+		}
+		Assert.assertEquals(0, dataSource.getActiveCount());
+	}
+
+	@Test
+	public void testUnorderedMerge() {
+		List<Integer> ids = drain(newRangeCursor(false, Query.NO_LIMIT, 1, 1000, 2000, ROWS + 1));
+		Collections.sort(ids);
+		Assert.assertEquals(ROWS, ids.size());
+		Assert.assertEquals(Integer.valueOf(1), ids.get(0));
+		Assert.assertEquals(Integer.valueOf(ROWS), ids.get(ROWS - 1));
+		Assert.assertEquals(0, dataSource.getActiveCount());
+	}
+
+	@Test
+	public void testLimitAcrossRanges() {
+		List<Integer> ids = drain(newRangeCursor(true, 1500, 1, 1000, 2000, ROWS + 1));
+		Assert.assertEquals(1500, ids.size());
+		Assert.assertEquals(Integer.valueOf(1500), ids.get(1499));
+		Assert.assertEquals(0, dataSource.getActiveCount());
+	}
+
+	@Test
+	public void testEarlyCloseCancelsRunningStatements() {
+		//the second statement runs for far longer than the test waits
+		Cursor<Integer> cursor = new PartitionedCursor<Integer>(jdbcTemplate,
+				Arrays.asList(RANGE_SQL, "SELECT COUNT(*) FROM Counter a, Counter b, Counter c"),
+				Arrays.asList(new Object[] {1, ROWS + 1}, new Object[0]),
+				new SingleColumnRowMapper<Integer>(Integer.class), executor, true, Query.NO_LIMIT,
+				PartitionedCursor.DEFAULT_PREFETCH_WINDOWS);
+		Assert.assertEquals(Integer.valueOf(1), cursor.next());
+		long start = System.nanoTime();
+		cursor.close();
+		Assert.assertTrue("close waited for the running statement", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+		Assert.assertFalse(cursor.hasNext());
+		Assert.assertEquals(0, dataSource.getActiveCount());
+	}
+
+	/**
+	 * @param bounds the inclusive lower bound of each range followed by the exclusive upper bound of the last one
+	 */
+	private static Cursor<Integer> newRangeCursor(boolean ordered, long limit, int... bounds) {
+		List<String> sqls = new ArrayList<String>();
+		List<Object[]> args = new ArrayList<Object[]>();
+		for (int i = 0; i < bounds.length - 1; i++) {
+			sqls.add(RANGE_SQL);
+			args.add(new Object[] {bounds[i], bounds[i + 1]});
+		}
+		return new PartitionedCursor<Integer>(jdbcTemplate, sqls, args, new SingleColumnRowMapper<Integer>(Integer.class),
+				executor, ordered, limit, PartitionedCursor.DEFAULT_PREFETCH_WINDOWS);
+	}
+
+	private static List<Integer> drain(Cursor<Integer> cursor) {
+		List<Integer> ids = new ArrayList<Integer>();
+		while (cursor.hasNext()) {
+			ids.add(cursor.next());
+		}
+		return ids;
+	}
+}
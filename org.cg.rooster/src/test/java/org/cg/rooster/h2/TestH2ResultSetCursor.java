@@ -0,0 +1,112 @@
+package org.cg.rooster.h2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.cg.rooster.core.Cursor;
+import org.cg.rooster.core.PooledDataSource;
+import org.cg.rooster.core.ResultSetCursor;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Reading and releasing of {@link ResultSetCursor} against an in-memory H2 database
+ * @author WZ
+ *
+ */
+public class TestH2ResultSetCursor {
+
+	private final static int ROWS = 2500;
+
+	private static PooledDataSource dataSource;
+	private static JdbcTemplate jdbcTemplate;
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void setUp() {
+		dataSource = new PooledDataSource("org.h2.Driver", "jdbc:h2:mem:cursor;DB_CLOSE_DELAY=-1", 0, 4);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.setFetchSize(1000);
+		jdbcTemplate.execute("CREATE TABLE Counter (id INTEGER PRIMARY KEY)");
+		jdbcTemplate.execute("INSERT INTO Counter SELECT X FROM SYSTEM_RANGE(1, " + ROWS + ")");
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		if (executor != null) executor.shutdownNow();
+		if (jdbcTemplate != null) jdbcTemplate.execute("DROP TABLE IF EXISTS Counter");
+		if (dataSource != null) dataSource.close();
+	}
+
+	@Test
+	public void testReadAllWindows() {
+		Cursor<Integer> cursor = newCursor("SELECT id FROM Counter ORDER BY id", executor);
+		Assert.assertEquals(ROWS, drain(cursor).size());
+		Assert.assertEquals(0, dataSource.getActiveCount());
+	}
+
+	@Test
+	public void testEarlyClose() {
+		Cursor<Integer> cursor = newCursor("SELECT id FROM Counter ORDER BY id", executor);
+		Assert.assertEquals(Integer.valueOf(1), cursor.next());
+		cursor.close();
+		Assert.assertFalse(cursor.hasNext());
+		Assert.assertEquals(0, dataSource.getActiveCount());
+	}
+
+	@Test
+	public void testRejectedReaderReleases() {
+		ExecutorService stopped = Executors.newSingleThreadExecutor();
+		stopped.shutdown();
+		try {
+			newCursor("SELECT id FROM Counter", stopped);
+			Assert.fail("the executor is shut down");
+		} catch (RejectedExecutionException e) {
+			Assert.assertEquals(0, dataSource.getActiveCount());
+		}
+	}
+
+	@Test
+	public void testReadOnCallingThreadInTransaction() {
+		final ExecutorService stopped = Executors.newSingleThreadExecutor();
+		stopped.shutdown();
+		//the stopped executor would reject a background reader
+		List<Integer> ids = new TransactionTemplate(new DataSourceTransactionManager(dataSource)).execute(new TransactionCallback<List<Integer>>() {
+			@Override
+			public List<Integer> doInTransaction(TransactionStatus status) {
+				jdbcTemplate.update("DELETE FROM Counter WHERE id > ?", 10);
+				List<Integer> ids = drain(newCursor("SELECT id FROM Counter ORDER BY id", stopped));
+				status.setRollbackOnly();
+				return ids;
+			}
+		});
+		Assert.assertEquals(10, ids.size());
+		Assert.assertEquals(ROWS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Counter", Integer.class).intValue());
+		Assert.assertEquals(0, dataSource.getActiveCount());
+	}
+
+	private static Cursor<Integer> newCursor(String sql, ExecutorService executor) {
+		return new ResultSetCursor<Integer>(jdbcTemplate, sql, new Object[0], new SingleColumnRowMapper<Integer>(Integer.class),
+				executor, ResultSetCursor.DEFAULT_PREFETCH_WINDOWS);
+	}
+
+	private static List<Integer> drain(Cursor<Integer> cursor) {
+		List<Integer> ids = new ArrayList<Integer>();
+		while (cursor.hasNext()) {
+			ids.add(cursor.next());
+		}
+		return ids;
+	}
+}
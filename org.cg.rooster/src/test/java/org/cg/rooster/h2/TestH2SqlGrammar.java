@@ -0,0 +1,75 @@
+package org.cg.rooster.h2;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.cg.rooster.core.Condition;
+import org.cg.rooster.core.Hint;
+import org.cg.rooster.core.TableDefinition;
+import org.cg.rooster.phoenix.PhoenixSqlGrammar;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * SQL generation of {@link H2SqlGrammar}
+ * @author WZ
+ *
+ */
+public class TestH2SqlGrammar {
+
+	private final H2SqlGrammar grammar = H2SqlGrammar.getInstance();
+	private final TableDefinition tableDef = new TableDefinition("Event", "tid", "uid", "event_time", "receipt_time");
+
+	@Before
+	public void setUp() {
+		grammar.getShapeCache().clear();
+	}
+
+	@Test
+	public void testSaveMerges() {
+		LinkedHashMap<String, Object> columns = new LinkedHashMap<String, Object>();
+		columns.put("tid", 1);
+		columns.put("uid", "a");
+		String sql = grammar.save(tableDef, columns, Collections.<String, Object>emptyMap());
+		Assert.assertEquals("MERGE INTO Event (tid, uid) VALUES (?, ?)", sql);
+		Assert.assertTrue(PhoenixSqlGrammar.getInstance().save(tableDef, columns, Collections.<String, Object>emptyMap()).startsWith("UPSERT INTO "));
+	}
+
+	@Test
+	public void testSameWhereClauses() {
+		Object[] flatIds = new Object[] {1, "a", 1L, 2L, 3, "b", 3L, 4L};
+		Assert.assertEquals(PhoenixSqlGrammar.getInstance().selectById(tableDef, null, 10, 2, flatIds, null, null),
+				grammar.selectById(tableDef, null, 10, 2, flatIds, null, null));
+		Condition condition = new Condition(new Condition("tid", H2ConditionOperator.EQUAL, 1), H2ConditionOperator.OR,
+				new Condition("uid", H2ConditionOperator.NOT_EQUAL, "a"));
+		Assert.assertEquals("SELECT * FROM Event WHERE ((tid = ?) OR (uid <> ?)) LIMIT 10",
+				grammar.selectByCondition(tableDef, null, 10, Collections.singletonList(condition), null, null));
+	}
+
+	@Test
+	public void testHintsLeftOut() {
+		List<Hint> hints = Arrays.asList(Hint.SMALL, Hint.NO_CACHE);
+		Condition condition = new Condition("tid", H2ConditionOperator.EQUAL, 1);
+		Assert.assertEquals("SELECT * FROM Event WHERE ((tid = ?)) LIMIT 10",
+				grammar.selectByCondition(tableDef, null, 10, Collections.singletonList(condition), null, null, hints));
+		Assert.assertEquals("SELECT COUNT(*) FROM Event WHERE ((tid = ?))",
+				grammar.countByCondition(tableDef, Collections.singletonList(condition), null, hints));
+	}
+
+	@Test
+	public void testApproximateCount() {
+		Assert.assertEquals("SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'EVENT'",
+				grammar.approximateCount(tableDef));
+		Assert.assertEquals("SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'EVENT' AND TABLE_SCHEMA = 'APP'",
+				grammar.approximateCount(new TableDefinition("app.Event", "tid")));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testDynamicColumnsUnsupported() {
+		grammar.selectById(tableDef, null, 10, -1, null, Collections.singletonMap("extra", PhoenixSqlGrammar.VARCHAR), null);
+	}
+
+}
@@ -3,6 +3,8 @@ package org.cg.rooster.phoenix;
 import java.util.Date;
 
 import org.cg.rooster.JdbcDataRepository;
+import org.cg.rooster.mapping.Column;
+import org.cg.rooster.mapping.MappedEntity;
 import org.springframework.data.domain.Persistable;
 
 /**
@@ -10,6 +12,7 @@ import org.springframework.data.domain.Persistable;
  * @author WZ
  *
  */
+@MappedEntity
 public class Event implements Persistable<Object[]> {
 
 	/**
@@ -17,13 +20,20 @@ public class Event implements Persistable<Object[]> {
 	 */
 	private static final long serialVersionUID = 3667252197918887146L;
 	
+	@Column("tid")
 	private int tenantId;
+	@Column("uid")
 	private String userId;
+	@Column(value = "event_time", epochMillis = true)
 	private Date eventTime;
+	@Column(value = "receipt_time", epochMillis = true)
 	private Date receiptTime;
 	
+	@Column
 	private String name;
+	@Column
 	private String message;
+	@Column
 	private int version;
 	
 	public Event() {
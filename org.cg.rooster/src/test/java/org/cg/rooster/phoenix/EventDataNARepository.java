@@ -26,13 +26,13 @@ public class EventDataNARepository extends PhoenixJdbcDataRepository<Event, Obje
 		@Override
 		public Event mapRow(ResultSet rs, int rowNum) throws SQLException {
 			Event idEvent = new Event();
-			idEvent.setTenantId(rs.getInt("tid"));
-			idEvent.setUserId(rs.getString("uid"));
-			idEvent.setEventTime(new Date(rs.getLong("event_time")));
-			idEvent.setReceiptTime(new Date(rs.getLong("receipt_time")));
-			idEvent.setName(rs.getString("name"));
-			idEvent.setMessage(rs.getString("message"));
-			idEvent.setVersion(rs.getInt("version"));
+			idEvent.setTenantId(getInt(rs, "tid"));
+			idEvent.setUserId(getString(rs, "uid"));
+			idEvent.setEventTime(new Date(getLong(rs, "event_time")));
+			idEvent.setReceiptTime(new Date(getLong(rs, "receipt_time")));
+			idEvent.setName(getString(rs, "name"));
+			idEvent.setMessage(getString(rs, "message"));
+			idEvent.setVersion(getInt(rs, "version"));
 			return idEvent;
 		}
 
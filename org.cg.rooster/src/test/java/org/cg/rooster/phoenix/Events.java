@@ -0,0 +1,70 @@
+package org.cg.rooster.phoenix;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+
+import org.cg.rooster.core.RowColumnMapper;
+import org.cg.rooster.core.TableDefinition;
+
+/**
+ * The table and the hand-written mapper of {@link Event} shared by the H2 tests and the benchmarks,
+ * which use the test jar. The generated mapper is {@link EventRowColumnMapper}
+ * @author WZ
+ *
+ */
+public final class Events {
+
+	public final static TableDefinition TABLE = new TableDefinition("Event", true, "tid", "uid", "event_time", "receipt_time");
+
+	/**
+	 * The event table of an H2 database, see Event.sql for Apache Phoenix
+	 */
+	public final static String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS Event (tid INTEGER NOT NULL, uid VARCHAR NOT NULL, "
+			+ "event_time BIGINT NOT NULL, receipt_time BIGINT NOT NULL, name VARCHAR, message VARCHAR, version INTEGER, "
+			+ "CONSTRAINT Event_PK PRIMARY KEY (tid, uid, event_time, receipt_time))";
+
+	/**
+	 * Reads the columns by name, skipping the ones a query does not select
+	 */
+	public final static RowColumnMapper<Event> BY_NAME_MAPPER = new RowColumnMapper<Event>() {
+		@Override
+		public Event mapRow(ResultSet rs, int rowNum) throws SQLException {
+			Event event = new Event();
+			event.setTenantId(getInt(rs, "tid"));
+			event.setUserId(getString(rs, "uid"));
+			event.setEventTime(new Date(getLong(rs, "event_time")));
+			event.setReceiptTime(new Date(getLong(rs, "receipt_time")));
+			if (hasColumn(rs, "name")) event.setName(getString(rs, "name"));
+			if (hasColumn(rs, "message")) event.setMessage(getString(rs, "message"));
+			if (hasColumn(rs, "version")) event.setVersion(getInt(rs, "version"));
+			return event;
+		}
+
+		@Override
+		public LinkedHashMap<String, Object> mapColumns(Event t) {
+			return columnsOf(t);
+		}
+	};
+
+	private Events() {
+
+	}
+
+	/**
+	 * @param t the event
+	 * @return the columns of the event in the order of the table
+	 */
+	public static LinkedHashMap<String, Object> columnsOf(Event t) {
+		LinkedHashMap<String, Object> columns = new LinkedHashMap<String, Object>();
+		columns.put("tid", t.getTenantId());
+		columns.put("uid", t.getUserId());
+		columns.put("event_time", t.getEventTime().getTime());
+		columns.put("receipt_time", t.getReceiptTime().getTime());
+		columns.put("name", t.getName());
+		columns.put("message", t.getMessage());
+		columns.put("version", t.getVersion());
+		return columns;
+	}
+}
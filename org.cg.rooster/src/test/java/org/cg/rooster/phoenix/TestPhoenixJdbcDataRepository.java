@@ -2,22 +2,41 @@ package org.cg.rooster.phoenix;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.cg.rooster.JdbcDataRepository;
+import org.cg.rooster.core.Aggregate;
+import org.cg.rooster.core.AggregateRow;
 import org.cg.rooster.core.Condition;
+import org.cg.rooster.core.Cursor;
+import org.cg.rooster.core.Hint;
+import org.cg.rooster.core.KeysetPageable;
+import org.cg.rooster.core.PreparedQuery;
 import org.cg.rooster.core.Query;
 import org.cg.rooster.core.QueryBuilder;
+import org.cg.rooster.metrics.MetricsRegistry;
+import org.cg.rooster.metrics.OperationStats;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.domain.Sort.Order;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -82,6 +101,39 @@ public class TestPhoenixJdbcDataRepository {
 		Assert.assertTrue(isExist);
 	}
 
+	@Test
+	public void testExistsAll() {
+		List<Event> events = new LinkedList<Event>();
+		for (int i = 0; i < 10; i++) {
+			events.add(genEvent());
+		}
+		dataRepository.save(events);
+		List<Object[]> ids = new LinkedList<Object[]>();
+		for (Event e : events) {
+			ids.add(e.getId());
+		}
+		Event missing = genEvent();
+		ids.add(missing.getId());
+		Set<Object[]> found = dataRepository.existsAll(ids);
+		//array ids are matched by identity, so the found ids must be the saved instances passed in, in order
+		Assert.assertEquals(events.size(), found.size());
+		Iterator<Object[]> it = found.iterator();
+		for (Object[] id : ids.subList(0, events.size())) {
+			Assert.assertSame(id, it.next());
+		}
+		Assert.assertFalse(found.contains(ids.get(events.size())));
+	}
+
+	@Test
+	public void testExistsWhere() {
+		Event e = genEvent();
+		dataRepository.save(e);
+		Query query = QueryBuilder.newBuilder()
+				.conditions(Arrays.asList(new Condition("uid", PhoenixConditionOperator.EQUAL, e.getUserId())))
+				.build();
+		Assert.assertTrue(dataRepository.existsWhere(query));
+	}
+
 	@Test
 	public void testCount() {
 		long count = dataRepository.count();
@@ -89,6 +141,46 @@ public class TestPhoenixJdbcDataRepository {
 		//Assert.assertTrue(count == 100);
 	}
 
+	@Test
+	public void testCountByQuery() {
+		Event e = genEvent();
+		dataRepository.save(e);
+		Query query = QueryBuilder.newBuilder()
+				.conditions(Arrays.asList(new Condition("uid", PhoenixConditionOperator.EQUAL, e.getUserId())))
+				.build();
+		Assert.assertEquals(1, dataRepository.count(query));
+		Assert.assertTrue(dataRepository.count() >= dataRepository.count(query));
+	}
+
+	@Test
+	public void testFindWithHints() {
+		Event e = genEvent();
+		dataRepository.save(e);
+		Query query = QueryBuilder.newBuilder()
+				.conditions(Arrays.asList(new Condition("uid", PhoenixConditionOperator.EQUAL, e.getUserId())))
+				.hints(Hint.NO_CACHE, Hint.SERIAL)
+				.build();
+		List<Event> list = (List<Event>) dataRepository.find(query);
+		Assert.assertEquals(1, list.size());
+		Assert.assertEquals(1, dataRepository.count(query));
+		Assert.assertNotNull(dataRepository.get(e.getId()));
+	}
+
+	@Test
+	public void testAggregate() {
+		Event e = genEvent();
+		dataRepository.save(e);
+		Query query = QueryBuilder.newBuilder()
+				.aggregate(Aggregate.count().as("events"), Aggregate.max("event_time"))
+				.groupBy("uid")
+				.conditions(Arrays.asList(new Condition("uid", PhoenixConditionOperator.EQUAL, e.getUserId())))
+				.build();
+		List<AggregateRow> rows = dataRepository.aggregate(query);
+		Assert.assertEquals(1, rows.size());
+		Assert.assertEquals(e.getUserId(), rows.get(0).get("uid"));
+		Assert.assertEquals(Long.valueOf(1), rows.get(0).getLong("events"));
+	}
+
 	@Test
 	public void testDeleteById() {
 		Event event = genEvent();
@@ -109,13 +201,46 @@ public class TestPhoenixJdbcDataRepository {
 			Assert.assertTrue(dataRepository.exists(e.getId()));
 			ids.add(e.getId());
 		}
-		dataRepository.delete(ids);
+		Assert.assertEquals(10, dataRepository.delete(ids));
 		for (Event e : events) {
 			Assert.assertFalse(dataRepository.exists(e.getId()));
 			ids.add(e.getId());
 		}
 	}
 
+	@Test
+	public void testDeleteByIdChunks() {
+		List<Event> events = new LinkedList<Event>();
+		List<Object[]> ids = new LinkedList<Object[]>();
+		for (int i = 0; i < 10; i++) {
+			Event e = genEvent();
+			events.add(e);
+			ids.add(e.getId());
+		}
+		dataRepository.save(events);
+		dataRepository.setDeleteChunkSize(3);
+		try {
+			Assert.assertEquals(10, dataRepository.delete(ids));
+		} finally {
+			dataRepository.setDeleteChunkSize(JdbcDataRepository.DEFAULT_DELETE_CHUNK_SIZE);
+		}
+		Assert.assertTrue(dataRepository.existsAll(ids).isEmpty());
+	}
+
+	@Test
+	public void testDeleteByQuery() {
+		Event e = genEvent();
+		dataRepository.save(e);
+		Query query = QueryBuilder.newBuilder()
+				.conditions(Arrays.asList(
+						new Condition("tid", PhoenixConditionOperator.EQUAL, e.getTenantId()),
+						new Condition("uid", PhoenixConditionOperator.EQUAL, e.getUserId())))
+				.build();
+		Assert.assertEquals(1, dataRepository.delete(query));
+		Assert.assertFalse(dataRepository.exists(e.getId()));
+		Assert.assertEquals(0, dataRepository.delete(query));
+	}
+
 	@Test
 	public void testFindOne() {
 		Event e = genEvent();
@@ -125,6 +250,24 @@ public class TestPhoenixJdbcDataRepository {
 		Assert.assertNotNull(eo);
 	}
 
+	@Test
+	public void testGetAll() {
+		List<Event> events = new LinkedList<Event>();
+		for (int i = 0; i < 10; i++) {
+			events.add(genEvent());
+		}
+		dataRepository.save(events);
+		List<Object[]> ids = new LinkedList<Object[]>();
+		for (Event e : events) {
+			ids.add(e.getId());
+		}
+		Map<Object[], Event> found = dataRepository.getAll(ids);
+		Assert.assertEquals(events.size(), found.size());
+		for (Object[] id : ids) {
+			Assert.assertNotNull(found.get(id));
+		}
+	}
+
 	@Test
 	public void testFindAll() {
 		List<Event> list = (List<Event>) dataRepository.findAll();
@@ -161,6 +304,112 @@ public class TestPhoenixJdbcDataRepository {
 		Assert.assertTrue(list.size()==2);
 	}
 
+	@Test
+	public void testFindWithProjection() {
+		Event e = genEvent();
+		dataRepository.save(e);
+		Query query = QueryBuilder.newBuilder()
+				.columnSelection("uid", "event_time")
+				.conditions(Arrays.asList(new Condition("uid", PhoenixConditionOperator.EQUAL, e.getUserId())))
+				.build();
+		List<String> userIds = dataRepository.find(query, new RowMapper<String>() {
+			@Override
+			public String mapRow(ResultSet rs, int rowNum) throws SQLException {
+				Assert.assertEquals(2, rs.getMetaData().getColumnCount());
+				return rs.getString("uid");
+			}
+		});
+		Assert.assertEquals(Arrays.asList(e.getUserId()), userIds);
+	}
+
+	@Test
+	public void testGeneratedRowColumnMapper() {
+		Event e = genEvent();
+		Assert.assertEquals(EventDataRepository.ROW_COLUMN_MAPPER.mapColumns(e), EventRowColumnMapper.INSTANCE.mapColumns(e));
+		Assert.assertEquals(Arrays.asList(EventDataRepository.ROW_COLUMN_MAPPER.mapColumns(e).keySet().toArray()),
+				EventRowColumnMapper.COLUMNS);
+
+		dataRepository.save(e);
+		Query query = QueryBuilder.newBuilder()
+				.columnSelection(EventRowColumnMapper.COLUMNS)
+				.conditions(Arrays.asList(new Condition("uid", PhoenixConditionOperator.EQUAL, e.getUserId())))
+				.build();
+		List<Event> events = dataRepository.find(query, EventRowColumnMapper.INSTANCE);
+		Assert.assertEquals(1, events.size());
+		Assert.assertEquals(EventRowColumnMapper.INSTANCE.mapColumns(e), EventRowColumnMapper.INSTANCE.mapColumns(events.get(0)));
+	}
+
+	@Test
+	public void testMetrics() {
+		MetricsRegistry registry = new MetricsRegistry();
+		dataRepository.setMetrics(registry);
+		dataRepository.setCallLogging(false);
+		Event e = genEvent();
+		dataRepository.save(e);
+		dataRepository.get(e.getId());
+		OperationStats get = registry.getStats("Event", "get");
+		Assert.assertEquals(1, get.getCount());
+		Assert.assertEquals(1, get.getRowCount());
+		Assert.assertEquals(0, get.getErrorCount());
+		Assert.assertTrue(get.getBoundBytes() > 0);
+		Assert.assertEquals(1, registry.getStats("Event", "save").getCount());
+	}
+
+	@Test
+	public void testStream() {
+		Query query = QueryBuilder.newBuilder()
+				.noLimit()
+				.build();
+		long count = 0;
+		Cursor<Event> cursor = dataRepository.stream(query);
+		try {
+			while (cursor.hasNext()) {
+				Assert.assertNotNull(cursor.next());
+				count++;
+			}
+		} finally {
+			cursor.close();
+		}
+		Assert.assertEquals(dataRepository.count(), count);
+	}
+
+	@Test
+	public void testStreamKeyRanges() {
+		Query query = QueryBuilder.newBuilder()
+				.sort(new Sort(Direction.ASC, "tid"))
+				.noLimit()
+				.build();
+		long count = 0;
+		int lastTenant = Integer.MIN_VALUE;
+		Cursor<Event> cursor = dataRepository.stream(query, dataRepository.splitKeyRange(query, 4));
+		try {
+			while (cursor.hasNext()) {
+				Event e = cursor.next();
+				Assert.assertTrue(e.getTenantId() >= lastTenant);
+				lastTenant = e.getTenantId();
+				count++;
+			}
+		} finally {
+			cursor.close();
+		}
+		Assert.assertEquals(dataRepository.count(), count);
+	}
+
+	@Test
+	public void testFindByPage() {
+		Query query = QueryBuilder.newBuilder().build();
+		Set<String> seen = new HashSet<String>();
+		Pageable pageable = new KeysetPageable(10);
+		for (int i = 0; i < 3 && pageable != null; i++) {
+			Slice<Event> slice = dataRepository.find(query, pageable);
+			for (Event e : slice) {
+				Assert.assertTrue(seen.add(Arrays.toString(e.getId())));
+			}
+			pageable = slice.nextPageable();
+		}
+		Assert.assertTrue(!seen.isEmpty());
+	}
+
 	@Test
 	public void testFind() {
 		List<Event> events = new LinkedList<Event>();
@@ -187,6 +436,31 @@ public class TestPhoenixJdbcDataRepository {
 		}
 	}
 
+	@Test
+	public void testPreparedQuery() {
+		Event event = genEvent();
+		Event event2 = genEvent();
+		dataRepository.save(Arrays.asList(event, event2));
+		List<Condition> conditions = new LinkedList<Condition>();
+		conditions.add(new Condition("tid", PhoenixConditionOperator.EQUAL, 1));
+		conditions.add(new Condition("uid", PhoenixConditionOperator.EQUAL, PreparedQuery.param("user")));
+		PreparedQuery byUser = dataRepository.prepare(QueryBuilder.newBuilder().conditions(conditions).build());
+		Assert.assertEquals(Arrays.asList("tid", "user"), byUser.getParameterNames());
+
+		List<Event> list = (List<Event>) dataRepository.find(byUser.bind().set("user", event.getUserId()));
+		Assert.assertEquals(1, list.size());
+		Assert.assertEquals(event.getUserId(), list.get(0).getUserId());
+		list = (List<Event>) dataRepository.find(byUser.bind().set(2, event2.getUserId()));
+		Assert.assertEquals(event2.getUserId(), list.get(0).getUserId());
+		Assert.assertTrue(((List<Event>) dataRepository.find(byUser.bind().set("tid", 2).set("user", event.getUserId()))).isEmpty());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testPreparedQueryUnbound() {
+		List<Condition> conditions = Arrays.asList(new Condition("uid", PhoenixConditionOperator.EQUAL, PreparedQuery.param("user")));
+		dataRepository.find(dataRepository.prepare(QueryBuilder.newBuilder().conditions(conditions).build()).bind());
+	}
+
 	@Test
 	public void testFindWithSort() {
 		List<Event> events = new LinkedList<Event>();
@@ -0,0 +1,283 @@
+package org.cg.rooster.phoenix;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.cg.rooster.core.Aggregate;
+import org.cg.rooster.core.ArrayValue;
+import org.cg.rooster.core.Condition;
+import org.cg.rooster.core.Hint;
+import org.cg.rooster.core.KeyRange;
+import org.cg.rooster.core.Query;
+import org.cg.rooster.core.QueryBuilder;
+import org.cg.rooster.core.SqlShape;
+import org.cg.rooster.core.SqlShapeCache;
+import org.cg.rooster.core.TableDefinition;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+
+/**
+ * SQL generation of {@link PhoenixSqlGrammar}, runs without a cluster
+ * @author WZ
+ *
+ */
+public class TestPhoenixSqlGrammar {
+
+	private final PhoenixSqlGrammar grammar = PhoenixSqlGrammar.getInstance();
+	private final TableDefinition tableDef = new TableDefinition("Event", "tid", "uid", "event_time", "receipt_time");
+
+	@Before
+	public void setUp() {
+		grammar.getShapeCache().clear();
+	}
+
+	@Test
+	public void testSelectByIdCached() {
+		SqlShapeCache cache = grammar.getShapeCache();
+		String first = grammar.selectById(tableDef, null, Query.DEFAULT_QUERY_LIMIT, 1, new Object[] {1, "a", 1L, 2L}, null, null);
+		String second = grammar.selectById(tableDef, null, Query.DEFAULT_QUERY_LIMIT, 1, new Object[] {2, "b", 3L, 4L}, null, null);
+		Assert.assertEquals("SELECT * FROM Event WHERE (tid = ? AND uid = ? AND event_time = ? AND receipt_time = ? ) LIMIT 5000", first);
+		Assert.assertSame(first, second);
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void testShapeCacheBounded() {
+		SqlShapeCache cache = new SqlShapeCache(8);
+		for (int limit = 1; limit <= 100; limit++) {
+			cache.put(SqlShape.probe(SqlShape.Kind.SELECT_BY_ID, tableDef).limit(limit), "SELECT " + limit);
+		}
+		Assert.assertTrue(cache.size() <= 8);
+		Assert.assertEquals("SELECT 100", cache.get(SqlShape.probe(SqlShape.Kind.SELECT_BY_ID, tableDef).limit(100)));
+	}
+
+	@Test
+	public void testSelectByIdNullMask() {
+		String full = grammar.selectById(tableDef, null, 10, 1, new Object[] {1, "a", 1L, 2L}, null, null);
+		String partial = grammar.selectById(tableDef, null, 10, 1, new Object[] {1, null, 1L, 2L}, null, null);
+		Assert.assertNotEquals(full, partial);
+		Assert.assertTrue(partial.contains("uid IS NULL"));
+	}
+
+	@Test
+	public void testSelectByIdShape() {
+		LinkedHashMap<String, String> dynamicColumns = new LinkedHashMap<String, String>();
+		dynamicColumns.put("extra", PhoenixSqlGrammar.VARCHAR);
+		String plain = grammar.selectById(tableDef, null, 10, -1, null, null, null);
+		String sorted = grammar.selectById(tableDef, new Sort(Direction.DESC, "uid"), 10, -1, null, null, null);
+		String dynamic = grammar.selectById(tableDef, null, 10, -1, null, dynamicColumns, null);
+		Assert.assertEquals("SELECT * FROM Event LIMIT 10", plain);
+		Assert.assertEquals("SELECT * FROM Event ORDER BY uid DESC LIMIT 10", sorted);
+		Assert.assertEquals("SELECT * FROM Event(extra VARCHAR) LIMIT 10", dynamic);
+		Assert.assertEquals(3, grammar.getShapeCache().getMissCount());
+	}
+
+	@Test
+	public void testSelectByIdList() {
+		String inList = grammar.selectById(tableDef, null, 10, 2, new Object[] {1, "a", 1L, 2L, 1, "b", 1L, 2L}, null, null);
+		String withNull = grammar.selectById(tableDef, null, 10, 2, new Object[] {1, "a", 1L, 2L, 1, null, 1L, 2L}, null, null);
+		Assert.assertEquals("SELECT * FROM Event WHERE (tid, uid, event_time, receipt_time) IN ((?, ?, ?, ?), (?, ?, ?, ?)) LIMIT 10", inList);
+		Assert.assertTrue(withNull.contains(" OR "));
+	}
+
+	@Test
+	public void testNoLimit() {
+		Assert.assertEquals("SELECT * FROM Event", grammar.selectById(tableDef, null, Query.NO_LIMIT, -1, null, null, null));
+	}
+
+	@Test
+	public void testSelectByKeyset() {
+		Sort sort = new Sort(Direction.ASC, tableDef.getPrimaryId());
+		List<Condition> conditions = new LinkedList<Condition>();
+		conditions.add(new Condition("tid", PhoenixConditionOperator.EQUAL, 1));
+		Assert.assertEquals("SELECT * FROM Event WHERE ((tid = ?)) AND (tid, uid, event_time, receipt_time) > (?, ?, ?, ?)"
+				+ " ORDER BY tid ASC, uid ASC, event_time ASC, receipt_time ASC LIMIT 11", 
+				grammar.selectByKeyset(tableDef, sort, 11, true, conditions, null, null));
+		Assert.assertEquals("SELECT * FROM Event WHERE (tid, uid, event_time, receipt_time) < (?, ?, ?, ?)"
+				+ " ORDER BY tid DESC, uid DESC, event_time DESC, receipt_time DESC LIMIT 11", 
+				grammar.selectByKeyset(tableDef, new Sort(Direction.DESC, tableDef.getPrimaryId()), 11, true, 
+						Collections.<Condition>emptyList(), null, null));
+	}
+
+	@Test
+	public void testMultiValuedConditions() {
+		List<Condition> conditions = new LinkedList<Condition>();
+		conditions.add(new Condition("uid", PhoenixConditionOperator.IN, Arrays.asList("a", "b", "c")));
+		conditions.add(new Condition("event_time", PhoenixConditionOperator.BETWEEN, new Object[] {1L, 2L}));
+		conditions.add(new Condition("tid", PhoenixConditionOperator.EQUAL_ANY, Arrays.asList(1, 2)));
+		Assert.assertEquals("SELECT * FROM Event WHERE ((uid IN (?, ?, ?))) AND ((event_time BETWEEN ? AND ?)) AND ((tid = ANY (?))) LIMIT 10",
+				grammar.selectByCondition(tableDef, null, 10, conditions, null, null));
+		Object[] params = Condition.getParamsFromConditions(conditions);
+		Assert.assertEquals(6, params.length);
+		Assert.assertArrayEquals(new Object[] {"a", "b", "c", 1L, 2L}, Arrays.copyOf(params, 5));
+		Assert.assertEquals("INTEGER", ((ArrayValue) params[5]).getElementType());
+	}
+
+	@Test
+	public void testArrayValueTypes() {
+		ArrayValue dates = ArrayValue.of(Arrays.asList(new Date(1L), null));
+		Assert.assertEquals("TIMESTAMP", dates.getElementType());
+		Assert.assertEquals(new Timestamp(1L), dates.getValues()[0]);
+		Assert.assertEquals("DECIMAL", ArrayValue.of(Arrays.asList(BigDecimal.ONE)).getElementType());
+		try {
+			new Condition("tid", PhoenixConditionOperator.EQUAL_ANY, Arrays.asList(new Object()));
+			Assert.fail("unsupported element type accepted");
+		} catch (IllegalArgumentException e) {
+			//expected when the condition is built
+		}
+		try {
+			ArrayValue.of(Arrays.asList(1, null, "2"));
+			Assert.fail("mixed element types accepted");
+		} catch (IllegalArgumentException e) {
+			//expected for any element after the first
+		}
+	}
+
+	@Test
+	public void testPrimitiveArrayValues() {
+		ArrayValue ids = ArrayValue.of(new long[] {1L, 2L});
+		Assert.assertEquals("BIGINT", ids.getElementType());
+		Assert.assertArrayEquals(new Object[] {1L, 2L}, ids.getValues());
+		Condition condition = new Condition("uid", PhoenixConditionOperator.IN, new int[] {1, 2, 3});
+		Assert.assertArrayEquals(new Object[] {1, 2, 3}, Condition.getParamsFromConditions(Collections.singletonList(condition)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRangeNeedsTwoValues() {
+		new Condition("event_time", PhoenixConditionOperator.BETWEEN, Arrays.asList(1L));
+	}
+
+	@Test
+	public void testKeyRanges() {
+		List<KeyRange> ranges = KeyRange.split("tid", 0, 99, 4);
+		Assert.assertEquals(4, ranges.size());
+		Assert.assertEquals("SELECT * FROM Event WHERE ((tid < ?)) LIMIT 10",
+				grammar.selectByCondition(tableDef, null, 10, ranges.get(0).getConditions(), null, null));
+		Assert.assertEquals("SELECT * FROM Event WHERE ((tid >= ?)) AND ((tid < ?)) LIMIT 10",
+				grammar.selectByCondition(tableDef, null, 10, ranges.get(1).getConditions(), null, null));
+		Assert.assertArrayEquals(new Object[] {25L, 50L}, Condition.getParamsFromConditions(ranges.get(1).getConditions()));
+		Assert.assertNull(ranges.get(3).getUpper());
+		Assert.assertEquals(3, KeyRange.split("tid", 1, 3, 8).size());
+		Assert.assertEquals("SELECT * FROM Event WHERE ((tid = ?)) LIMIT 10",
+				grammar.selectByCondition(tableDef, null, 10, KeyRange.of("tid", 1).getConditions(), null, null));
+	}
+
+	@Test
+	public void testKeyRangeOrder() {
+		List<KeyRange> ranges = KeyRange.split("tid", 0, 99, 4);
+		Assert.assertTrue(ranges.get(0).isBefore(ranges.get(1)));
+		Assert.assertFalse(ranges.get(1).isBefore(ranges.get(0)));
+		Assert.assertFalse(ranges.get(3).isBefore(ranges.get(0)));
+		Assert.assertTrue(KeyRange.of("tid", 1).isBefore(KeyRange.of("tid", 2L)));
+		Assert.assertFalse(KeyRange.of("tid", 2).isBefore(KeyRange.between("tid", 2, 5)));
+		Assert.assertTrue(KeyRange.between("tid", 0, 2).isBefore(KeyRange.of("tid", 2)));
+		Assert.assertFalse(KeyRange.between("tid", 0, 3).isBefore(KeyRange.between("tid", 2, 5)));
+		try {
+			KeyRange.of("tid", 1).isBefore(KeyRange.of("tid", "a"));
+			Assert.fail("bounds of different types compared");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testHints() {
+		List<Condition> conditions = new LinkedList<Condition>();
+		conditions.add(new Condition("tid", PhoenixConditionOperator.EQUAL, 1));
+		List<Hint> hints = Arrays.asList(Hint.SMALL, Hint.index("Event", "event_uid_idx"));
+		Assert.assertEquals("SELECT /*+ SMALL INDEX(Event event_uid_idx) */ * FROM Event WHERE ((tid = ?)) LIMIT 10",
+				grammar.selectByCondition(tableDef, null, 10, conditions, null, null, hints));
+		Assert.assertEquals("SELECT /*+ SMALL */ * FROM Event WHERE (tid = ? AND uid = ? AND event_time = ? AND receipt_time = ? ) LIMIT 1",
+				grammar.selectById(tableDef, null, 1, 1, new Object[] {1, "a", 1L, 2L}, null, null, Arrays.asList(Hint.SMALL)));
+		Assert.assertEquals("SELECT /*+ NO_CACHE */ COUNT(*) FROM Event WHERE ((tid = ?))",
+				grammar.countByCondition(tableDef, conditions, null, Arrays.asList(Hint.NO_CACHE)));
+		Assert.assertEquals("DELETE /*+ SERIAL */ FROM Event WHERE ((tid = ?))",
+				grammar.deleteByCondition(tableDef, conditions, Arrays.asList(Hint.SERIAL)));
+		Assert.assertEquals("DELETE FROM Event WHERE tid IN (?, ?)",
+				grammar.delete(new TableDefinition("Event", "tid"), 2, new Object[] {1, 2}));
+		//hinted and plain statements are cached apart
+		Assert.assertEquals("SELECT * FROM Event WHERE ((tid = ?)) LIMIT 10",
+				grammar.selectByCondition(tableDef, null, 10, conditions, null, null, Collections.<Hint>emptyList()));
+		//equal hints hit the cache, the comment is only rendered on a miss
+		Assert.assertSame(grammar.selectById(tableDef, null, 1, 1, new Object[] {1, "a", 1L, 2L}, null, null, Arrays.asList(Hint.SMALL)),
+				grammar.selectById(tableDef, null, 1, 1, new Object[] {2, "b", 3L, 4L}, null, null, Collections.singletonList(Hint.SMALL)));
+	}
+
+	@Test
+	public void testBuiltQueryKeepsItsHintsAndAggregates() {
+		QueryBuilder builder = QueryBuilder.newBuilder().hints(Hint.SMALL).aggregate(Aggregate.count());
+		Query query = builder.build();
+		builder.hints(Hint.SERIAL).aggregate(Aggregate.max("event_time"));
+		Assert.assertEquals(Arrays.asList(Hint.SMALL), query.getHints());
+		Assert.assertEquals(1, query.getAggregates().size());
+		Assert.assertEquals(2, builder.build().getHints().size());
+	}
+
+	@Test
+	public void testCountByCondition() {
+		List<Condition> conditions = new LinkedList<Condition>();
+		conditions.add(new Condition("tid", PhoenixConditionOperator.EQUAL, 1));
+		Assert.assertEquals("SELECT COUNT(*) FROM Event WHERE ((tid = ?))", grammar.countByCondition(tableDef, conditions, null));
+		Assert.assertEquals(grammar.count(tableDef), grammar.countByCondition(tableDef, Collections.<Condition>emptyList(), null));
+	}
+
+	@Test
+	public void testDeleteByCondition() {
+		List<Condition> conditions = new LinkedList<Condition>();
+		conditions.add(new Condition("tid", PhoenixConditionOperator.EQUAL, 1));
+		conditions.add(new Condition("event_time", PhoenixConditionOperator.LESS, 10L));
+		Assert.assertEquals("DELETE FROM Event WHERE ((tid = ?)) AND ((event_time < ?))", grammar.deleteByCondition(tableDef, conditions));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDeleteByConditionNeedsConditions() {
+		grammar.deleteByCondition(tableDef, Collections.<Condition>emptyList());
+	}
+
+	@Test
+	public void testApproximateCount() {
+		Assert.assertEquals("SELECT SUM(GUIDE_POSTS_ROW_COUNT) FROM SYSTEM.STATS WHERE PHYSICAL_NAME = 'EVENT' GROUP BY COLUMN_FAMILY",
+				grammar.approximateCount(tableDef));
+		Assert.assertTrue(grammar.approximateCount(new TableDefinition("s.\"Quoted\"", "id")).contains("'S.Quoted'"));
+	}
+
+	@Test
+	public void testSelectByAggregate() {
+		List<Condition> conditions = new LinkedList<Condition>();
+		conditions.add(new Condition("event_time", PhoenixConditionOperator.GREATER, 1L));
+		List<Condition> having = new LinkedList<Condition>();
+		having.add(new Condition("events", PhoenixConditionOperator.GREATER, 10));
+		Assert.assertEquals("SELECT tid, COUNT(*) AS events, MAX(event_time) FROM Event WHERE ((event_time > ?))"
+				+ " GROUP BY tid HAVING ((COUNT(*) > ?)) ORDER BY COUNT(*) DESC LIMIT 10",
+				grammar.selectByAggregate(tableDef, Arrays.asList(Aggregate.count().as("events"), Aggregate.max("event_time")),
+						Arrays.asList("tid"), conditions, having, new Sort(Direction.DESC, "events"), 10, null));
+		Assert.assertEquals("SELECT SUM(receipt_time) FROM Event LIMIT 1",
+				grammar.selectByAggregate(tableDef, Arrays.asList(Aggregate.sum("receipt_time")), null, null, null, null, 1, null));
+	}
+
+	@Test
+	public void testSaveCached() {
+		LinkedHashMap<String, Object> columns = new LinkedHashMap<String, Object>();
+		columns.put("tid", 1);
+		columns.put("uid", "a");
+		LinkedHashMap<String, Object> dynamicColumns = new LinkedHashMap<String, Object>();
+		dynamicColumns.put("extra", "x");
+		String first = grammar.save(tableDef, columns, dynamicColumns);
+		dynamicColumns.put("extra", 1L);
+		String second = grammar.save(tableDef, columns, dynamicColumns);
+		Assert.assertEquals("UPSERT INTO Event (tid, uid, extra VARCHAR) VALUES (?, ?, ?)", first);
+		Assert.assertEquals("UPSERT INTO Event (tid, uid, extra BIGINT) VALUES (?, ?, ?)", second);
+		Assert.assertSame(second, grammar.save(tableDef, columns, dynamicColumns));
+	}
+
+}
@@ -0,0 +1,154 @@
+package org.cg.rooster.phoenix;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Borrowing, returning and limits of {@link PooledPhoenixDataSource}, pooling in-memory H2 connections
+ * @author WZ
+ *
+ */
+public class TestPooledPhoenixDataSource {
+
+	private static final AtomicInteger DATABASES = new AtomicInteger();
+
+	private PooledPhoenixDataSource dataSource;
+
+	private PooledPhoenixDataSource newDataSource(boolean autocommit, int maxSize) {
+		dataSource = new PooledPhoenixDataSource("org.h2.Driver", "jdbc:h2:mem:pool" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1",
+				autocommit, 100, null, 0, maxSize);
+		return dataSource;
+	}
+
+	@After
+	public void tearDown() {
+		if (dataSource != null) dataSource.close();
+	}
+
+	@Test
+	public void testReturnOnClose() throws SQLException {
+		newDataSource(true, 2);
+		Connection first = dataSource.getConnection();
+		Assert.assertEquals(1, dataSource.getActiveCount());
+		first.close();
+		Assert.assertTrue(first.isClosed());
+		Assert.assertEquals(0, dataSource.getActiveCount());
+		Assert.assertEquals(1, dataSource.getIdleCount());
+
+		Connection second = dataSource.getConnection();
+		Assert.assertEquals(1, dataSource.getCreatedCount());
+		Assert.assertEquals(2, dataSource.getAcquisitionCount());
+		second.close();
+		//closing twice returns it once
+		second.close();
+		Assert.assertEquals(1, dataSource.getIdleCount());
+	}
+
+	@Test(expected = SQLException.class)
+	public void testReturnedConnectionUnusable() throws SQLException {
+		newDataSource(true, 1);
+		Connection connection = dataSource.getConnection();
+		connection.close();
+		connection.createStatement();
+	}
+
+	@Test
+	public void testRollbackOnReturn() throws SQLException {
+		newDataSource(false, 1);
+		Connection connection = dataSource.getConnection();
+		Statement statement = connection.createStatement();
+		statement.execute("CREATE TABLE Pooled (id INTEGER PRIMARY KEY)");
+		statement.execute("INSERT INTO Pooled VALUES (1)");
+		statement.close();
+		connection.close();
+
+		connection = dataSource.getConnection();
+		Assert.assertFalse(connection.getAutoCommit());
+		statement = connection.createStatement();
+		ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM Pooled");
+		rs.next();
+		Assert.assertEquals(0, rs.getInt(1));
+		rs.close();
+		statement.close();
+		connection.close();
+		Assert.assertEquals(1, dataSource.getCreatedCount());
+	}
+
+	@Test
+	public void testMaxSizeAndAcquireTimeout() throws SQLException {
+		newDataSource(true, 2);
+		dataSource.setAcquireTimeoutMillis(50);
+		Connection first = dataSource.getConnection();
+		Connection second = dataSource.getConnection();
+		Assert.assertEquals(2, dataSource.getTotalCount());
+		try {
+			dataSource.getConnection();
+			Assert.fail("the pool is full");
+		} catch (SQLException e) {
+			Assert.assertEquals(1, dataSource.getAcquisitionTimeoutCount());
+		}
+		Assert.assertEquals(2, dataSource.getTotalCount());
+		first.close();
+		second.close();
+		Assert.assertEquals(2, dataSource.getIdleCount());
+	}
+
+	@Test
+	public void testWaitForReturn() throws Exception {
+		newDataSource(true, 1);
+		dataSource.setAcquireTimeoutMillis(TimeUnit.SECONDS.toMillis(10));
+		final Connection borrowed = dataSource.getConnection();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Boolean> waiting = executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws SQLException {
+					Connection connection = dataSource.getConnection();
+					try {
+						return connection.isValid(1);
+					} finally {
+						connection.close();
+					}
+				}
+			});
+			Thread.sleep(100);
+			Assert.assertFalse(waiting.isDone());
+			borrowed.close();
+			Assert.assertTrue(waiting.get(10, TimeUnit.SECONDS));
+			Assert.assertEquals(1, dataSource.getCreatedCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testClose() throws SQLException {
+		newDataSource(true, 2);
+		Connection idle = dataSource.getConnection();
+		Connection borrowed = dataSource.getConnection();
+		idle.close();
+		dataSource.close();
+		Assert.assertEquals(1, dataSource.getTotalCount());
+		//a connection returned after the pool is closed is closed too
+		borrowed.close();
+		Assert.assertEquals(0, dataSource.getTotalCount());
+		try {
+			dataSource.getConnection();
+			Assert.fail("the pool is closed");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("data source is closed", e.getMessage());
+		}
+	}
+}